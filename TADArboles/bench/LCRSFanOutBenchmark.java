@@ -0,0 +1,72 @@
+import material.Position;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+
+/**
+ * Measures how LCRSTree child insertion scales with the fan-out of a single node.
+ * <p>
+ * For every fan-out the benchmark builds a root with that many children by appending, and then performs a fixed
+ * number of indexed insertions at random positions. With the last-child pointer appends take constant time, so the
+ * time per append should stay flat as the fan-out grows. Indexed insertions scan one counter per block of skip
+ * links and then walk less than 2 * {@link LCRSTree#SKIP} siblings, so they grow far slower than the fan-out.
+ * Finally it removes a fixed number of random children. A removal walks back less than 2 * SKIP siblings to the
+ * first child of its block and reaches the block from there, so the time per removal should stay flat too.
+ * <p>
+ * Run it with {@code java LCRSFanOutBenchmark [maxFanOut]}.
+ */
+public class LCRSFanOutBenchmark {
+
+    private static final int INDEXED_INSERTS = 10_000;
+
+    private static final int REMOVALS = 10_000;
+
+    public static void main(String[] args) {
+        int maxFanOut = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        // warm up the JIT before measuring
+        for (int i = 0; i < 5; i++) {
+            run(10_000, false);
+        }
+        System.out.printf("%10s %15s %20s %15s%n", "fan-out", "append ns/op", "indexed insert ns/op",
+                "remove ns/op");
+        for (int fanOut = 1_000; fanOut <= maxFanOut; fanOut *= 10) {
+            run(fanOut, true);
+        }
+    }
+
+    private static void run(int fanOut, boolean print) {
+        LCRSTree<Integer> tree = new LCRSTree<>();
+        Position<Integer> root = tree.addRoot(0);
+        long start = System.nanoTime();
+        for (int i = 0; i < fanOut; i++) {
+            tree.add(i, root);
+        }
+        long appendNanos = System.nanoTime() - start;
+
+        Random random = new Random(42);
+        start = System.nanoTime();
+        for (int i = 0; i < INDEXED_INSERTS; i++) {
+            tree.add(i, root, random.nextInt(fanOut + i));
+        }
+        long insertNanos = System.nanoTime() - start;
+
+        List<Position<Integer>> children = new ArrayList<>();
+        for (Position<Integer> child : tree.children(root)) {
+            children.add(child);
+        }
+        Collections.shuffle(children, random);
+        start = System.nanoTime();
+        for (int i = 0; i < REMOVALS; i++) {
+            tree.remove(children.get(i));
+        }
+        long removeNanos = System.nanoTime() - start;
+
+        if (print) {
+            System.out.printf("%10d %15.1f %20.1f %15.1f%n", fanOut, (double) appendNanos / fanOut,
+                    (double) insertNanos / INDEXED_INSERTS, (double) removeNanos / REMOVALS);
+        }
+    }
+}
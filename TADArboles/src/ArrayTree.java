@@ -0,0 +1,513 @@
+import material.Position;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+
+/**
+ * An implementation of the NAryTree interface that stores the nodes in parallel arrays.
+ * <p>
+ * The topology lives in {@link NodeArrays} (parent, first child, last child and next sibling indexes) and the
+ * elements in a separate Object array, so no object is allocated per node. Slots of removed nodes are reused by
+ * later insertions. The positions handed out by this tree are thin handles holding a slot index; a handle must not
+ * be used after its node has been removed, since the slot may already hold another node.
+ *
+ * @param <E> the type of elements stored in the tree
+ */
+public class ArrayTree<E> extends DrawableTree<E> {
+
+    private static final int NONE = NodeArrays.NONE;
+
+    /**
+     * The storage shared by this tree and every tree obtained from it with subTree.
+     */
+    private final Storage store;
+
+    /**
+     * The slot of the root node, or NONE if the tree is empty.
+     */
+    private int root = NONE;
+
+    /**
+     * The number of nodes in the tree, valid while the version of the topology is sizeVersion.
+     */
+    private int size;
+
+    /**
+     * The version of the topology when size was last counted or updated by this tree. The trees obtained with
+     * subTree share the topology, so a change made through one of them makes the others count their nodes again.
+     */
+    private int sizeVersion;
+
+    /**
+     * Node topology and elements. A separate object so that subtrees can share it.
+     */
+    private static class Storage {
+
+        private final NodeArrays nodes;
+
+        private Object[] elements;
+
+        Storage(int initialCapacity) {
+            nodes = new NodeArrays(initialCapacity);
+            elements = new Object[nodes.capacity()];
+        }
+
+        /**
+         * Allocate a detached node holding the given element.
+         *
+         * @param element the element of the new node
+         * @return the slot of the new node
+         */
+        int allocate(Object element) {
+            int i = nodes.allocate();
+            if (nodes.capacity() > elements.length) {
+                elements = Arrays.copyOf(elements, nodes.capacity());
+            }
+            elements[i] = element;
+            return i;
+        }
+
+        /**
+         * Release the slots of a detached subtree, dropping the references to its elements.
+         *
+         * @param top the root of the subtree
+         * @return the number of released nodes
+         */
+        int release(int top) {
+            for (int i = top; i != NONE; i = nodes.nextPreOrder(i, top)) {
+                elements[i] = null;
+            }
+            return nodes.releaseSubtree(top);
+        }
+    }
+
+    /**
+     * A position of an ArrayTree: the storage it belongs to and a slot index.
+     *
+     * @param <T> the type of the element
+     */
+    private static final class Handle<T> implements Position<T> {
+
+        private final Storage store;
+
+        private final int index;
+
+        Handle(Storage store, int index) {
+            this.store = store;
+            this.index = index;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T getElement() {
+            return (T) store.elements[index];
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Handle)) {
+                return false;
+            }
+            Handle<?> other = (Handle<?>) o;
+            return store == other.store && index == other.index;
+        }
+
+        @Override
+        public int hashCode() {
+            return index;
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(getElement());
+        }
+    }
+
+    /**
+     * Creates an empty tree.
+     */
+    public ArrayTree() {
+        this(16);
+    }
+
+    /**
+     * Creates an empty tree able to hold the given number of nodes before growing its arrays.
+     *
+     * @param initialCapacity the number of nodes to reserve room for
+     */
+    public ArrayTree(int initialCapacity) {
+        this(new Storage(initialCapacity), NONE, 0);
+    }
+
+    private ArrayTree(Storage store, int root, int size) {
+        this.store = store;
+        this.root = root;
+        this.size = size;
+        this.sizeVersion = store.nodes.version;
+    }
+
+    /**
+     * Return the number of nodes, counting them again if the topology was changed through another tree since this
+     * one last changed it. If the root was removed through another tree, this tree is left empty.
+     */
+    private int count() {
+        NodeArrays nodes = store.nodes;
+        if (sizeVersion != nodes.version) {
+            if (root != NONE && !nodes.isLive(root)) {
+                root = NONE;
+            }
+            size = root == NONE ? 0 : nodes.countSubtree(root);
+            sizeVersion = nodes.version;
+        }
+        return size;
+    }
+
+    /**
+     * Return the root, which is NONE if it was removed through another tree.
+     */
+    private int top() {
+        count();
+        return root;
+    }
+
+    /**
+     * Record the number of nodes after a change made through this tree.
+     */
+    private void resize(int size) {
+        this.size = size;
+        sizeVersion = store.nodes.version;
+    }
+
+    /**
+     * Check if a given position is a live node of this storage and return its slot.
+     *
+     * @param p The position to check
+     * @return The slot of the node
+     * @throws RuntimeException If the position is invalid
+     */
+    private int checkPosition(Position<E> p) {
+        if (!(p instanceof Handle)) {
+            throw new RuntimeException("The position is invalid");
+        }
+        Handle<E> handle = (Handle<E>) p;
+        if (handle.store != store || !store.nodes.isLive(handle.index)) {
+            throw new RuntimeException("The position is invalid");
+        }
+        return handle.index;
+    }
+
+    private Position<E> handle(int index) {
+        return index == NONE ? null : new Handle<>(store, index);
+    }
+
+    @Override
+    public Position<E> addRoot(E e) {
+        if (!isEmpty()) {
+            throw new RuntimeException("The tree already has a root");
+        }
+        root = store.allocate(e);
+        resize(1);
+        return handle(root);
+    }
+
+    @Override
+    public Position<E> add(E element, Position<E> p) {
+        int parent = checkPosition(p);
+        int n = count();
+        int node = store.allocate(element);
+        store.nodes.append(node, parent);
+        resize(n + 1);
+        return handle(node);
+    }
+
+    @Override
+    public Position<E> add(E element, Position<E> p, int n) {
+        int parent = checkPosition(p);
+        if (n < 0) {
+            throw new RuntimeException("The position is invalid");
+        }
+        int before = count();
+        int node = store.allocate(element);
+        store.nodes.insert(node, parent, n);
+        resize(before + 1);
+        return handle(node);
+    }
+
+    @Override
+    public void swapElements(Position<E> p1, Position<E> p2) {
+        int i = checkPosition(p1);
+        int j = checkPosition(p2);
+        Object aux = store.elements[i];
+        store.elements[i] = store.elements[j];
+        store.elements[j] = aux;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E replace(Position<E> p, E e) {
+        int i = checkPosition(p);
+        E old = (E) store.elements[i];
+        store.elements[i] = e;
+        return old;
+    }
+
+    @Override
+    public void remove(Position<E> p) {
+        int node = checkPosition(p);
+        int n = count();
+        // the root of a subtree view may still be linked to its parent in the shared storage
+        store.nodes.unlink(node);
+        int removed = store.release(node);
+        if (node == root) {
+            root = NONE;
+            resize(0);
+        } else {
+            resize(n - removed);
+        }
+    }
+
+    @Override
+    public NAryTree<E> subTree(Position<E> v) {
+        int node = checkPosition(v);
+        return new ArrayTree<>(store, node, store.nodes.countSubtree(node));
+    }
+
+    /**
+     * Attach the root of tree t as the last child of node p. If t shares the storage of this tree its root is
+     * moved, and it must not be p or an ancestor of p. Otherwise its nodes are copied into this tree.
+     *
+     * @param p Node in which t will be attached.
+     * @param t Tree to be attached.
+     */
+    @Override
+    public void attach(Position<E> p, NAryTree<E> t) {
+        int node = checkPosition(p);
+        ArrayTree<E> tree = checkTree(t);
+        if (tree.isEmpty()) {
+            return;
+        }
+        int n = count();
+        if (tree.store == store) {
+            NodeArrays nodes = store.nodes;
+            if (NodeArrays.isAncestor(nodes, tree.root, node)) {
+                throw new RuntimeException("The tree is invalid");
+            }
+            // nodes moved from another place of this tree are already counted
+            int moved = NodeArrays.isAncestor(nodes, root, tree.root) ? 0 : tree.size();
+            nodes.unlink(tree.root);
+            nodes.append(tree.root, node);
+            resize(n + moved);
+        } else {
+            Storage source = tree.store;
+            NodeArrays.copySubtree(source.nodes, tree.root, store.nodes, node, i -> store.allocate(source.elements[i]));
+            resize(n + tree.size());
+        }
+    }
+
+    /**
+     * Checks if the given tree is of type ArrayTree.
+     *
+     * @param t The tree to be checked.
+     * @return The ArrayTree instance if the tree is of type ArrayTree.
+     * @throws RuntimeException If the tree is not a valid ArrayTree instance.
+     */
+    private ArrayTree<E> checkTree(NAryTree<E> t) {
+        if (!(t instanceof ArrayTree)) {
+            throw new RuntimeException("The tree is invalid");
+        }
+        return (ArrayTree<E>) t;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return count() == 0;
+    }
+
+    @Override
+    public Position<E> root() {
+        return handle(top());
+    }
+
+    @Override
+    public Position<E> parent(Position<E> v) {
+        int node = checkPosition(v);
+        return handle(store.nodes.parent[node]);
+    }
+
+    @Override
+    public Iterable<? extends Position<E>> children(Position<E> v) {
+        int node = checkPosition(v);
+        return () -> new Iterator<Position<E>>() {
+            private int next = store.nodes.firstChild[node];
+
+            @Override
+            public boolean hasNext() {
+                return next != NONE;
+            }
+
+            @Override
+            public Position<E> next() {
+                if (next == NONE) {
+                    throw new NoSuchElementException();
+                }
+                int current = next;
+                next = store.nodes.nextSibling[current];
+                return handle(current);
+            }
+        };
+    }
+
+    @Override
+    public boolean isInternal(Position<E> v) {
+        int node = checkPosition(v);
+        return store.nodes.firstChild[node] != NONE;
+    }
+
+    @Override
+    public boolean isLeaf(Position<E> v) {
+        int node = checkPosition(v);
+        return store.nodes.firstChild[node] == NONE;
+    }
+
+    @Override
+    public boolean isRoot(Position<E> v) {
+        int node = checkPosition(v);
+        return node == top();
+    }
+
+    /**
+     * Return an iterator of all positions of the tree in breadth-first order.
+     * The queue only holds the first child of each pending sibling chain.
+     *
+     * @return an iterator of the tree's positions
+     */
+    @Override
+    public Iterator<Position<E>> iterator() {
+        return new Iterator<Position<E>>() {
+            private final NodeArrays nodes = store.nodes;
+
+            // circular queue of sibling chain heads
+            private int[] chains = new int[16];
+
+            private int head;
+
+            private int count;
+
+            private int next = top();
+
+            @Override
+            public boolean hasNext() {
+                return next != NONE;
+            }
+
+            @Override
+            public Position<E> next() {
+                if (next == NONE) {
+                    throw new NoSuchElementException();
+                }
+                int current = next;
+                if (nodes.firstChild[current] != NONE) {
+                    offer(nodes.firstChild[current]);
+                }
+                next = current == root ? NONE : nodes.nextSibling[current];
+                if (next == NONE && count > 0) {
+                    next = chains[head];
+                    head = (head + 1) % chains.length;
+                    count--;
+                }
+                return handle(current);
+            }
+
+            private void offer(int chain) {
+                if (count == chains.length) {
+                    int[] grown = new int[chains.length * 2];
+                    for (int k = 0; k < count; k++) {
+                        grown[k] = chains[(head + k) % chains.length];
+                    }
+                    chains = grown;
+                    head = 0;
+                }
+                chains[(head + count) % chains.length] = chain;
+                count++;
+            }
+        };
+    }
+
+    /**
+     * Return an iterator of all positions of the tree in pre-order.
+     * The traversal walks the index links, so it needs no stack.
+     *
+     * @return an iterator of the tree's positions
+     */
+    public Iterator<Position<E>> iteratorPreOrder() {
+        return new Iterator<Position<E>>() {
+            private int next = top();
+
+            @Override
+            public boolean hasNext() {
+                return next != NONE;
+            }
+
+            @Override
+            public Position<E> next() {
+                if (next == NONE) {
+                    throw new NoSuchElementException();
+                }
+                int current = next;
+                next = store.nodes.nextPreOrder(current, root);
+                return handle(current);
+            }
+        };
+    }
+
+    /**
+     * Return an iterator of all positions of the tree in post-order.
+     * The traversal walks the index links, so it needs no stack.
+     *
+     * @return an iterator of the tree's positions
+     */
+    public Iterator<Position<E>> iteratorPostOrder() {
+        return new Iterator<Position<E>>() {
+            private int next = top() == NONE ? NONE : store.nodes.leftmostDescendant(root);
+
+            @Override
+            public boolean hasNext() {
+                return next != NONE;
+            }
+
+            @Override
+            public Position<E> next() {
+                if (next == NONE) {
+                    throw new NoSuchElementException();
+                }
+                int current = next;
+                next = store.nodes.nextPostOrder(current, root);
+                return handle(current);
+            }
+        };
+    }
+
+    /**
+     * Return the number of elements stored in the tree.
+     *
+     * @return the number of elements in the tree
+     */
+    @Override
+    public int size() {
+        return count();
+    }
+
+    /**
+     * Return the number of nodes of the subtree rooted at a node. The subtree is counted by walking its links.
+     *
+     * @param v the root of the subtree
+     * @return the number of nodes of the subtree
+     */
+    @Override
+    public int size(Position<E> v) {
+        return store.nodes.countSubtree(checkPosition(v));
+    }
+
+}
@@ -0,0 +1,546 @@
+import material.Position;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+
+/**
+ * A thread-safe implementation of the NAryTree interface.
+ * <p>
+ * Reads take no locks. Every node publishes its children as an immutable snapshot through a volatile field, so
+ * reading a node, its parent or its children, and iterating, never blocks and never sees a half-done change.
+ * Iterators and streams are weakly consistent: they reflect the tree at some point during the traversal.
+ * <p>
+ * Writers lock only the node they change. Each node is assigned one of a fixed set of striped {@link StampedLock}s,
+ * and adding or removing a child locks the stripe of the parent. Changes in disjoint parts of the tree therefore
+ * run in parallel unless their nodes happen to share a stripe. A removed subtree is detached from its parent first,
+ * and then its nodes are marked as removed one at a time under their own stripes, so that later writes to them
+ * fail. No thread ever holds two stripes, except swapElements, which takes them in stripe order.
+ * <p>
+ * size() is kept in an atomic counter. While removals are in flight it may briefly include nodes that are already
+ * detached but not yet marked.
+ *
+ * @param <E> the type of elements stored in the tree
+ */
+public class ConcurrentTree<E> extends DrawableTree<E> {
+
+    private static final int STRIPES = 64;
+
+    /**
+     * State shared by a tree and the trees obtained from it with subTree.
+     */
+    private static final class Shared {
+
+        private final StampedLock[] stripes = new StampedLock[STRIPES];
+
+        /**
+         * Guards the root of the whole structure.
+         */
+        private final StampedLock rootLock = new StampedLock();
+
+        private final AtomicInteger size = new AtomicInteger();
+
+        Shared() {
+            for (int i = 0; i < STRIPES; i++) {
+                stripes[i] = new StampedLock();
+            }
+        }
+    }
+
+    /**
+     * An immutable snapshot of the children of a node. Appends may reuse the array of the previous snapshot,
+     * since a snapshot only reads the first count slots.
+     */
+    private static final class Children {
+
+        private static final Children EMPTY = new Children(new Object[0], 0);
+
+        private final Object[] items;
+
+        private final int count;
+
+        Children(Object[] items, int count) {
+            this.items = items;
+            this.count = count;
+        }
+    }
+
+    private static final class Node<T> implements Position<T> {
+
+        private volatile T element;
+
+        private volatile Node<T> parent;
+
+        private volatile Children children = Children.EMPTY;
+
+        /**
+         * Set, under the stripe of the node, once the node has been removed from the tree.
+         */
+        private volatile boolean removed;
+
+        private final int stripe = ThreadLocalRandom.current().nextInt(STRIPES);
+
+        Node(T element, Node<T> parent) {
+            this.element = element;
+            this.parent = parent;
+        }
+
+        @Override
+        public T getElement() {
+            return element;
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(element);
+        }
+    }
+
+    private final Shared shared;
+
+    private volatile Node<E> root;
+
+    /**
+     * Whether this tree is a view obtained with subTree, whose size is counted on demand.
+     */
+    private final boolean view;
+
+    /**
+     * Creates an empty tree.
+     */
+    public ConcurrentTree() {
+        this(new Shared(), null, false);
+    }
+
+    private ConcurrentTree(Shared shared, Node<E> root, boolean view) {
+        this.shared = shared;
+        this.root = root;
+        this.view = view;
+    }
+
+    private Node<E> checkPosition(Position<E> p) {
+        if (!(p instanceof Node)) {
+            throw new RuntimeException("The position is invalid");
+        }
+        return (Node<E>) p;
+    }
+
+    private StampedLock lockOf(Node<E> node) {
+        return shared.stripes[node.stripe];
+    }
+
+    @Override
+    public Position<E> addRoot(E e) {
+        StampedLock lock = shared.rootLock;
+        long stamp = lock.writeLock();
+        try {
+            if (root != null) {
+                throw new RuntimeException("The tree already has a root");
+            }
+            root = new Node<>(e, null);
+            shared.size.incrementAndGet();
+            return root;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Position<E> add(E element, Position<E> p) {
+        Node<E> parent = checkPosition(p);
+        StampedLock lock = lockOf(parent);
+        long stamp = lock.writeLock();
+        try {
+            checkLive(parent);
+            Node<E> node = new Node<>(element, parent);
+            Children current = parent.children;
+            Object[] items = current.items;
+            if (current.count == items.length) {
+                items = Arrays.copyOf(items, Math.max(4, items.length * 2));
+            }
+            items[current.count] = node;
+            parent.children = new Children(items, current.count + 1);
+            shared.size.incrementAndGet();
+            return node;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Position<E> add(E element, Position<E> p, int n) {
+        Node<E> parent = checkPosition(p);
+        StampedLock lock = lockOf(parent);
+        long stamp = lock.writeLock();
+        try {
+            checkLive(parent);
+            Children current = parent.children;
+            if (n < 0 || n > current.count) {
+                throw new RuntimeException("The position is invalid");
+            }
+            Node<E> node = new Node<>(element, parent);
+            Object[] items = new Object[Math.max(4, current.count + 1)];
+            System.arraycopy(current.items, 0, items, 0, n);
+            items[n] = node;
+            System.arraycopy(current.items, n, items, n + 1, current.count - n);
+            parent.children = new Children(items, current.count + 1);
+            shared.size.incrementAndGet();
+            return node;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Check, holding its stripe, that a node has not been removed.
+     */
+    private static void checkLive(Node<?> node) {
+        if (node.removed) {
+            throw new RuntimeException("The position is invalid");
+        }
+    }
+
+    @Override
+    public void swapElements(Position<E> p1, Position<E> p2) {
+        Node<E> node1 = checkPosition(p1);
+        Node<E> node2 = checkPosition(p2);
+        // take the two stripes in a fixed order so that two swaps cannot deadlock
+        StampedLock first = shared.stripes[Math.min(node1.stripe, node2.stripe)];
+        StampedLock second = shared.stripes[Math.max(node1.stripe, node2.stripe)];
+        long stamp1 = first.writeLock();
+        long stamp2 = first == second ? 0 : second.writeLock();
+        try {
+            checkLive(node1);
+            checkLive(node2);
+            E aux = node1.element;
+            node1.element = node2.element;
+            node2.element = aux;
+        } finally {
+            if (first != second) {
+                second.unlockWrite(stamp2);
+            }
+            first.unlockWrite(stamp1);
+        }
+    }
+
+    @Override
+    public E replace(Position<E> p, E e) {
+        Node<E> node = checkPosition(p);
+        StampedLock lock = lockOf(node);
+        long stamp = lock.writeLock();
+        try {
+            checkLive(node);
+            E old = node.element;
+            node.element = e;
+            return old;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void remove(Position<E> p) {
+        Node<E> node = checkPosition(p);
+        Node<E> parent = node.parent;
+        if (parent == null) {
+            StampedLock lock = shared.rootLock;
+            long stamp = lock.writeLock();
+            try {
+                if (root != node) {
+                    throw new RuntimeException("The position is invalid");
+                }
+                root = null;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        } else {
+            StampedLock lock = lockOf(parent);
+            long stamp = lock.writeLock();
+            try {
+                checkLive(parent);
+                Children current = parent.children;
+                int index = indexOf(current, node);
+                if (index < 0) {
+                    throw new RuntimeException("The position is invalid");
+                }
+                Object[] items = new Object[Math.max(4, current.count - 1)];
+                System.arraycopy(current.items, 0, items, 0, index);
+                System.arraycopy(current.items, index + 1, items, index, current.count - index - 1);
+                parent.children = new Children(items, current.count - 1);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            if (node == root) {
+                root = null;
+            }
+        }
+        shared.size.addAndGet(-markRemoved(node));
+    }
+
+    private static int indexOf(Children children, Node<?> node) {
+        for (int i = 0; i < children.count; i++) {
+            if (children.items[i] == node) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Mark the nodes of a detached subtree as removed, each one under its own stripe, so that any write to one of
+     * them either happened before (and its result is marked too) or fails.
+     *
+     * @param top the root of the subtree
+     * @return the number of nodes this call marked
+     */
+    @SuppressWarnings("unchecked")
+    private int markRemoved(Node<E> top) {
+        int marked = 0;
+        Deque<Node<E>> stack = new ArrayDeque<>();
+        stack.push(top);
+        while (!stack.isEmpty()) {
+            Node<E> node = stack.pop();
+            Children children;
+            StampedLock lock = lockOf(node);
+            long stamp = lock.writeLock();
+            try {
+                if (node.removed) {
+                    // already handled by a concurrent removal of an ancestor or of the node itself
+                    continue;
+                }
+                node.removed = true;
+                children = node.children;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            marked++;
+            for (int i = 0; i < children.count; i++) {
+                stack.push((Node<E>) children.items[i]);
+            }
+        }
+        return marked;
+    }
+
+    @Override
+    public NAryTree<E> subTree(Position<E> v) {
+        Node<E> node = checkPosition(v);
+        return new ConcurrentTree<>(shared, node, true);
+    }
+
+    /**
+     * Attach the root of tree t as the last child of node p. Tree t must not be used concurrently.
+     *
+     * @param p Node in which t will be attached.
+     * @param t Tree to be attached.
+     */
+    @Override
+    public void attach(Position<E> p, NAryTree<E> t) {
+        Node<E> node = checkPosition(p);
+        if (!(t instanceof ConcurrentTree)) {
+            throw new RuntimeException("The tree is invalid");
+        }
+        ConcurrentTree<E> tree = (ConcurrentTree<E>) t;
+        if (tree.isEmpty()) {
+            return;
+        }
+        int added = tree.size();
+        StampedLock lock = lockOf(node);
+        long stamp = lock.writeLock();
+        try {
+            checkLive(node);
+            Children current = node.children;
+            Object[] items = Arrays.copyOf(current.items, Math.max(4, current.count + 1));
+            items[current.count] = tree.root;
+            tree.root.parent = node;
+            node.children = new Children(items, current.count + 1);
+            shared.size.addAndGet(added);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    @Override
+    public Position<E> root() {
+        return root;
+    }
+
+    @Override
+    public Position<E> parent(Position<E> v) {
+        return checkPosition(v).parent;
+    }
+
+    /**
+     * Return the children of a node as they were when this method was called. The view never changes.
+     *
+     * @param v the node
+     * @return an iterable over a snapshot of the children of v
+     */
+    @Override
+    public Iterable<? extends Position<E>> children(Position<E> v) {
+        Children snapshot = checkPosition(v).children;
+        return () -> new SnapshotIterator(snapshot);
+    }
+
+    @Override
+    public int childCount(Position<E> v) {
+        return checkPosition(v).children.count;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Position<E> child(Position<E> v, int i) {
+        Children snapshot = checkPosition(v).children;
+        if (i < 0 || i >= snapshot.count) {
+            throw new RuntimeException("The position is invalid");
+        }
+        return (Position<E>) snapshot.items[i];
+    }
+
+    @Override
+    public boolean isInternal(Position<E> v) {
+        return checkPosition(v).children.count > 0;
+    }
+
+    @Override
+    public boolean isLeaf(Position<E> v) {
+        return checkPosition(v).children.count == 0;
+    }
+
+    @Override
+    public boolean isRoot(Position<E> v) {
+        return checkPosition(v) == root;
+    }
+
+    /**
+     * Return the number of elements stored in the tree. For trees obtained with subTree the nodes are counted.
+     *
+     * @return the number of elements in the tree
+     */
+    @Override
+    public int size() {
+        if (view) {
+            Node<E> top = root;
+            return top == null ? 0 : size(top);
+        }
+        return shared.size.get();
+    }
+
+    /**
+     * Return the number of nodes of the subtree rooted at a node, counted by walking a snapshot of it.
+     *
+     * @param v the root of the subtree
+     * @return the number of nodes of the subtree
+     */
+    @Override
+    public int size(Position<E> v) {
+        int count = 0;
+        Iterator<Position<E>> it = new BreadthFirstIterator(checkPosition(v));
+        while (it.hasNext()) {
+            it.next();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Return an iterator of all positions of the tree in breadth-first order. The iterator takes no locks and
+     * reads the children snapshot of each node when it reaches it.
+     *
+     * @return an iterator of the tree's positions
+     */
+    @Override
+    public Iterator<Position<E>> iterator() {
+        return new BreadthFirstIterator(root);
+    }
+
+    /**
+     * Return a stream of the positions of the tree. The stream is weakly consistent, like the iterators, so it
+     * does not report an exact size.
+     *
+     * @param order the traversal order
+     * @return a stream of the positions of the tree
+     */
+    @Override
+    public Stream<Position<E>> stream(TraversalOrder order) {
+        return StreamSupport.stream(new TreeSpliterator<>(this, order, false, false), false);
+    }
+
+    @Override
+    public Stream<Position<E>> parallelStream(TraversalOrder order) {
+        return StreamSupport.stream(new TreeSpliterator<>(this, order, false, false), true);
+    }
+
+    /**
+     * Iterator over a snapshot of the children of a node.
+     */
+    private class SnapshotIterator implements Iterator<Position<E>> {
+
+        private final Children snapshot;
+
+        private int next;
+
+        SnapshotIterator(Children snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < snapshot.count;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Position<E> next() {
+            if (next >= snapshot.count) {
+                throw new NoSuchElementException();
+            }
+            return (Position<E>) snapshot.items[next++];
+        }
+    }
+
+    /**
+     * Lock-free breadth-first iterator.
+     */
+    private class BreadthFirstIterator implements Iterator<Position<E>> {
+
+        private final Deque<Node<E>> queue = new ArrayDeque<>();
+
+        BreadthFirstIterator(Node<E> start) {
+            if (start != null) {
+                queue.add(start);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Position<E> next() {
+            if (queue.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            Node<E> node = queue.poll();
+            Children children = node.children;
+            for (int i = 0; i < children.count; i++) {
+                queue.add((Node<E>) children.items[i]);
+            }
+            return node;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+import java.util.Arrays;
+
+
+/**
+ * An array-backed implementation of the DoubleNAryTree interface.
+ * <p>
+ * Nodes are slots of parallel int arrays and the elements are kept in a double array, so adding nodes, reading
+ * elements and traversing the tree never box.
+ */
+public class DoubleArrayTree extends PrimitiveArrayTree implements DoubleNAryTree {
+
+    /**
+     * Topology plus a double element array.
+     */
+    private static class DoubleStorage extends Storage {
+
+        private double[] values;
+
+        DoubleStorage(int initialCapacity) {
+            super(initialCapacity);
+            values = new double[nodes.capacity()];
+        }
+
+        @Override
+        int elementCapacity() {
+            return values.length;
+        }
+
+        @Override
+        void growElements(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void swap(int i, int j) {
+            double aux = values[i];
+            values[i] = values[j];
+            values[j] = aux;
+        }
+
+        @Override
+        void copy(Storage from, int src, int dst) {
+            values[dst] = ((DoubleStorage) from).values[src];
+        }
+    }
+
+    /**
+     * Creates an empty tree.
+     */
+    public DoubleArrayTree() {
+        this(16);
+    }
+
+    /**
+     * Creates an empty tree able to hold the given number of nodes before growing its arrays.
+     *
+     * @param initialCapacity the number of nodes to reserve room for
+     */
+    public DoubleArrayTree(int initialCapacity) {
+        super(new DoubleStorage(initialCapacity), NONE, 0);
+    }
+
+    private DoubleArrayTree(Storage store, int root, int size) {
+        super(store, root, size);
+    }
+
+    private double[] values() {
+        return ((DoubleStorage) store).values;
+    }
+
+    @Override
+    public double getElement(int v) {
+        return values()[checkNode(v)];
+    }
+
+    @Override
+    public int addRoot(double e) {
+        int node = allocateRoot();
+        values()[node] = e;
+        return node;
+    }
+
+    @Override
+    public int add(double element, int p) {
+        int node = allocateChild(p);
+        values()[node] = element;
+        return node;
+    }
+
+    @Override
+    public int add(double element, int p, int n) {
+        int node = allocateChild(p, n);
+        values()[node] = element;
+        return node;
+    }
+
+    @Override
+    public double replace(int p, double e) {
+        double[] values = values();
+        double old = values[checkNode(p)];
+        values[p] = e;
+        return old;
+    }
+
+    @Override
+    public DoubleNAryTree subTree(int v) {
+        return new DoubleArrayTree(store, v, countSubtree(v));
+    }
+
+    @Override
+    public void attach(int p, DoubleNAryTree t) {
+        if (!(t instanceof DoubleArrayTree)) {
+            throw new RuntimeException("The tree is invalid");
+        }
+        attachTree(p, (DoubleArrayTree) t);
+    }
+
+    @Override
+    public void forEachBreadthFirst(Visitor visitor) {
+        double[] values = values();
+        breadthFirst(i -> visitor.visit(i, values[i]));
+    }
+
+    @Override
+    public void forEachPreOrder(Visitor visitor) {
+        double[] values = values();
+        preOrder(i -> visitor.visit(i, values[i]));
+    }
+
+    @Override
+    public void forEachPostOrder(Visitor visitor) {
+        double[] values = values();
+        postOrder(i -> visitor.visit(i, values[i]));
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Level-of-detail options for drawing large trees with {@link DrawableTree#toDot(DrawOptions)} and
+ * {@link DrawableTree#toSvg(DrawOptions)}.
+ * <p>
+ * The hidden parts of the tree are replaced by summary nodes that show how many nodes they stand for:
+ * <ul>
+ *     <li>nodes deeper than the maximum depth are hidden below the nodes at that depth;</li>
+ *     <li>every subtree other than the whole tree with more nodes than the collapse threshold is drawn as its root
+ *     alone;</li>
+ *     <li>only the first children of a node with more children than the limit are drawn.</li>
+ * </ul>
+ * The drawing only visits the nodes it shows and asks the tree for the sizes of the hidden subtrees, so with the
+ * trees that store their subtree sizes its cost depends on the size of the drawing, not on the size of the tree.
+ * By default nothing is hidden.
+ */
+public final class DrawOptions {
+
+    private int maxDepth = Integer.MAX_VALUE;
+
+    private int collapseAbove = Integer.MAX_VALUE;
+
+    private int maxChildren = Integer.MAX_VALUE;
+
+    /**
+     * Set the depth of the deepest nodes drawn.
+     *
+     * @param depth the maximum depth, 0 to draw the root alone
+     * @return these options
+     */
+    public DrawOptions maxDepth(int depth) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("The depth must not be negative");
+        }
+        this.maxDepth = depth;
+        return this;
+    }
+
+    /**
+     * Set the size above which a subtree is collapsed into its root and a summary node.
+     *
+     * @param nodes the largest number of nodes of a subtree drawn in full
+     * @return these options
+     */
+    public DrawOptions collapseAbove(int nodes) {
+        if (nodes < 1) {
+            throw new IllegalArgumentException("The threshold must be positive");
+        }
+        this.collapseAbove = nodes;
+        return this;
+    }
+
+    /**
+     * Set the number of children drawn for every node; the remaining ones are summarized in a single node.
+     *
+     * @param children the largest number of children drawn
+     * @return these options
+     */
+    public DrawOptions maxChildren(int children) {
+        if (children < 1) {
+            throw new IllegalArgumentException("The number of children must be positive");
+        }
+        this.maxChildren = children;
+        return this;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public int getCollapseAbove() {
+        return collapseAbove;
+    }
+
+    public int getMaxChildren() {
+        return maxChildren;
+    }
+}
@@ -1,11 +1,35 @@
 import material.Position;
 
 import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
 
 public abstract class DrawableTree<E> implements NAryTree<E> {
 
+    /**
+     * The number of characters collected before they are handed to the writer.
+     */
+    private static final int BUFFER = 8192;
+
     /**
      * Generate a DOT representation of the tree.
      * <p>
@@ -17,30 +41,371 @@ public abstract class DrawableTree<E> implements NAryTree<E> {
      * @return a string representing the tree in the DOT format
      */
     public String toDot() {
-        StringBuilder sb = new StringBuilder("digraph Tree {\n");
+        StringWriter out = new StringWriter();
+        try {
+            writeDot(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Write the DOT representation of the tree to a writer. The edges are written as they are generated, in blocks
+     * of a few kilobytes, so the whole graph is never held in memory. The writer is flushed but not closed.
+     *
+     * @param out the writer
+     * @throws IOException if there is an error writing
+     */
+    public void writeDot(Writer out) throws IOException {
+        out.write("digraph Tree {\n");
         if (!isEmpty()) {
-            toDot(root(), sb);
+            StringBuilder sb = new StringBuilder(BUFFER + 256);
+            appendEdges(root(), sb, out);
+            out.append(sb);
+        }
+        out.write("}");
+        out.flush();
+    }
+
+    /**
+     * Generate a DOT representation of the part of the tree kept by some level-of-detail options. The hidden parts
+     * are drawn as dashed boxes labelled with the number of nodes they stand for.
+     *
+     * @param options what to hide
+     * @return a string representing the tree in the DOT format
+     */
+    public String toDot(DrawOptions options) {
+        StringWriter out = new StringWriter();
+        try {
+            writeDot(out, options);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Write the DOT representation of the part of the tree kept by some level-of-detail options to a writer. Only
+     * the drawn nodes are visited, so the time taken depends on the size of the output when the subtree sizes are
+     * stored by the tree. The writer is flushed but not closed.
+     *
+     * @param out     the writer
+     * @param options what to hide
+     * @throws IOException if there is an error writing
+     */
+    public void writeDot(Writer out, DrawOptions options) throws IOException {
+        TreeSketch sketch = new TreeSketch(this, options);
+        out.write("digraph Tree {\n");
+        // summary nodes get their own names, as their labels may repeat, with a prefix no drawn label starts with
+        String prefix = sketch.summaryPrefix();
+        StringBuilder sb = new StringBuilder(BUFFER + 256);
+        for (int v = 1; v < sketch.size(); v++) {
+            sb.append("\"").append(sketch.label(sketch.parent(v))).append("\" -> \"");
+            if (sketch.isSummary(v)) {
+                sb.append(prefix).append(v).append("\";\n\"").append(prefix).append(v).append("\" [label=\"")
+                        .append(sketch.label(v)).append("\", shape=box, style=dashed];\n");
+            } else {
+                sb.append(sketch.label(v)).append("\";\n");
+            }
+            if (sb.length() >= BUFFER) {
+                out.append(sb);
+                sb.setLength(0);
+            }
+        }
+        out.append(sb);
+        out.write("}");
+        out.flush();
+    }
+
+    /**
+     * Write the DOT representation of the tree to a writer, rendering the small subtrees in parallel. Subtrees of
+     * at most threshold nodes, grouped in runs of consecutive siblings, are rendered into chunks by tasks of a pool,
+     * and the chunks are written in order, so the output is the same as that of {@link #writeDot(Writer)}. At most
+     * twice as many chunks as the parallelism of the pool wait to be written: when there are more, the oldest is
+     * joined and written first, so the memory used depends on the threshold and the pool, not on the size of the tree.
+     * Trees that do not store their subtree sizes estimate the size of a subtree from its parent's, as
+     * {@link TreeSpliterator} does, instead of walking it.
+     *
+     * @param out       the writer
+     * @param pool      the pool that renders the chunks
+     * @param threshold the largest number of nodes rendered by a single task
+     * @throws IOException if there is an error writing
+     */
+    public void writeDot(Writer out, ForkJoinPool pool, int threshold) throws IOException {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("The threshold must be positive");
+        }
+        out.write("digraph Tree {\n");
+        if (!isEmpty()) {
+            // chunks not written yet, in order: rendered text waiting behind a task, or a task
+            Deque<Supplier<String>> window = new ArrayDeque<>();
+            int inFlight = 2 * pool.getParallelism();
+            StringBuilder sb = new StringBuilder();
+            List<Position<E>> run = new ArrayList<>();
+            long runSize = 0;
+            // pre-order walk over the large subtrees; the run holds small children of the node on top of the stack
+            Deque<Position<E>> nodes = new ArrayDeque<>();
+            Deque<Iterator<? extends Position<E>>> stack = new ArrayDeque<>();
+            // the estimated size of every child of the node on top, used when the sizes are not stored
+            Deque<Long> shares = new ArrayDeque<>();
+            boolean storedSizes = storesSizes();
+            if (size() > threshold) {
+                descend(root(), size(), nodes, stack, shares);
+            } else {
+                appendEdges(root(), sb, out);
+            }
+            while (!stack.isEmpty()) {
+                Position<E> parent = nodes.peek();
+                Position<E> child = stack.peek().hasNext() ? stack.peek().next() : null;
+                long childSize = child == null ? 0 : storedSizes ? size(child) : shares.peek();
+                if (!run.isEmpty() && (child == null || childSize > threshold || runSize + childSize > threshold)) {
+                    emit(sb, window, inFlight, out);
+                    List<Position<E>> siblings = List.copyOf(run);
+                    ForkJoinTask<String> task = pool.submit(() -> renderRun(parent, siblings));
+                    window.add(task::join);
+                    drain(window, inFlight, out);
+                    run.clear();
+                    runSize = 0;
+                }
+                if (child == null) {
+                    nodes.pop();
+                    stack.pop();
+                    shares.pop();
+                } else if (childSize > threshold) {
+                    appendEdge(parent, child, sb);
+                    if (sb.length() >= BUFFER) {
+                        emit(sb, window, inFlight, out);
+                    }
+                    descend(child, childSize, nodes, stack, shares);
+                } else {
+                    run.add(child);
+                    runSize += childSize;
+                }
+            }
+            emit(sb, window, inFlight, out);
+            drain(window, 0, out);
+        }
+        out.write("}");
+        out.flush();
+    }
+
+    /**
+     * Whether {@link #size(Position)} returns a stored count instead of walking the subtree. The parallel
+     * {@link #writeDot(Writer, ForkJoinPool, int)} weighs subtrees with it only then, and estimates them otherwise.
+     *
+     * @return true if the tree stores the size of every subtree
+     */
+    boolean storesSizes() {
+        return false;
+    }
+
+    /**
+     * Push a large subtree on the walk of the parallel writeDot, sharing its size evenly among its children as
+     * their estimated size.
+     */
+    private void descend(Position<E> node, long size, Deque<Position<E>> nodes,
+                         Deque<Iterator<? extends Position<E>>> stack, Deque<Long> shares) {
+        List<Position<E>> children = new ArrayList<>();
+        for (Position<E> child : children(node)) {
+            children.add(child);
+        }
+        nodes.push(node);
+        stack.push(children.iterator());
+        shares.push(Math.max(1, (size - 1) / Math.max(1, children.size())));
+    }
+
+    /**
+     * Hand the edges rendered by the walk itself over: straight to the writer if no chunk is waiting, or behind
+     * the waiting chunks otherwise. The window is then drained as after submitting a task, so that a long walk
+     * between two tasks does not pile its text up behind them.
+     */
+    private static void emit(StringBuilder sb, Deque<Supplier<String>> window, int inFlight, Writer out)
+            throws IOException {
+        if (sb.length() == 0) {
+            return;
+        }
+        if (window.isEmpty()) {
+            out.append(sb);
+        } else {
+            String text = sb.toString();
+            window.add(() -> text);
+            drain(window, inFlight, out);
+        }
+        sb.setLength(0);
+    }
+
+    /**
+     * Write the oldest chunks of the window, joining their tasks, until at most limit chunks are left.
+     */
+    private static void drain(Deque<Supplier<String>> window, int limit, Writer out) throws IOException {
+        while (window.size() > limit) {
+            out.write(window.poll().get());
+        }
+    }
+
+    /**
+     * Write the DOT representation of the tree to a channel in UTF-8. The channel is not closed.
+     *
+     * @param channel the channel
+     * @throws IOException if there is an error writing
+     */
+    public void writeDot(WritableByteChannel channel) throws IOException {
+        writeDot(channel, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write the DOT representation of the tree to a channel, encoding it in a given charset as it is generated.
+     * The encoder is ended and flushed before returning, so charsets that write a closing sequence are complete,
+     * but the channel is not closed.
+     *
+     * @param channel the channel
+     * @param charset the charset of the output
+     * @throws IOException if there is an error writing
+     */
+    public void writeDot(WritableByteChannel channel, Charset charset) throws IOException {
+        ChannelWriter out = new ChannelWriter(channel, charset.newEncoder());
+        writeDot(out);
+        out.finish();
+    }
+
+    /**
+     * A writer that encodes characters into a channel and leaves the channel open. Unlike the writer of
+     * {@link Channels#newWriter(WritableByteChannel, CharsetEncoder, int)}, it can end the encoding without closing
+     * the channel.
+     */
+    private static final class ChannelWriter extends Writer {
+
+        private final WritableByteChannel channel;
+
+        private final CharsetEncoder encoder;
+
+        private final CharBuffer chars = CharBuffer.allocate(BUFFER);
+
+        private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER);
+
+        ChannelWriter(WritableByteChannel channel, CharsetEncoder encoder) {
+            this.channel = channel;
+            this.encoder = encoder;
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            while (length > 0) {
+                int n = Math.min(length, chars.remaining());
+                chars.put(buffer, offset, n);
+                offset += n;
+                length -= n;
+                if (!chars.hasRemaining()) {
+                    encode(false);
+                }
+            }
+        }
+
+        /**
+         * Encode the pending characters. Unless the input ends, a trailing half of a surrogate pair is kept for
+         * the next call.
+         */
+        private void encode(boolean endOfInput) throws IOException {
+            chars.flip();
+            CoderResult result = encoder.encode(chars, bytes, endOfInput);
+            while (result.isOverflow()) {
+                drain();
+                result = encoder.encode(chars, bytes, endOfInput);
+            }
+            if (result.isError()) {
+                result.throwException();
+            }
+            chars.compact();
+        }
+
+        private void drain() throws IOException {
+            bytes.flip();
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            bytes.clear();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            encode(false);
+            drain();
+        }
+
+        /**
+         * End the encoding and write everything to the channel, which stays open.
+         */
+        void finish() throws IOException {
+            encode(true);
+            while (encoder.flush(bytes).isOverflow()) {
+                drain();
+            }
+            drain();
+        }
+
+        /**
+         * End the encoding; the channel is not closed.
+         */
+        @Override
+        public void close() throws IOException {
+            finish();
+        }
+    }
+
+    /**
+     * Render the edges from a node to a run of its children and the edges of their subtrees.
+     *
+     * @param parent   the parent of the run
+     * @param siblings the children of the run, in order
+     * @return the DOT lines of the edges
+     */
+    private String renderRun(Position<E> parent, List<Position<E>> siblings) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (Position<E> child : siblings) {
+            appendEdge(parent, child, sb);
+            appendEdges(child, sb, null);
         }
-        sb.append("}");
         return sb.toString();
     }
 
+    private void appendEdge(Position<E> parent, Position<E> child, StringBuilder sb) {
+        sb.append("\"").append(parent.getElement()).append("\" -> \"").append(child.getElement()).append("\";\n");
+    }
 
     /**
-     * Recursively generate the DOT representation of the tree starting from the given node.
+     * Generate the DOT representation of the tree starting from the given node, in pre-order. The walk keeps
+     * its own stack of child iterators instead of recursing, so that very deep trees do not overflow the call stack.
      *
      * @param node the starting node
      * @param sb   the StringBuilder to append the DOT representation to
+     * @param out  the writer that takes the content of sb whenever it is full, or null to keep everything in sb
+     * @throws IOException if there is an error writing
      */
-    private void toDot(Position<E> node, StringBuilder sb) {
-        for (Position<E> child : children(node)) {
-            sb.append("\"").append(node.getElement()).append("\" -> \"").append(child.getElement()).append("\";\n");
-            toDot(child, sb);
+    private void appendEdges(Position<E> node, StringBuilder sb, Writer out) throws IOException {
+        Deque<Position<E>> nodes = new ArrayDeque<>();
+        Deque<Iterator<? extends Position<E>>> stack = new ArrayDeque<>();
+        nodes.push(node);
+        stack.push(children(node).iterator());
+        while (!stack.isEmpty()) {
+            if (stack.peek().hasNext()) {
+                Position<E> child = stack.peek().next();
+                appendEdge(nodes.peek(), child, sb);
+                if (out != null && sb.length() >= BUFFER) {
+                    out.append(sb);
+                    sb.setLength(0);
+                }
+                nodes.push(child);
+                stack.push(children(child).iterator());
+            } else {
+                nodes.pop();
+                stack.pop();
+            }
         }
     }
 
     /**
-     * Save the DOT representation of the tree to a file.
+     * Save the DOT representation of the tree to a file in UTF-8. The file is written as the graph is generated.
      *
      * @param fileName the name of the file to save the DOT representation to
      * @throws IOException if there is an error writing to the file
@@ -48,12 +413,84 @@ public abstract class DrawableTree<E> implements NAryTree<E> {
      */
     public String saveDotToFile(String fileName) throws IOException {
         String filePath = System.getProperty("user.dir") + "/" + fileName;
-        Files.write(Paths.get(filePath), toDot().getBytes());
+        try (Writer out = Files.newBufferedWriter(Paths.get(filePath), StandardCharsets.UTF_8)) {
+            writeDot(out);
+        }
         return filePath;
     }
 
     /**
-     * Generate an image using the dot generate by the saveDotToFile method.
+     * Generate an SVG drawing of the tree. The nodes are placed with a tidy tree layout computed in linear time,
+     * without any external program.
+     *
+     * @return a string with the SVG document
+     */
+    public String toSvg() {
+        StringWriter out = new StringWriter();
+        try {
+            writeSvg(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Write an SVG drawing of the tree to a writer. The writer is flushed but not closed.
+     *
+     * @param out the writer
+     * @throws IOException if there is an error writing
+     */
+    public void writeSvg(Writer out) throws IOException {
+        new TreeLayout(this).writeSvg(out);
+    }
+
+    /**
+     * Generate an SVG drawing of the part of the tree kept by some level-of-detail options, with the hidden parts
+     * drawn as dashed boxes.
+     *
+     * @param options what to hide
+     * @return a string with the SVG document
+     */
+    public String toSvg(DrawOptions options) {
+        StringWriter out = new StringWriter();
+        try {
+            writeSvg(out, options);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Write an SVG drawing of the part of the tree kept by some level-of-detail options to a writer. The writer is
+     * flushed but not closed.
+     *
+     * @param out     the writer
+     * @param options what to hide
+     * @throws IOException if there is an error writing
+     */
+    public void writeSvg(Writer out, DrawOptions options) throws IOException {
+        new TreeLayout(new TreeSketch(this, options)).writeSvg(out);
+    }
+
+    /**
+     * Save an SVG drawing of the tree to a file in UTF-8.
+     *
+     * @param fileName the name of the file to save the drawing to
+     * @return a string with the absolute path of the file
+     * @throws IOException if there is an error writing to the file
+     */
+    public String saveSvgToFile(String fileName) throws IOException {
+        String filePath = System.getProperty("user.dir") + "/" + fileName;
+        try (Writer out = Files.newBufferedWriter(Paths.get(filePath), StandardCharsets.UTF_8)) {
+            writeSvg(out);
+        }
+        return filePath;
+    }
+
+    /**
+     * Generate an SVG image of the tree with the saveSvgToFile method.
      */
 
     public void generateImage() {
@@ -62,15 +499,16 @@ public abstract class DrawableTree<E> implements NAryTree<E> {
     }
 
 
-        /**
-     * Generate an image using the dot generate by the saveDotToFile method.
+    /**
+     * Generate an SVG image of the tree with the saveSvgToFile method. The drawing is made in-process, so no
+     * external dot process is started.
+     *
+     * @param name the name of the image file, without the .svg extension
      */
 
     public void generateImage(String name) {
         try {
-            String filePath = "\"" + saveDotToFile(name + ".dot");
-            String[] cmd = {"dot", "-Tpng", filePath + "\"", "-o", filePath + ".png\""};
-            Runtime.getRuntime().exec(cmd);
+            saveSvgToFile(name + ".svg");
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -0,0 +1,95 @@
+import java.nio.ByteBuffer;
+
+/**
+ * A fixed-width binary encoding of the elements of a tree, used by the trees that keep their nodes outside of the
+ * Java heap.
+ *
+ * @param <E> the type of the encoded elements
+ */
+public interface ElementCodec<E> {
+
+    /**
+     * Encoding of Integer elements in 4 bytes.
+     */
+    ElementCodec<Integer> INT = new ElementCodec<>() {
+        @Override
+        public int width() {
+            return Integer.BYTES;
+        }
+
+        @Override
+        public void write(ByteBuffer buffer, int offset, Integer element) {
+            buffer.putInt(offset, element);
+        }
+
+        @Override
+        public Integer read(ByteBuffer buffer, int offset) {
+            return buffer.getInt(offset);
+        }
+    };
+
+    /**
+     * Encoding of Long elements in 8 bytes.
+     */
+    ElementCodec<Long> LONG = new ElementCodec<>() {
+        @Override
+        public int width() {
+            return Long.BYTES;
+        }
+
+        @Override
+        public void write(ByteBuffer buffer, int offset, Long element) {
+            buffer.putLong(offset, element);
+        }
+
+        @Override
+        public Long read(ByteBuffer buffer, int offset) {
+            return buffer.getLong(offset);
+        }
+    };
+
+    /**
+     * Encoding of Double elements in 8 bytes.
+     */
+    ElementCodec<Double> DOUBLE = new ElementCodec<>() {
+        @Override
+        public int width() {
+            return Double.BYTES;
+        }
+
+        @Override
+        public void write(ByteBuffer buffer, int offset, Double element) {
+            buffer.putDouble(offset, element);
+        }
+
+        @Override
+        public Double read(ByteBuffer buffer, int offset) {
+            return buffer.getDouble(offset);
+        }
+    };
+
+    /**
+     * Returns the number of bytes used by every encoded element.
+     *
+     * @return the width of an element in bytes
+     */
+    int width();
+
+    /**
+     * Encode an element at the given absolute offset of a buffer.
+     *
+     * @param buffer  the target buffer
+     * @param offset  the offset of the first byte
+     * @param element the element to encode, never null
+     */
+    void write(ByteBuffer buffer, int offset, E element);
+
+    /**
+     * Decode the element stored at the given absolute offset of a buffer.
+     *
+     * @param buffer the source buffer
+     * @param offset the offset of the first byte
+     * @return the decoded element
+     */
+    E read(ByteBuffer buffer, int offset);
+}
@@ -0,0 +1,135 @@
+import java.util.Arrays;
+
+
+/**
+ * An array-backed implementation of the IntNAryTree interface.
+ * <p>
+ * Nodes are slots of parallel int arrays and the elements are kept in an int array, so adding nodes, reading
+ * elements and traversing the tree never box.
+ */
+public class IntArrayTree extends PrimitiveArrayTree implements IntNAryTree {
+
+    /**
+     * Topology plus an int element array.
+     */
+    private static class IntStorage extends Storage {
+
+        private int[] values;
+
+        IntStorage(int initialCapacity) {
+            super(initialCapacity);
+            values = new int[nodes.capacity()];
+        }
+
+        @Override
+        int elementCapacity() {
+            return values.length;
+        }
+
+        @Override
+        void growElements(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void swap(int i, int j) {
+            int aux = values[i];
+            values[i] = values[j];
+            values[j] = aux;
+        }
+
+        @Override
+        void copy(Storage from, int src, int dst) {
+            values[dst] = ((IntStorage) from).values[src];
+        }
+    }
+
+    /**
+     * Creates an empty tree.
+     */
+    public IntArrayTree() {
+        this(16);
+    }
+
+    /**
+     * Creates an empty tree able to hold the given number of nodes before growing its arrays.
+     *
+     * @param initialCapacity the number of nodes to reserve room for
+     */
+    public IntArrayTree(int initialCapacity) {
+        super(new IntStorage(initialCapacity), NONE, 0);
+    }
+
+    private IntArrayTree(Storage store, int root, int size) {
+        super(store, root, size);
+    }
+
+    private int[] values() {
+        return ((IntStorage) store).values;
+    }
+
+    @Override
+    public int getElement(int v) {
+        return values()[checkNode(v)];
+    }
+
+    @Override
+    public int addRoot(int e) {
+        int node = allocateRoot();
+        values()[node] = e;
+        return node;
+    }
+
+    @Override
+    public int add(int element, int p) {
+        int node = allocateChild(p);
+        values()[node] = element;
+        return node;
+    }
+
+    @Override
+    public int add(int element, int p, int n) {
+        int node = allocateChild(p, n);
+        values()[node] = element;
+        return node;
+    }
+
+    @Override
+    public int replace(int p, int e) {
+        int[] values = values();
+        int old = values[checkNode(p)];
+        values[p] = e;
+        return old;
+    }
+
+    @Override
+    public IntNAryTree subTree(int v) {
+        return new IntArrayTree(store, v, countSubtree(v));
+    }
+
+    @Override
+    public void attach(int p, IntNAryTree t) {
+        if (!(t instanceof IntArrayTree)) {
+            throw new RuntimeException("The tree is invalid");
+        }
+        attachTree(p, (IntArrayTree) t);
+    }
+
+    @Override
+    public void forEachBreadthFirst(Visitor visitor) {
+        int[] values = values();
+        breadthFirst(i -> visitor.visit(i, values[i]));
+    }
+
+    @Override
+    public void forEachPreOrder(Visitor visitor) {
+        int[] values = values();
+        preOrder(i -> visitor.visit(i, values[i]));
+    }
+
+    @Override
+    public void forEachPostOrder(Visitor visitor) {
+        int[] values = values();
+        postOrder(i -> visitor.visit(i, values[i]));
+    }
+}
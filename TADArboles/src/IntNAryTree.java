@@ -0,0 +1,196 @@
+/**
+ * An n-ary tree specialized for int elements.
+ * <p>
+ * It mirrors the operations of {@link NAryTree}, but nodes are identified by int indexes and elements are plain
+ * ints, so that neither the positions nor the elements are boxed. The index -1 denotes a missing node.
+ */
+public interface IntNAryTree {
+
+    /**
+     * Receives the nodes of a traversal together with their elements.
+     */
+    @FunctionalInterface
+    interface Visitor {
+
+        /**
+         * Visit a node.
+         *
+         * @param node    the index of the node
+         * @param element the element stored at the node
+         */
+        void visit(int node, int element);
+    }
+
+    /**
+     * Returns whether the tree is empty.
+     *
+     * @return true if the tree is empty, false otherwise.
+     */
+    public boolean isEmpty();
+
+    /**
+     * Return the number of elements stored in the tree.
+     *
+     * @return the number of elements in the tree
+     */
+    public int size();
+
+    /**
+     * Returns the root of the tree.
+     *
+     * @return the root node, or -1 if the tree is empty.
+     */
+    public int root();
+
+    /**
+     * Returns the parent of a given node.
+     *
+     * @param v the node whose parent is to be returned.
+     * @return the parent node, or -1 if v has no parent.
+     */
+    public int parent(int v);
+
+    /**
+     * Returns the first child of a given node.
+     *
+     * @param v the node
+     * @return the first child, or -1 if v is a leaf
+     */
+    public int firstChild(int v);
+
+    /**
+     * Returns the next sibling of a given node.
+     *
+     * @param v the node
+     * @return the next sibling, or -1 if v is the last child of its parent or the root of the tree
+     */
+    public int nextSibling(int v);
+
+    /**
+     * Returns the number of children of a given node.
+     *
+     * @param v the node
+     * @return the number of children of v
+     */
+    public int childCount(int v);
+
+    /**
+     * Returns whether a given node is internal.
+     *
+     * @param v the node to be tested.
+     * @return true if the node is internal, false otherwise.
+     */
+    public boolean isInternal(int v);
+
+    /**
+     * Returns whether a given node is external.
+     *
+     * @param v the node to be tested.
+     * @return true if the node is external, false otherwise.
+     */
+    public boolean isLeaf(int v);
+
+    /**
+     * Returns whether a given node is the root of the tree.
+     *
+     * @param v the node to be tested.
+     * @return true if the node is the root of the tree, false otherwise.
+     */
+    public boolean isRoot(int v);
+
+    /**
+     * Return the element stored at a node.
+     *
+     * @param v the node
+     * @return the element stored at v
+     */
+    public int getElement(int v);
+
+    /**
+     * Adds a root node to an empty tree
+     *
+     * @param e The element stored at the new root
+     * @return The new root
+     */
+    public int addRoot(int e);
+
+    /**
+     * Add a new node whose parent is a given node.
+     *
+     * @param element The element stored in the new created node.
+     * @param p       The parent
+     * @return The new node.
+     */
+    public int add(int element, int p);
+
+    /**
+     * Add a new node whose parent is a given node, and set the child at the position n if possible.
+     *
+     * @param element The element stored in the new created node.
+     * @param p       The parent
+     * @param n       The position of the child
+     * @return The new node.
+     */
+    public int add(int element, int p, int n);
+
+    /**
+     * Swap the elements at two nodes
+     *
+     * @param p1 The first node
+     * @param p2 The second node
+     */
+    public void swapElements(int p1, int p2);
+
+    /**
+     * Replaces the element at a node.
+     *
+     * @param p The node whose element is replaced.
+     * @param e The new element
+     * @return The old element
+     */
+    public int replace(int p, int e);
+
+    /**
+     * Remove a node and its corresponding subtree rooted at node.
+     *
+     * @param p The node to be removed.
+     */
+    public void remove(int p);
+
+    /**
+     * Create un new tree from node v of the same type that invoked class.
+     *
+     * @param v new root node
+     * @return The new tree.
+     */
+    public IntNAryTree subTree(int v);
+
+    /**
+     * Attach tree t as children of node p if t and "this" are of the same class.
+     *
+     * @param p Node in which t will be attached.
+     * @param t Tree to be attached.
+     */
+    public void attach(int p, IntNAryTree t);
+
+    /**
+     * Visit every node in breadth-first order.
+     *
+     * @param visitor the callback receiving each node and its element
+     */
+    public void forEachBreadthFirst(Visitor visitor);
+
+    /**
+     * Visit every node in pre-order.
+     *
+     * @param visitor the callback receiving each node and its element
+     */
+    public void forEachPreOrder(Visitor visitor);
+
+    /**
+     * Visit every node in post-order.
+     *
+     * @param visitor the callback receiving each node and its element
+     */
+    public void forEachPostOrder(Visitor visitor);
+}
@@ -0,0 +1,39 @@
+/**
+ * Validity of the pre/post-order interval labels of a linked tree structure.
+ * <p>
+ * Every node of a labelled structure holds a pre label and a post label such that a node is an ancestor of another
+ * exactly when its interval [pre, post] contains the interval of the other. Labels are spaced {@link #GAP} apart
+ * when the structure is (re)labelled, so that new leaves can usually take an interval inside the gap left by their
+ * neighbours; when there is no room left the labels are marked invalid and rebuilt on the next query.
+ * <p>
+ * A tree and all the trees obtained from it with subTree share one instance, since they share the nodes.
+ */
+final class IntervalLabels {
+
+    /**
+     * Distance between two consecutive labels after a relabelling.
+     */
+    static final long GAP = 1L << 16;
+
+    /**
+     * Whether every node of the structure holds consistent labels.
+     */
+    boolean valid;
+
+    /**
+     * Computes the interval of a new leaf whose interval must lie strictly between two labels.
+     *
+     * @param lower the label the new interval must follow
+     * @param upper the label the new interval must precede
+     * @return the pre label of the new leaf (its post label is {@code lower + 2 * (pre - lower)}), or -1 if there
+     * is no room and the labels have been invalidated
+     */
+    long leafBetween(long lower, long upper) {
+        long step = (upper - lower) / 3;
+        if (step == 0) {
+            valid = false;
+            return -1;
+        }
+        return lower + step;
+    }
+}
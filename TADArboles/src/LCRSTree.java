@@ -1,8 +1,22 @@
 import material.Position;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 
 /**
@@ -22,6 +36,16 @@ public class LCRSTree<E> extends DrawableTree<E> {
      */
     private int size;
 
+    /**
+     * The state of the ancestor labels, shared with the trees obtained with subTree.
+     */
+    private IntervalLabels labels = new IntervalLabels();
+
+    /**
+     * Target number of children between two consecutive skip links of a node.
+     */
+    static final int SKIP = 64;
+
 
     private class LCRSnode<T> implements Position<T> {
 
@@ -45,6 +69,58 @@ public class LCRSTree<E> extends DrawableTree<E> {
          */
         private LCRSnode<T> rightSibling;
 
+        /**
+         * A reference to the left sibling of this node, so that it can be unlinked in O(1).
+         */
+        private LCRSnode<T> leftSibling;
+
+        /**
+         * The block of the skip links of its parent that this node is the first child of, or null.
+         */
+        private Block<T> block;
+
+        /**
+         * A reference to the last child of this node, so that appending a child is O(1).
+         */
+        private LCRSnode<T> lastChild;
+
+        /**
+         * The number of children of this node.
+         */
+        private int childCount;
+
+        /**
+         * Skip links for indexed access to the children. Null until an indexed insertion needs them.
+         */
+        private ChildIndex skips;
+
+        /**
+         * The number of nodes of the subtree rooted at this node, including the node itself.
+         */
+        private int size = 1;
+
+        /**
+         * The number of ancestors of this node in the structure it belongs to.
+         */
+        private int depth;
+
+        /**
+         * The cached height of this node, or -1 if it has to be recomputed.
+         */
+        private int height;
+
+        /**
+         * The pre-order and post-order interval labels of this node, see {@link IntervalLabels}.
+         */
+        private long pre;
+
+        private long post;
+
+        /**
+         * Whether this node has been removed, together with the rest of a removed subtree.
+         */
+        private boolean removed;
+
 
         /**
          * A constructor that allows you to set all the attributes of the nodes.
@@ -57,6 +133,7 @@ public class LCRSTree<E> extends DrawableTree<E> {
         public LCRSnode(T element, LCRSnode<T> parent, LCRSnode<T> leftChild, LCRSnode<T> rightSibling) {
             this.element = element;
             this.parent = parent;
+            this.depth = parent == null ? 0 : parent.depth + 1;
             this.leftChild = leftChild;
             this.rightSibling = rightSibling;
         }
@@ -154,6 +231,24 @@ public class LCRSTree<E> extends DrawableTree<E> {
             this.rightSibling = rightSibling;
         }
 
+        /**
+         * Returns the left sibling of this node.
+         *
+         * @return the left sibling of this node
+         */
+        public LCRSnode<T> getLeftSibling() {
+            return leftSibling;
+        }
+
+        /**
+         * Sets the left sibling of this node.
+         *
+         * @param leftSibling the left sibling of this node
+         */
+        public void setLeftSibling(LCRSnode<T> leftSibling) {
+            this.leftSibling = leftSibling;
+        }
+
         /**
          * Returns a string representation of the node.
          *
@@ -167,12 +262,82 @@ public class LCRSTree<E> extends DrawableTree<E> {
     }
 
 
+    /**
+     * Build a tree from the parent of every node in linear time. Node i stores elements.get(i) and its parent is
+     * node parents[i], or -1 for the root. The children of a node are ordered by their numbers.
+     *
+     * @param elements the element of every node
+     * @param parents  the parent of every node, -1 for the root
+     * @param <E>      the type of the elements
+     * @return the new tree
+     * @throws RuntimeException if the parents do not describe a single tree of all the elements
+     */
+    public static <E> LCRSTree<E> fromParents(List<? extends E> elements, int[] parents) {
+        LCRSTree<E> tree = new LCRSTree<>();
+        tree.build(elements, TreeShape.fromParents(parents));
+        return tree;
+    }
+
+    /**
+     * Build a tree from its edges in linear time. Node i stores elements.get(i), every edge is a {parent, child}
+     * pair of node numbers and the node that is no child is the root. The children of a node are ordered as their
+     * edges.
+     *
+     * @param elements the element of every node
+     * @param edges    the edges of the tree
+     * @param <E>      the type of the elements
+     * @return the new tree
+     * @throws RuntimeException if the edges do not describe a single tree of all the elements
+     */
+    public static <E> LCRSTree<E> fromEdges(List<? extends E> elements, Stream<int[]> edges) {
+        LCRSTree<E> tree = new LCRSTree<>();
+        tree.build(elements, TreeShape.fromEdges(elements.size(), edges));
+        return tree;
+    }
+
+    /**
+     * Create and link the nodes of an empty tree breadth-first, appending every child in O(1), and then set the
+     * subtree sizes and heights bottom-up.
+     *
+     * @param elements the element of every node
+     * @param shape    the shape of the tree
+     */
+    @SuppressWarnings("unchecked")
+    private void build(List<? extends E> elements, TreeShape shape) {
+        int n = shape.size();
+        if (elements.size() != n) {
+            throw new RuntimeException("The tree is invalid");
+        }
+        if (n == 0) {
+            return;
+        }
+        Object[] nodes = new Object[n];
+        root = new LCRSnode<>(elements.get(shape.order[0]));
+        nodes[shape.order[0]] = root;
+        for (int v : shape.order) {
+            var node = (LCRSnode<E>) nodes[v];
+            for (int k = shape.start[v]; k < shape.start[v + 1]; k++) {
+                int c = shape.children[k];
+                var child = new LCRSnode<>(elements.get(c), node);
+                appendChild(node, child);
+                nodes[c] = child;
+            }
+        }
+        for (int i = n - 1; i > 0; i--) {
+            var node = (LCRSnode<E>) nodes[shape.order[i]];
+            node.parent.size += node.size;
+            node.parent.height = Math.max(node.parent.height, node.height + 1);
+        }
+        size = n;
+    }
+
     @Override
     public Position<E> addRoot(E e) {
         if (!isEmpty()) {
             throw new RuntimeException("Tree already has a root");
         }
         this.root = new LCRSnode<>(e);
+        labels.valid = false;
         this.size = 1;
         return this.root;
     }
@@ -188,30 +353,290 @@ public class LCRSTree<E> extends DrawableTree<E> {
     public Position<E> add(E element, Position<E> p) {
         LCRSnode<E> parent = checkPosition(p);
         LCRSnode<E> newNode = new LCRSnode<>(element, parent);
-        if (parent.getLeftChild() == null) {
-            parent.setLeftChild(newNode);
-        } else {
-            LCRSnode<E> leftChild = parent.getLeftChild();
-            while (leftChild.getRightSibling() != null) {
-                leftChild = leftChild.getRightSibling();
-            }
-            leftChild.setRightSibling(newNode);
-        }
+        labelLeaf(newNode, parent.lastChild == null ? parent.pre : parent.lastChild.post, parent.post);
+        appendChild(parent, newNode);
+        updateSizes(parent, 1);
+        invalidateHeights(parent);
         this.size++;
         return newNode;
     }
 
     private LCRSnode<E> checkPosition(Position<E> p) {
-        if (!(p instanceof LCRSnode)) {
+        if (!(p instanceof LCRSnode) || ((LCRSnode<E>) p).removed) {
             throw new RuntimeException("The position is invalid");
         }
         return (LCRSnode<E>) p;
     }
 
 
+    /**
+     * Link a node as the last child of a parent, in O(1) through the last-child pointer.
+     *
+     * @param parent The parent node
+     * @param child  The node to link
+     */
+    private void appendChild(LCRSnode<E> parent, LCRSnode<E> child) {
+        if (parent.lastChild == null) {
+            parent.setLeftChild(child);
+        } else {
+            parent.lastChild.setRightSibling(child);
+        }
+        child.setLeftSibling(parent.lastChild);
+        parent.lastChild = child;
+        parent.childCount++;
+        if (parent.skips != null) {
+            parent.skips.appended(child);
+        }
+    }
+
+    /**
+     * A block of consecutive children in the skip links of their parent.
+     */
+    private final class Block<T> {
+
+        private LCRSnode<T> first;
+
+        private int count;
+
+        private Block<T> previous;
+
+        private Block<T> next;
+
+        Block(LCRSnode<T> first, int count) {
+            this.first = first;
+            this.count = count;
+            first.block = this;
+        }
+    }
+
+    /**
+     * Skip links over the children of a node. The children are split in a list of consecutive blocks of at most
+     * 2 * SKIP nodes, and every block keeps its first child and its number of children. The first child of a block
+     * points back to it. Finding the child at an index scans the block counts from the nearest end of the list,
+     * linear in the number of blocks, that is the number of children / SKIP, and then walks less than 2 * SKIP
+     * siblings. A removal walks back less than 2 * SKIP siblings to the first child of its block and reaches the
+     * block through it, so it does not depend on the number of blocks, and appending a child only updates the last
+     * block.
+     */
+    private class ChildIndex {
+
+        private Block<E> head;
+
+        private Block<E> tail;
+
+        /**
+         * The number of indexed children.
+         */
+        private int total;
+
+        /**
+         * The index within its block of the child located by the last call to {@link #block(int)}.
+         */
+        private int offset;
+
+        /**
+         * Build the skip links of a node by walking its children once.
+         *
+         * @param parent the node whose children are indexed
+         */
+        ChildIndex(LCRSnode<E> parent) {
+            int i = 0;
+            for (var child = parent.getLeftChild(); child != null; child = child.getRightSibling()) {
+                if (i++ % SKIP == 0) {
+                    insertAfter(tail, child, 0);
+                }
+                tail.count++;
+            }
+            total = i;
+        }
+
+        /**
+         * Return the block holding the child at an index, and leave the index within that block in offset.
+         */
+        private Block<E> block(int index) {
+            if (index < total / 2) {
+                Block<E> block = head;
+                while (index >= block.count) {
+                    index -= block.count;
+                    block = block.next;
+                }
+                offset = index;
+                return block;
+            }
+            // the first index of the block, counted from the end of the list
+            int start = total;
+            Block<E> block = tail;
+            while (index < start - block.count) {
+                start -= block.count;
+                block = block.previous;
+            }
+            offset = index - (start - block.count);
+            return block;
+        }
+
+        /**
+         * Return the child at a given index.
+         *
+         * @param index the index of the child, between 0 and the number of children - 1
+         * @return the child at that index
+         */
+        LCRSnode<E> get(int index) {
+            LCRSnode<E> child = block(index).first;
+            for (int i = 0; i < offset; i++) {
+                child = child.getRightSibling();
+            }
+            return child;
+        }
+
+        /**
+         * Record a child appended after the last one.
+         *
+         * @param child the new last child
+         */
+        void appended(LCRSnode<E> child) {
+            total++;
+            if (tail == null) {
+                insertAfter(null, child, 1);
+            } else {
+                tail.count++;
+                split(tail);
+            }
+        }
+
+        /**
+         * Record a child inserted at a given index, which is already linked in the sibling chain.
+         *
+         * @param child the new child
+         * @param index its index
+         */
+        void inserted(LCRSnode<E> child, int index) {
+            if (head == null) {
+                insertAfter(null, child, 1);
+            } else if (index == 0) {
+                setFirst(head, child);
+                head.count++;
+                split(head);
+            } else {
+                // the new child joins the block of its previous sibling
+                Block<E> block = block(index - 1);
+                block.count++;
+                split(block);
+            }
+            total++;
+        }
+
+        /**
+         * Record the removal of a child. Must be called before the child is unlinked. The block of the child is
+         * reached by walking back to the first child of its block, less than 2 * SKIP links.
+         *
+         * @param child the removed child
+         */
+        void removed(LCRSnode<E> child) {
+            LCRSnode<E> first = child;
+            while (first.block == null) {
+                first = first.getLeftSibling();
+            }
+            Block<E> block = first.block;
+            total--;
+            if (--block.count == 0) {
+                remove(block);
+                return;
+            }
+            if (first == child) {
+                setFirst(block, child.getRightSibling());
+            }
+            // keep the number of blocks proportional to the number of children
+            if (block.next != null && block.count + block.next.count <= SKIP) {
+                block.count += block.next.count;
+                remove(block.next);
+            }
+        }
+
+        /**
+         * Split a block in two if it has grown past 2 * SKIP children.
+         */
+        private void split(Block<E> block) {
+            if (block.count <= 2 * SKIP) {
+                return;
+            }
+            LCRSnode<E> middle = block.first;
+            for (int i = 0; i < SKIP; i++) {
+                middle = middle.getRightSibling();
+            }
+            insertAfter(block, middle, block.count - SKIP);
+            block.count = SKIP;
+        }
+
+        private void setFirst(Block<E> block, LCRSnode<E> first) {
+            block.first.block = null;
+            first.block = block;
+            block.first = first;
+        }
+
+        /**
+         * Link a new block after another one, or at the front if previous is null.
+         */
+        private void insertAfter(Block<E> previous, LCRSnode<E> first, int count) {
+            Block<E> block = new Block<>(first, count);
+            block.previous = previous;
+            block.next = previous == null ? head : previous.next;
+            if (block.next == null) {
+                tail = block;
+            } else {
+                block.next.previous = block;
+            }
+            if (previous == null) {
+                head = block;
+            } else {
+                previous.next = block;
+            }
+        }
+
+        private void remove(Block<E> block) {
+            block.first.block = null;
+            if (block.previous == null) {
+                head = block.next;
+            } else {
+                block.previous.next = block.next;
+            }
+            if (block.next == null) {
+                tail = block.previous;
+            } else {
+                block.next.previous = block.previous;
+            }
+        }
+    }
+
+    /**
+     * Return the child of a node at a given index, building the skip links of the node if the index is past the
+     * first SKIP children.
+     *
+     * @param parent The parent node
+     * @param index  The index of the child, between 0 and childCount - 1
+     * @return The child at that index
+     */
+    private LCRSnode<E> childAt(LCRSnode<E> parent, int index) {
+        if (index == parent.childCount - 1) {
+            return parent.lastChild;
+        }
+        if (parent.skips == null && index >= SKIP) {
+            parent.skips = new ChildIndex(parent);
+        }
+        if (parent.skips != null) {
+            return parent.skips.get(index);
+        }
+        LCRSnode<E> child = parent.getLeftChild();
+        for (int i = 0; i < index; i++) {
+            child = child.getRightSibling();
+        }
+        return child;
+    }
+
     /**
      * Add a new node whose parent is pointed by a given position, and set the
-     * child at the position n if possible.
+     * child at the position n if possible. If n is greater than the number of children the node is appended.
+     * Past the first SKIP children the insertion point is found through the skip links of the parent, which are
+     * built on the first such insertion and maintained afterwards.
      *
      * @param element The element stored in the new created node.
      * @param p       The position of the parent
@@ -221,22 +646,32 @@ public class LCRSTree<E> extends DrawableTree<E> {
     @Override
     public Position<E> add(E element, Position<E> p, int n) {
         LCRSnode<E> parent = checkPosition(p);
-        LCRSnode<E> newNode = new LCRSnode<>(element, parent);
         if (n < 0) {
             throw new RuntimeException("The position is invalid");
-        } else if (n == 0) {
+        }
+        if (n >= parent.childCount) {
+            return add(element, p);
+        }
+        LCRSnode<E> newNode = new LCRSnode<>(element, parent);
+        if (n == 0) {
+            labelLeaf(newNode, parent.pre, parent.getLeftChild().pre);
             newNode.setRightSibling(parent.getLeftChild());
+            parent.getLeftChild().setLeftSibling(newNode);
             parent.setLeftChild(newNode);
         } else {
-            LCRSnode<E> leftChild = parent.getLeftChild();
-            int i = 1;
-            while (i < n && leftChild.getRightSibling() != null) {
-                leftChild = leftChild.getRightSibling();
-                i++;
-            }
-            newNode.setRightSibling(leftChild.getRightSibling());
-            leftChild.setRightSibling(newNode);
+            LCRSnode<E> previous = childAt(parent, n - 1);
+            labelLeaf(newNode, previous.post, previous.getRightSibling().pre);
+            newNode.setRightSibling(previous.getRightSibling());
+            newNode.setLeftSibling(previous);
+            previous.getRightSibling().setLeftSibling(newNode);
+            previous.setRightSibling(newNode);
+        }
+        parent.childCount++;
+        if (parent.skips != null) {
+            parent.skips.inserted(newNode, n);
         }
+        updateSizes(parent, 1);
+        invalidateHeights(parent);
         this.size++;
         return newNode;
     }
@@ -266,41 +701,239 @@ public class LCRSTree<E> extends DrawableTree<E> {
         if (node == root) {
             root = null;
             size = 0;
+            // the root of a subTree view stays in the tree it was taken from
+            if (node.getParent() == null) {
+                markRemoved(node);
+            }
         } else {
             LCRSnode<E> parent = node.getParent();
-            if (parent.getLeftChild() == node) {
-                parent.setLeftChild(node.getRightSibling());
-            } else {
-                LCRSnode<E> leftChild = parent.getLeftChild();
-                while (leftChild.getRightSibling() != node) {
-                    leftChild = leftChild.getRightSibling();
+            unlink(node);
+            updateSizes(parent, -node.size);
+            invalidateHeights(parent);
+            size -= node.size;
+            markRemoved(node);
+        }
+    }
+
+    /**
+     * Mark every node of a removed subtree, so that their positions are rejected. Every node is marked at most
+     * once, so the cost is amortized over the additions.
+     *
+     * @param top The root of the removed subtree
+     */
+    private void markRemoved(LCRSnode<E> top) {
+        Deque<LCRSnode<E>> stack = new ArrayDeque<>();
+        stack.push(top);
+        while (!stack.isEmpty()) {
+            LCRSnode<E> node = stack.pop();
+            node.removed = true;
+            for (var child = node.getLeftChild(); child != null; child = child.getRightSibling()) {
+                stack.push(child);
+            }
+        }
+    }
+
+    /**
+     * Unlink a node from its parent and siblings through its sibling links, without scanning the children of the
+     * parent.
+     *
+     * @param node The node to unlink, which is not the root. Its parent and sibling links are cleared.
+     */
+    private void unlink(LCRSnode<E> node) {
+        LCRSnode<E> parent = node.getParent();
+        if (parent.skips != null) {
+            parent.skips.removed(node);
+        }
+        LCRSnode<E> previous = node.getLeftSibling();
+        LCRSnode<E> next = node.getRightSibling();
+        if (previous == null) {
+            parent.setLeftChild(next);
+        } else {
+            previous.setRightSibling(next);
+        }
+        if (next == null) {
+            parent.lastChild = previous;
+        } else {
+            next.setLeftSibling(previous);
+        }
+        parent.childCount--;
+        node.setParent(null);
+        node.setLeftSibling(null);
+        node.setRightSibling(null);
+    }
+
+    /**
+     * Apply the operations of a batch in order. Every operation links or unlinks its node right away in O(1), and
+     * the change in size is recorded for its parent. The recorded changes are then carried up level by level, so
+     * every affected ancestor is updated, and its height invalidated, once for the whole batch.
+     * The changes are carried up even if an operation has an invalid position, so that the operations applied
+     * before it leave the tree consistent.
+     *
+     * @param batch the batch to apply
+     * @return the positions of the added nodes, in the order of the additions
+     */
+    @Override
+    public List<Position<E>> applyBatch(MutationBatch<E> batch) {
+        List<Position<E>> added = new ArrayList<>();
+        Map<LCRSnode<E>, int[]> deltas = new IdentityHashMap<>();
+        Set<LCRSnode<E>> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        try {
+            for (MutationBatch.Operation<E> operation : batch.operations()) {
+                var target = checkPosition(operation.target(added));
+                if (!operation.remove) {
+                    var newNode = new LCRSnode<>(operation.element, target);
+                    appendChild(target, newNode);
+                    deltas.computeIfAbsent(target, node -> new int[1])[0]++;
+                    added.add(newNode);
+                } else if (target == root) {
+                    root = null;
+                    removed.add(target);
+                    if (target.getParent() == null) {
+                        markRemoved(target);
+                    }
+                } else {
+                    deltas.computeIfAbsent(target.getParent(), node -> new int[1])[0] -= target.size;
+                    unlink(target);
+                    removed.add(target);
+                    markRemoved(target);
                 }
-                leftChild.setRightSibling(node.getRightSibling());
             }
-            // Now we have to compute the size of the subtree rooted at the removed node
-            size -= computeSize(node);
+        } finally {
+            // an invalid operation leaves the ones before it applied, so their changes are carried up too
+            // deeper nodes first, so that every node has received the changes of its descendants when it is updated
+            PriorityQueue<LCRSnode<E>> pending = new PriorityQueue<>(Comparator.comparingInt(node -> -node.depth));
+            pending.addAll(deltas.keySet());
+            while (!pending.isEmpty()) {
+                var node = pending.poll();
+                int delta = deltas.get(node)[0];
+                node.size += delta;
+                node.height = -1;
+                var parent = node.getParent();
+                // the changes below a removed node do not reach the tree
+                if (parent != null && !removed.contains(node)) {
+                    int[] parentDelta = deltas.get(parent);
+                    if (parentDelta == null) {
+                        deltas.put(parent, new int[]{delta});
+                        pending.add(parent);
+                    } else {
+                        parentDelta[0] += delta;
+                    }
+                }
+            }
+            if (!added.isEmpty()) {
+                labels.valid = false;
+            }
+            size = root == null ? 0 : root.size;
+        }
+        return added;
+    }
 
+    /**
+     * Add a delta to the subtree size of a node and of all its ancestors.
+     *
+     * @param node  The deepest node whose subtree changed
+     * @param delta The number of nodes added (positive) or removed (negative)
+     */
+    private void updateSizes(LCRSnode<E> node, int delta) {
+        for (LCRSnode<E> current = node; current != null; current = current.getParent()) {
+            current.size += delta;
         }
     }
 
+    @Override
+    public int size(Position<E> v) {
+        var node = checkPosition(v);
+        return node.size;
+    }
+
     /**
-     * Compute the size of the subtree rooted at the given node.
+     * Return a stream of the positions of the tree in a given order. The subtree sizes are stored, so depth-first
+     * splits weigh subtrees exactly.
      *
-     * @param node The root node of the subtree.
-     * @return The size of the subtree.
+     * @param order the traversal order
+     * @return a stream of the positions of the tree
      */
-    private int computeSize(LCRSnode<E> node) {
-        if (node == null) {
-            return 0;
-        } else {
-            int size = 1;
-            LCRSnode<E> child = node.getLeftChild();
-            while (child != null) {
-                size += computeSize(child);
-                child = child.getRightSibling();
+    @Override
+    public Stream<Position<E>> stream(TraversalOrder order) {
+        return StreamSupport.stream(new TreeSpliterator<>(this, order, true, true), false);
+    }
+
+    @Override
+    public Stream<Position<E>> parallelStream(TraversalOrder order) {
+        return StreamSupport.stream(new TreeSpliterator<>(this, order, true, true), true);
+    }
+
+    /**
+     * Reduce the elements of the tree in parallel on a fork/join pool. The subtree sizes are stored, so the work is
+     * split exactly.
+     */
+    @Override
+    public <R> R reduce(R identity, Function<? super E, ? extends R> mapper, BinaryOperator<R> combiner,
+                        ForkJoinPool pool, int threshold) {
+        return SubtreeReduction.reduce(this, identity, mapper, combiner, pool, threshold, true);
+    }
+
+    @Override
+    boolean storesSizes() {
+        return true;
+    }
+
+    /**
+     * Mark the cached height of a node and of its ancestors as invalid. The walk stops at the first ancestor whose
+     * height is already invalid, because then all the ancestors above it are invalid too.
+     *
+     * @param node The deepest node whose subtree changed
+     */
+    private void invalidateHeights(LCRSnode<E> node) {
+        for (LCRSnode<E> current = node; current != null && current.height >= 0; current = current.getParent()) {
+            current.height = -1;
+        }
+    }
+
+    /**
+     * Return the depth of a node relative to the root of this tree. The depth is stored at insert time.
+     *
+     * @param v the node whose depth is to be returned.
+     * @return the depth of the node.
+     */
+    @Override
+    public int depth(Position<E> v) {
+        var node = checkPosition(v);
+        return node.depth - root.depth;
+    }
+
+    /**
+     * Return the height of a node. Heights are cached and only the invalidated ones are recomputed.
+     *
+     * @param v the node whose height is to be returned.
+     * @return the height of the node.
+     */
+    @Override
+    public int height(Position<E> v) {
+        var node = checkPosition(v);
+        Deque<LCRSnode<E>> stack = new ArrayDeque<>();
+        if (node.height < 0) {
+            stack.push(node);
+        }
+        while (!stack.isEmpty()) {
+            var top = stack.peek();
+            boolean ready = true;
+            for (var child = top.getLeftChild(); child != null; child = child.getRightSibling()) {
+                if (child.height < 0) {
+                    stack.push(child);
+                    ready = false;
+                }
+            }
+            if (ready) {
+                stack.pop();
+                int height = 0;
+                for (var child = top.getLeftChild(); child != null; child = child.getRightSibling()) {
+                    height = Math.max(height, child.height + 1);
+                }
+                top.height = height;
             }
-            return size;
         }
+        return node.height;
     }
 
     @Override
@@ -308,7 +941,8 @@ public class LCRSTree<E> extends DrawableTree<E> {
         var node = checkPosition(v);
         var tree = new LCRSTree<E>();
         tree.root = node;
-        tree.size = computeSize(node);
+        tree.size = node.size;
+        tree.labels = labels;
         return tree;
 
     }
@@ -317,19 +951,93 @@ public class LCRSTree<E> extends DrawableTree<E> {
     public void attach(Position<E> p, NAryTree<E> t) {
         var node = checkPosition(p);
         var tree = (LCRSTree<E>) t;
-        var leftChild = node.getLeftChild();
-        // if leftChild is null, then we set it directly
-        if (leftChild == null) {
-            node.setLeftChild(tree.root);
-        } else {
-            // otherwise, we have to get the first child
-            // of the tree and set it as the right sibling of the left child
-            while (leftChild.getRightSibling() != null) {
-                leftChild = leftChild.getRightSibling();
+        appendChild(node, tree.root);
+        tree.root.setParent(node);
+        shiftDepths(tree.root, node.depth + 1 - tree.root.depth);
+        updateSizes(node, tree.root.size);
+        invalidateHeights(node);
+        labels.valid = false;
+        this.size += tree.root.size;
+    }
+
+    /**
+     * Give a new leaf an interval between two labels, if the ancestor labels are in use.
+     *
+     * @param node  The new leaf
+     * @param lower The label the interval must follow
+     * @param upper The label the interval must precede
+     */
+    private void labelLeaf(LCRSnode<E> node, long lower, long upper) {
+        if (labels.valid) {
+            long pre = labels.leafBetween(lower, upper);
+            node.pre = pre;
+            node.post = 2 * pre - lower;
+        }
+    }
+
+    /**
+     * Label the whole structure containing this tree with spaced pre/post-order intervals, walking the links.
+     */
+    private void relabel() {
+        LCRSnode<E> top = root;
+        while (top.getParent() != null) {
+            top = top.getParent();
+        }
+        long counter = 0;
+        LCRSnode<E> node = top;
+        while (node != null) {
+            node.pre = counter;
+            counter += IntervalLabels.GAP;
+            if (node.getLeftChild() != null) {
+                node = node.getLeftChild();
+            } else {
+                // close the node and every ancestor whose last child has just been closed
+                node.post = counter;
+                counter += IntervalLabels.GAP;
+                while (node != top && node.getRightSibling() == null) {
+                    node = node.getParent();
+                    node.post = counter;
+                    counter += IntervalLabels.GAP;
+                }
+                node = node == top ? null : node.getRightSibling();
             }
-            leftChild.setRightSibling(tree.root);
         }
-        this.size += tree.size;
+        labels.valid = true;
+    }
+
+    /**
+     * Return whether v is an ancestor of w, in constant time once the interval labels are built. A node is
+     * considered an ancestor of itself. The labels are built on the first call and kept up to date by add while
+     * there is room between them; otherwise they are rebuilt on the next call.
+     *
+     * @param v the candidate ancestor
+     * @param w the candidate descendant
+     * @return true if w belongs to the subtree rooted at v
+     */
+    @Override
+    public boolean isAncestor(Position<E> v, Position<E> w) {
+        var ancestor = checkPosition(v);
+        var descendant = checkPosition(w);
+        if (!labels.valid) {
+            relabel();
+        }
+        return ancestor.pre <= descendant.pre && descendant.post <= ancestor.post;
+    }
+
+    /**
+     * Add a delta to the stored depth of every node of a subtree.
+     *
+     * @param node  The root of the subtree
+     * @param delta The change of depth
+     */
+    private void shiftDepths(LCRSnode<E> node, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        Iterator<Position<E>> it = new PreOrderIterator(node);
+        while (it.hasNext()) {
+            ((LCRSnode<E>) it.next()).depth += delta;
+        }
     }
 
     @Override
@@ -348,16 +1056,87 @@ public class LCRSTree<E> extends DrawableTree<E> {
         return node.getParent();
     }
 
+    /**
+     * Return a read-only view of the children of a node. The view walks the right-sibling links when iterated, so
+     * nothing is copied; it reflects later changes of the tree, which must not be modified while iterating.
+     *
+     * @param v the node
+     * @return an iterable over the children of v
+     */
     @Override
     public Iterable<? extends Position<E>> children(Position<E> v) {
         var node = checkPosition(v);
-        var list = new ArrayList<Position<E>>();
-        var child = node.getLeftChild();
-        while (child != null) {
-            list.add(child);
-            child = child.getRightSibling();
+        return () -> new Iterator<Position<E>>() {
+            private LCRSnode<E> next = node.getLeftChild();
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Position<E> next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                LCRSnode<E> current = next;
+                next = current.getRightSibling();
+                return current;
+            }
+        };
+    }
+
+    /**
+     * Return the number of children of a node, which is stored in the node.
+     *
+     * @param v the node
+     * @return the number of children of v
+     */
+    @Override
+    public int childCount(Position<E> v) {
+        var node = checkPosition(v);
+        return node.childCount;
+    }
+
+    /**
+     * Return the child of a node at a given index. Past the first SKIP children the child is found through the
+     * skip links of the node.
+     *
+     * @param v the node
+     * @param i the index of the child
+     * @return the i-th child of v
+     */
+    @Override
+    public Position<E> child(Position<E> v, int i) {
+        var node = checkPosition(v);
+        if (i < 0 || i >= node.childCount) {
+            throw new RuntimeException("The position is invalid");
         }
-        return list;
+        return childAt(node, i);
+    }
+
+    /**
+     * Return the next sibling of a node in O(1) through its right-sibling link.
+     *
+     * @param v the node
+     * @return the next sibling of v, or null if v is the last child or the root of this tree
+     */
+    @Override
+    public Position<E> nextSibling(Position<E> v) {
+        var node = checkPosition(v);
+        return node == root ? null : node.getRightSibling();
+    }
+
+    /**
+     * Return the previous sibling of a node in O(1) through its left-sibling link.
+     *
+     * @param v the node
+     * @return the previous sibling of v, or null if v is the first child or the root of this tree
+     */
+    @Override
+    public Position<E> prevSibling(Position<E> v) {
+        var node = checkPosition(v);
+        return node == root ? null : node.getLeftSibling();
     }
 
     @Override
@@ -379,38 +1158,165 @@ var node = checkPosition(v);
     }
 
 
-        /**
-     * Return an iterator of all elements stored at the nodes of the tree.
-     * The iterator traverses the tree in breadth-first order.
-     * @return an iterator of the tree's elements
+    /**
+     * Return an iterator of all positions of the tree in breadth-first order.
+     * The queue only holds the first child of each pending sibling chain.
+     *
+     * @return an iterator of the tree's positions
      */
     @Override
     public Iterator<Position<E>> iterator() {
-        throw new UnsupportedOperationException("Not supported yet.");
+        return new BreadthFirstIterator(root);
     }
 
+    /**
+     * Return an iterator of all positions of the tree in pre-order.
+     * The traversal walks the parent, left-child and right-sibling links, so it needs no stack.
+     *
+     * @return an iterator of the tree's positions
+     */
     public Iterator<Position<E>> iteratorPreOrder() {
-        throw new UnsupportedOperationException("Not supported yet.");
+        return new PreOrderIterator(root);
     }
 
-
+    /**
+     * Return an iterator of all positions of the tree in post-order.
+     * The traversal walks the parent, left-child and right-sibling links, so it needs no stack.
+     *
+     * @return an iterator of the tree's positions
+     */
     public Iterator<Position<E>> iteratorPostOrder() {
-        throw new UnsupportedOperationException("Not supported yet.");
+        return new PostOrderIterator(root);
     }
 
-    private void breadthFirstTraversal(LCRSnode<E> root, List<Position<E>> positions) {
-        throw new UnsupportedOperationException("Not supported yet.");
+    /**
+     * Return the deepest node reachable from the given node following left children.
+     *
+     * @param node the starting node
+     * @return the leftmost descendant of node, or node itself if it is a leaf
+     */
+    private LCRSnode<E> leftmostDescendant(LCRSnode<E> node) {
+        while (node.getLeftChild() != null) {
+            node = node.getLeftChild();
+        }
+        return node;
     }
 
-    private void postOrderTraversal(LCRSnode<E> root, List<Position<E>> positions) {
-        throw new UnsupportedOperationException("Not supported yet.");
+    /**
+     * Breadth-first iterator. Each queue entry is the head of a sibling chain which is walked
+     * through the right-sibling links.
+     */
+    private class BreadthFirstIterator implements Iterator<Position<E>> {
+
+        private final Deque<LCRSnode<E>> chains = new ArrayDeque<>();
+
+        private LCRSnode<E> nextNode;
+
+        BreadthFirstIterator(LCRSnode<E> start) {
+            nextNode = start;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextNode != null;
+        }
+
+        @Override
+        public Position<E> next() {
+            if (nextNode == null) {
+                throw new NoSuchElementException();
+            }
+            LCRSnode<E> node = nextNode;
+            if (node.getLeftChild() != null) {
+                chains.add(node.getLeftChild());
+            }
+            // the root of the traversal may have siblings that are not part of this tree
+            nextNode = node == root ? null : node.getRightSibling();
+            if (nextNode == null) {
+                nextNode = chains.poll();
+            }
+            return node;
+        }
+    }
+
+    /**
+     * Stackless pre-order iterator.
+     */
+    private class PreOrderIterator implements Iterator<Position<E>> {
+
+        private final LCRSnode<E> start;
+
+        private LCRSnode<E> nextNode;
+
+        PreOrderIterator(LCRSnode<E> start) {
+            this.start = start;
+            this.nextNode = start;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextNode != null;
+        }
+
+        @Override
+        public Position<E> next() {
+            if (nextNode == null) {
+                throw new NoSuchElementException();
+            }
+            LCRSnode<E> node = nextNode;
+            if (node.getLeftChild() != null) {
+                nextNode = node.getLeftChild();
+            } else {
+                // climb until we find an ancestor (or the node itself) with a pending right sibling
+                LCRSnode<E> current = node;
+                nextNode = null;
+                while (current != start && nextNode == null) {
+                    nextNode = current.getRightSibling();
+                    current = current.getParent();
+                }
+            }
+            return node;
+        }
     }
 
-    private void preOrderTraversal(LCRSnode<E> node, List<Position<E>> positions) {
-        throw new UnsupportedOperationException("Not supported yet.");
+    /**
+     * Stackless post-order iterator.
+     */
+    private class PostOrderIterator implements Iterator<Position<E>> {
+
+        private final LCRSnode<E> start;
+
+        private LCRSnode<E> nextNode;
+
+        PostOrderIterator(LCRSnode<E> start) {
+            this.start = start;
+            this.nextNode = start == null ? null : leftmostDescendant(start);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextNode != null;
+        }
+
+        @Override
+        public Position<E> next() {
+            if (nextNode == null) {
+                throw new NoSuchElementException();
+            }
+            LCRSnode<E> node = nextNode;
+            if (node == start) {
+                nextNode = null;
+            } else if (node.getRightSibling() != null) {
+                nextNode = leftmostDescendant(node.getRightSibling());
+            } else {
+                nextNode = node.getParent();
+            }
+            return node;
+        }
     }
 
 
+    @Override
     public int size() {
         return this.size;
     }
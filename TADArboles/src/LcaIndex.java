@@ -0,0 +1,205 @@
+import material.Position;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * An index answering lowest common ancestor queries over a tree in constant time.
+ * <p>
+ * The index numbers the nodes in pre-order as it walks the tree, so the numbering only depends on the order of the
+ * children; the map from positions to numbers is only used for lookups. For two different nodes u and v with pre(u) &lt; pre(v), their lowest
+ * common ancestor is the parent of the shallowest node numbered in (pre(u), pre(v)], unless u is an ancestor of v.
+ * That range minimum is answered by a sparse table, so building takes O(n log n) time and memory and every query
+ * takes O(1).
+ * <p>
+ * The index does not observe the tree. After mutating it, call {@link #invalidate()} and the index is rebuilt on
+ * the next query, or {@link #rebuild()} to rebuild it immediately.
+ *
+ * @param <E> the type of elements stored in the tree
+ */
+public class LcaIndex<E> {
+
+    private final Tree<E> tree;
+
+    private boolean valid;
+
+    /**
+     * Pre-order number of every position, filled during the walk.
+     */
+    private Map<Position<E>, Integer> order;
+
+    /**
+     * Positions in pre-order: the number of a node is its index in this list.
+     */
+    private List<Position<E>> positions;
+
+    /**
+     * Pre-order number of the parent of every node, or -1 for the root.
+     */
+    private int[] parents;
+
+    private int[] depths;
+
+    /**
+     * sparse[k][i] is the node of minimum depth among the pre-order numbers [i, i + 2^k).
+     */
+    private int[][] sparse;
+
+    /**
+     * Creates the index of a tree and builds it.
+     *
+     * @param tree the indexed tree
+     */
+    public LcaIndex(Tree<E> tree) {
+        this.tree = tree;
+        rebuild();
+    }
+
+    /**
+     * Mark the index as stale. It is rebuilt the next time it is queried.
+     */
+    public void invalidate() {
+        valid = false;
+        order = null;
+        positions = null;
+        parents = null;
+        depths = null;
+        sparse = null;
+    }
+
+    /**
+     * Rebuild the index from the current state of the tree.
+     */
+    public void rebuild() {
+        int capacity = tree instanceof NAryTree ? ((NAryTree<E>) tree).size() : 16;
+        order = new HashMap<>(Math.max(16, capacity * 2));
+        positions = new ArrayList<>(capacity);
+        parents = new int[Math.max(1, capacity)];
+        depths = new int[parents.length];
+        if (!tree.isEmpty()) {
+            // pre-order walk with an explicit stack of children iterators, numbering the nodes as they are reached
+            Deque<Iterator<? extends Position<E>>> stack = new ArrayDeque<>();
+            Deque<Integer> owners = new ArrayDeque<>();
+            int index = visit(tree.root(), -1, 0);
+            stack.push(tree.children(tree.root()).iterator());
+            owners.push(index);
+            while (!stack.isEmpty()) {
+                Iterator<? extends Position<E>> children = stack.peek();
+                if (children.hasNext()) {
+                    Position<E> child = children.next();
+                    int parent = owners.peek();
+                    index = visit(child, parent, depths[parent] + 1);
+                    stack.push(tree.children(child).iterator());
+                    owners.push(index);
+                } else {
+                    stack.pop();
+                    owners.pop();
+                }
+            }
+        }
+        buildSparseTable(positions.size());
+        valid = true;
+    }
+
+    /**
+     * Give the next pre-order number to a node.
+     *
+     * @return the number of the node
+     */
+    private int visit(Position<E> p, int parent, int depth) {
+        int n = positions.size();
+        if (n == parents.length) {
+            parents = Arrays.copyOf(parents, n * 2);
+            depths = Arrays.copyOf(depths, n * 2);
+        }
+        positions.add(p);
+        parents[n] = parent;
+        depths[n] = depth;
+        if (order.putIfAbsent(p, n) != null) {
+            throw new RuntimeException("The tree is invalid");
+        }
+        return n;
+    }
+
+    private void buildSparseTable(int n) {
+        int levels = 1;
+        while ((1 << levels) <= n) {
+            levels++;
+        }
+        sparse = new int[levels][];
+        sparse[0] = new int[n];
+        for (int i = 0; i < n; i++) {
+            sparse[0][i] = i;
+        }
+        for (int k = 1; k < levels; k++) {
+            int half = 1 << (k - 1);
+            int[] previous = sparse[k - 1];
+            int[] current = new int[n - (1 << k) + 1];
+            for (int i = 0; i < current.length; i++) {
+                current[i] = shallower(previous[i], previous[i + half]);
+            }
+            sparse[k] = current;
+        }
+    }
+
+    private int shallower(int a, int b) {
+        return depths[a] <= depths[b] ? a : b;
+    }
+
+    private int indexOf(Position<E> p) {
+        Integer index = order.get(p);
+        if (index == null) {
+            throw new RuntimeException("The position is invalid");
+        }
+        return index;
+    }
+
+    /**
+     * Returns the lowest common ancestor of two nodes, that is, the deepest node that is an ancestor of both (a node
+     * is considered an ancestor of itself).
+     *
+     * @param p the first node
+     * @param q the second node
+     * @return the lowest common ancestor of p and q
+     */
+    public Position<E> lca(Position<E> p, Position<E> q) {
+        if (!valid) {
+            rebuild();
+        }
+        int i = indexOf(p);
+        int j = indexOf(q);
+        if (i == j) {
+            return positions.get(i);
+        }
+        if (i > j) {
+            int aux = i;
+            i = j;
+            j = aux;
+        }
+        // shallowest node numbered in (i, j]
+        int from = i + 1;
+        int k = 31 - Integer.numberOfLeadingZeros(j - from + 1);
+        int min = shallower(sparse[k][from], sparse[k][j - (1 << k) + 1]);
+        return positions.get(parents[min]);
+    }
+
+    /**
+     * Returns the depth of a node as recorded by the index.
+     *
+     * @param p the node
+     * @return its depth
+     */
+    public int depth(Position<E> p) {
+        if (!valid) {
+            rebuild();
+        }
+        return depths[indexOf(p)];
+    }
+}
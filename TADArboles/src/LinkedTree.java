@@ -1,8 +1,24 @@
 import material.Position;
 
+import java.util.AbstractList;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 
 /**
@@ -23,6 +39,16 @@ public class LinkedTree<E> extends DrawableTree<E> {
      */
     private int size;
 
+    /**
+     * The state of the ancestor labels, shared with the trees obtained with subTree.
+     */
+    private IntervalLabels labels = new IntervalLabels();
+
+    /**
+     * The slot index of a removed node, which makes its position invalid.
+     */
+    private static final int REMOVED = -1;
+
     /**
      * This class represents a node in a tree data structure.
      * It implements the Position interface.
@@ -46,7 +72,34 @@ public class LinkedTree<E> extends DrawableTree<E> {
         /**
          * The list of children of a TreeNode in a tree structure.
          */
-        private final List<TreeNode<T>> children = new ArrayList<>();
+        private final ChildList<T> children = new ChildList<>();
+
+        /**
+         * The slot of this node in the children list of its parent, or REMOVED once the node is removed.
+         */
+        private int index;
+
+        /**
+         * The number of nodes of the subtree rooted at this node, including the node itself.
+         */
+        private int size = 1;
+
+        /**
+         * The number of ancestors of this node in the structure it belongs to.
+         */
+        private int depth;
+
+        /**
+         * The cached height of this node, or -1 if it has to be recomputed.
+         */
+        private int height;
+
+        /**
+         * The pre-order and post-order interval labels of this node, see {@link IntervalLabels}.
+         */
+        private long pre;
+
+        private long post;
 
 
         /**
@@ -67,6 +120,7 @@ public class LinkedTree<E> extends DrawableTree<E> {
         public TreeNode(T element, TreeNode<T> parent) {
             this.element = element;
             this.parent = parent;
+            this.depth = parent.depth + 1;
         }
 
 
@@ -95,12 +149,263 @@ public class LinkedTree<E> extends DrawableTree<E> {
 
     }
 
+    /**
+     * The children of a node. Every child knows its slot in the list, so it is unlinked in O(1) by leaving an
+     * empty slot behind. Empty slots at the end are dropped at once and the others are squeezed out when they
+     * outnumber the children, so removal is O(1) amortized whatever the fan-out. The list is read-only through the
+     * List interface; the tree changes it with append, insert and unlink.
+     *
+     * @param <T> the type of element stored in the nodes
+     */
+    private class ChildList<T> extends AbstractList<TreeNode<T>> {
+
+        private Object[] slots = new Object[4];
+
+        /**
+         * The number of used slots, children or empty ones.
+         */
+        private int end;
+
+        /**
+         * The number of children.
+         */
+        private int live;
+
+        @SuppressWarnings("unchecked")
+        private TreeNode<T> slot(int i) {
+            return (TreeNode<T>) slots[i];
+        }
+
+        @Override
+        public int size() {
+            return live;
+        }
+
+        /**
+         * Return the child at an index. O(1) unless there are empty slots, in which case they are skipped.
+         */
+        @Override
+        public TreeNode<T> get(int i) {
+            if (i < 0 || i >= live) {
+                throw new IndexOutOfBoundsException(i);
+            }
+            if (live == end) {
+                return slot(i);
+            }
+            for (int k = 0; ; k++) {
+                if (slots[k] != null && i-- == 0) {
+                    return slot(k);
+                }
+            }
+        }
+
+        @Override
+        public Iterator<TreeNode<T>> iterator() {
+            return new Iterator<TreeNode<T>>() {
+                private int next = skip(0);
+
+                @Override
+                public boolean hasNext() {
+                    return next < end;
+                }
+
+                @Override
+                public TreeNode<T> next() {
+                    if (next >= end) {
+                        throw new NoSuchElementException();
+                    }
+                    TreeNode<T> node = slot(next);
+                    next = skip(next + 1);
+                    return node;
+                }
+            };
+        }
+
+        /**
+         * Return the first used slot at or after i, or end.
+         */
+        private int skip(int i) {
+            while (i < end && slots[i] == null) {
+                i++;
+            }
+            return i;
+        }
+
+        /**
+         * Return the last child. Empty slots are never left at the end, so it is in the last used slot.
+         */
+        TreeNode<T> last() {
+            return slot(end - 1);
+        }
+
+        /**
+         * Return the child that follows another one, or null if it is the last one.
+         */
+        TreeNode<T> after(TreeNode<T> node) {
+            int i = skip(node.index + 1);
+            return i < end ? slot(i) : null;
+        }
+
+        /**
+         * Return the child that precedes another one, or null if it is the first one.
+         */
+        TreeNode<T> before(TreeNode<T> node) {
+            int i = node.index - 1;
+            while (i >= 0 && slots[i] == null) {
+                i--;
+            }
+            return i >= 0 ? slot(i) : null;
+        }
+
+        /**
+         * Make room for a number of children, so that appending them does not grow the array.
+         */
+        void reserve(int capacity) {
+            if (capacity > slots.length) {
+                slots = Arrays.copyOf(slots, capacity);
+            }
+        }
+
+        /**
+         * Add a child after the last one.
+         */
+        void append(TreeNode<T> node) {
+            if (end == slots.length) {
+                slots = Arrays.copyOf(slots, end * 2);
+            }
+            node.index = end;
+            slots[end++] = node;
+            live++;
+        }
+
+        /**
+         * Insert a child at an index between 0 and size(). The children after it are shifted and renumbered.
+         */
+        void insert(int i, TreeNode<T> node) {
+            compact();
+            append(node);
+            System.arraycopy(slots, i, slots, i + 1, end - 1 - i);
+            slots[i] = node;
+            for (int k = i; k < end; k++) {
+                slot(k).index = k;
+            }
+        }
+
+        /**
+         * Remove a child in O(1) amortized, leaving its slot empty. The node must still be in its slot: a node
+         * removed before may have left it to a sibling when the list was compacted.
+         */
+        void unlink(TreeNode<T> node) {
+            if (node.index < 0 || node.index >= end || slots[node.index] != node) {
+                throw new RuntimeException("The position is invalid");
+            }
+            slots[node.index] = null;
+            live--;
+            while (end > 0 && slots[end - 1] == null) {
+                end--;
+            }
+            if (end - live > live) {
+                compact();
+            }
+        }
+
+        /**
+         * Squeeze out the empty slots, renumbering the children.
+         */
+        private void compact() {
+            if (live == end) {
+                return;
+            }
+            int j = 0;
+            for (int k = 0; k < end; k++) {
+                if (slots[k] != null) {
+                    slots[j] = slots[k];
+                    slot(j).index = j;
+                    j++;
+                }
+            }
+            Arrays.fill(slots, j, end, null);
+            end = j;
+        }
+    }
+
+    /**
+     * Build a tree from the parent of every node in linear time. Node i stores elements.get(i) and its parent is
+     * node parents[i], or -1 for the root. The children of a node are ordered by their numbers.
+     *
+     * @param elements the element of every node
+     * @param parents  the parent of every node, -1 for the root
+     * @param <E>      the type of the elements
+     * @return the new tree
+     * @throws RuntimeException if the parents do not describe a single tree of all the elements
+     */
+    public static <E> LinkedTree<E> fromParents(List<? extends E> elements, int[] parents) {
+        LinkedTree<E> tree = new LinkedTree<>();
+        tree.build(elements, TreeShape.fromParents(parents));
+        return tree;
+    }
+
+    /**
+     * Build a tree from its edges in linear time. Node i stores elements.get(i), every edge is a {parent, child}
+     * pair of node numbers and the node that is no child is the root. The children of a node are ordered as their
+     * edges.
+     *
+     * @param elements the element of every node
+     * @param edges    the edges of the tree
+     * @param <E>      the type of the elements
+     * @return the new tree
+     * @throws RuntimeException if the edges do not describe a single tree of all the elements
+     */
+    public static <E> LinkedTree<E> fromEdges(List<? extends E> elements, Stream<int[]> edges) {
+        LinkedTree<E> tree = new LinkedTree<>();
+        tree.build(elements, TreeShape.fromEdges(elements.size(), edges));
+        return tree;
+    }
+
+    /**
+     * Create the nodes of an empty tree breadth-first, with child lists of the right size, and then set the subtree
+     * sizes and heights bottom-up.
+     *
+     * @param elements the element of every node
+     * @param shape    the shape of the tree
+     */
+    @SuppressWarnings("unchecked")
+    private void build(List<? extends E> elements, TreeShape shape) {
+        int n = shape.size();
+        if (elements.size() != n) {
+            throw new RuntimeException("The tree is invalid");
+        }
+        if (n == 0) {
+            return;
+        }
+        Object[] nodes = new Object[n];
+        root = new TreeNode<>(elements.get(shape.order[0]));
+        nodes[shape.order[0]] = root;
+        for (int v : shape.order) {
+            TreeNode<E> node = (TreeNode<E>) nodes[v];
+            node.children.reserve(shape.childCount(v));
+            for (int k = shape.start[v]; k < shape.start[v + 1]; k++) {
+                int c = shape.children[k];
+                TreeNode<E> child = new TreeNode<>(elements.get(c), node);
+                node.children.append(child);
+                nodes[c] = child;
+            }
+        }
+        for (int i = n - 1; i > 0; i--) {
+            TreeNode<E> node = (TreeNode<E>) nodes[shape.order[i]];
+            node.parent.size += node.size;
+            node.parent.height = Math.max(node.parent.height, node.height + 1);
+        }
+        size = n;
+    }
+
     @Override
     public Position<E> addRoot(E e) {
         if (!isEmpty()) {
             throw new RuntimeException("The tree already has a root");
         }
         root = new TreeNode<>(e);
+        labels.valid = false;
         size++;
         return root;
     }
@@ -110,7 +415,11 @@ public class LinkedTree<E> extends DrawableTree<E> {
     public Position<E> add(E element, Position<E> p) {
         TreeNode<E> parent = checkPosition(p);
         TreeNode<E> newNode = new TreeNode<>(element, parent);
-        parent.getChildren().add(newNode);
+        ChildList<E> siblings = parent.children;
+        labelLeaf(newNode, siblings.isEmpty() ? parent.pre : siblings.last().post, parent.post);
+        siblings.append(newNode);
+        updateSizes(parent, 1);
+        invalidateHeights(parent);
         size++;
         return newNode;
     }
@@ -123,7 +432,7 @@ public class LinkedTree<E> extends DrawableTree<E> {
      * @throws RuntimeException If the position is invalid
      */
     private TreeNode<E> checkPosition(Position<E> p) {
-        if (!(p instanceof TreeNode)) {
+        if (!(p instanceof TreeNode) || ((TreeNode<E>) p).index == REMOVED) {
             throw new RuntimeException("The position is invalid");
         }
         return (TreeNode<E>) p;
@@ -135,7 +444,13 @@ public class LinkedTree<E> extends DrawableTree<E> {
         TreeNode<E> parent = checkPosition(p);
         TreeNode<E> newNode = new TreeNode<>(element, parent);
         checkPositionOfChildrenList(n, parent);
-        parent.getChildren().add(n, newNode);
+        ChildList<E> siblings = parent.children;
+        siblings.compact();
+        labelLeaf(newNode, n == 0 ? parent.pre : siblings.get(n - 1).post,
+                n == siblings.size() ? parent.post : siblings.get(n).pre);
+        siblings.insert(n, newNode);
+        updateSizes(parent, 1);
+        invalidateHeights(parent);
         size++;
         return newNode;
     }
@@ -178,26 +493,220 @@ public class LinkedTree<E> extends DrawableTree<E> {
         if (node == root) {
             root = null;
             size = 0;
+            // the root of a tree obtained with subTree stays in the tree it comes from
+            if (node.getParent() == null) {
+                markRemoved(node);
+            }
         } else {
             TreeNode<E> parent = node.getParent();
-            parent.getChildren().remove(node);
-            // Now we have to compute the size of the subtree rooted at the current node
-            size -= computeSize(node);
+            parent.children.unlink(node);
+            updateSizes(parent, -node.size);
+            invalidateHeights(parent);
+            size -= node.size;
+            detach(node);
         }
     }
 
     /**
-     * Compute the size of a TreeNode and all its children.
+     * Clear the parent of a removed node and mark its subtree, so that their positions are rejected from then on.
      *
-     * @param node The TreeNode to compute size for
-     * @return The size of the TreeNode and its children
+     * @param node The removed node
      */
-    private int computeSize(TreeNode<E> node) {
-        int size = 1;
-        for (TreeNode<E> child : node.getChildren()) {
-            size += computeSize(child);
+    private void detach(TreeNode<E> node) {
+        node.parent = null;
+        markRemoved(node);
+    }
+
+    /**
+     * Mark every node of a removed subtree as removed. Every node is marked at most once, so the cost is amortized
+     * over the additions.
+     *
+     * @param top The root of the removed subtree
+     */
+    private void markRemoved(TreeNode<E> top) {
+        Deque<TreeNode<E>> stack = new ArrayDeque<>();
+        stack.push(top);
+        while (!stack.isEmpty()) {
+            TreeNode<E> node = stack.pop();
+            node.index = REMOVED;
+            for (TreeNode<E> child : node.getChildren()) {
+                stack.push(child);
+            }
         }
-        return size;
+    }
+
+    /**
+     * Apply the operations of a batch in order. Every operation links or unlinks its node right away, and the
+     * change in size is recorded for its parent. The recorded changes are then carried up level by level, so every
+     * affected ancestor is updated, and its height invalidated, once for the whole batch.
+     * The changes are carried up even if an operation has an invalid position, so that the operations applied
+     * before it leave the tree consistent.
+     *
+     * @param batch the batch to apply
+     * @return the positions of the added nodes, in the order of the additions
+     */
+    @Override
+    public List<Position<E>> applyBatch(MutationBatch<E> batch) {
+        List<Position<E>> added = new ArrayList<>();
+        Map<TreeNode<E>, int[]> deltas = new IdentityHashMap<>();
+        Set<TreeNode<E>> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        try {
+            for (MutationBatch.Operation<E> operation : batch.operations()) {
+                TreeNode<E> target = checkPosition(operation.target(added));
+                if (!operation.remove) {
+                    TreeNode<E> newNode = new TreeNode<>(operation.element, target);
+                    target.children.append(newNode);
+                    deltas.computeIfAbsent(target, node -> new int[1])[0]++;
+                    added.add(newNode);
+                } else if (target == root) {
+                    root = null;
+                    removed.add(target);
+                    if (target.getParent() == null) {
+                        markRemoved(target);
+                    }
+                } else {
+                    target.getParent().children.unlink(target);
+                    deltas.computeIfAbsent(target.getParent(), node -> new int[1])[0] -= target.size;
+                    removed.add(target);
+                    detach(target);
+                }
+            }
+        } finally {
+            // an invalid operation leaves the ones before it applied, so their changes are carried up too
+            // deeper nodes first, so that every node has received the changes of its descendants when it is updated
+            PriorityQueue<TreeNode<E>> pending = new PriorityQueue<>(Comparator.comparingInt(node -> -node.depth));
+            pending.addAll(deltas.keySet());
+            while (!pending.isEmpty()) {
+                TreeNode<E> node = pending.poll();
+                int delta = deltas.get(node)[0];
+                node.size += delta;
+                node.height = -1;
+                TreeNode<E> parent = node.getParent();
+                // the changes below a removed node do not reach the tree
+                if (parent != null && !removed.contains(node)) {
+                    int[] parentDelta = deltas.get(parent);
+                    if (parentDelta == null) {
+                        deltas.put(parent, new int[]{delta});
+                        pending.add(parent);
+                    } else {
+                        parentDelta[0] += delta;
+                    }
+                }
+            }
+            if (!added.isEmpty()) {
+                labels.valid = false;
+            }
+            size = root == null ? 0 : root.size;
+        }
+        return added;
+    }
+
+    /**
+     * Add a delta to the subtree size of a node and of all its ancestors.
+     *
+     * @param node  The deepest node whose subtree changed
+     * @param delta The number of nodes added (positive) or removed (negative)
+     */
+    private void updateSizes(TreeNode<E> node, int delta) {
+        for (TreeNode<E> current = node; current != null; current = current.getParent()) {
+            current.size += delta;
+        }
+    }
+
+    @Override
+    public int size(Position<E> v) {
+        TreeNode<E> node = checkPosition(v);
+        return node.size;
+    }
+
+    /**
+     * Return a stream of the positions of the tree in a given order. The subtree sizes are stored, so depth-first
+     * splits weigh subtrees exactly.
+     *
+     * @param order the traversal order
+     * @return a stream of the positions of the tree
+     */
+    @Override
+    public Stream<Position<E>> stream(TraversalOrder order) {
+        return StreamSupport.stream(new TreeSpliterator<>(this, order, true, true), false);
+    }
+
+    @Override
+    public Stream<Position<E>> parallelStream(TraversalOrder order) {
+        return StreamSupport.stream(new TreeSpliterator<>(this, order, true, true), true);
+    }
+
+    /**
+     * Reduce the elements of the tree in parallel on a fork/join pool. The subtree sizes are stored, so the work is
+     * split exactly.
+     */
+    @Override
+    public <R> R reduce(R identity, Function<? super E, ? extends R> mapper, BinaryOperator<R> combiner,
+                        ForkJoinPool pool, int threshold) {
+        return SubtreeReduction.reduce(this, identity, mapper, combiner, pool, threshold, true);
+    }
+
+    @Override
+    boolean storesSizes() {
+        return true;
+    }
+
+    /**
+     * Mark the cached height of a node and of its ancestors as invalid. The walk stops at the first ancestor whose
+     * height is already invalid, because then all the ancestors above it are invalid too.
+     *
+     * @param node The deepest node whose subtree changed
+     */
+    private void invalidateHeights(TreeNode<E> node) {
+        for (TreeNode<E> current = node; current != null && current.height >= 0; current = current.getParent()) {
+            current.height = -1;
+        }
+    }
+
+    /**
+     * Return the depth of a node relative to the root of this tree. The depth is stored at insert time.
+     *
+     * @param v the node whose depth is to be returned.
+     * @return the depth of the node.
+     */
+    @Override
+    public int depth(Position<E> v) {
+        TreeNode<E> node = checkPosition(v);
+        return node.depth - root.depth;
+    }
+
+    /**
+     * Return the height of a node. Heights are cached and only the invalidated ones are recomputed.
+     *
+     * @param v the node whose height is to be returned.
+     * @return the height of the node.
+     */
+    @Override
+    public int height(Position<E> v) {
+        TreeNode<E> node = checkPosition(v);
+        Deque<TreeNode<E>> stack = new ArrayDeque<>();
+        if (node.height < 0) {
+            stack.push(node);
+        }
+        while (!stack.isEmpty()) {
+            TreeNode<E> top = stack.peek();
+            boolean ready = true;
+            for (TreeNode<E> child : top.getChildren()) {
+                if (child.height < 0) {
+                    stack.push(child);
+                    ready = false;
+                }
+            }
+            if (ready) {
+                stack.pop();
+                int height = 0;
+                for (TreeNode<E> child : top.getChildren()) {
+                    height = Math.max(height, child.height + 1);
+                }
+                top.height = height;
+            }
+        }
+        return node.height;
     }
 
 
@@ -206,7 +715,8 @@ public class LinkedTree<E> extends DrawableTree<E> {
         TreeNode<E> node = checkPosition(v);
         LinkedTree<E> tree = new LinkedTree<>();
         tree.root = node;
-        tree.size = computeSize(node);
+        tree.size = node.size;
+        tree.labels = labels;
         return tree;
     }
 
@@ -220,11 +730,100 @@ public class LinkedTree<E> extends DrawableTree<E> {
     public void attach(Position<E> p, NAryTree<E> t) {
         TreeNode<E> node = checkPosition(p);
         LinkedTree<E> tree = checkTree(t);
-        node.getChildren().addAll(tree.root.getChildren());
-        size += tree.size;
+        int added = 0;
+        for (TreeNode<E> child : tree.root.getChildren()) {
+            child.parent = node;
+            added += child.size;
+            shiftDepths(child, node.depth + 1 - child.depth);
+            node.children.append(child);
+        }
+        updateSizes(node, added);
+        invalidateHeights(node);
+        labels.valid = false;
+        size += added;
 
     }
 
+    /**
+     * Give a new leaf an interval between two labels, if the ancestor labels are in use.
+     *
+     * @param node  The new leaf
+     * @param lower The label the interval must follow
+     * @param upper The label the interval must precede
+     */
+    private void labelLeaf(TreeNode<E> node, long lower, long upper) {
+        if (labels.valid) {
+            long pre = labels.leafBetween(lower, upper);
+            node.pre = pre;
+            node.post = 2 * pre - lower;
+        }
+    }
+
+    /**
+     * Label the whole structure containing this tree with spaced pre/post-order intervals.
+     */
+    private void relabel() {
+        TreeNode<E> top = root;
+        while (top.getParent() != null) {
+            top = top.getParent();
+        }
+        long counter = 0;
+        Deque<TreeNode<E>> nodes = new ArrayDeque<>();
+        Deque<Iterator<TreeNode<E>>> stack = new ArrayDeque<>();
+        top.pre = counter;
+        nodes.push(top);
+        stack.push(top.getChildren().iterator());
+        while (!stack.isEmpty()) {
+            if (stack.peek().hasNext()) {
+                TreeNode<E> child = stack.peek().next();
+                counter += IntervalLabels.GAP;
+                child.pre = counter;
+                nodes.push(child);
+                stack.push(child.getChildren().iterator());
+            } else {
+                stack.pop();
+                counter += IntervalLabels.GAP;
+                nodes.pop().post = counter;
+            }
+        }
+        labels.valid = true;
+    }
+
+    /**
+     * Return whether v is an ancestor of w, in constant time once the interval labels are built. A node is
+     * considered an ancestor of itself. The labels are built on the first call and kept up to date by add while
+     * there is room between them; otherwise they are rebuilt on the next call.
+     *
+     * @param v the candidate ancestor
+     * @param w the candidate descendant
+     * @return true if w belongs to the subtree rooted at v
+     */
+    @Override
+    public boolean isAncestor(Position<E> v, Position<E> w) {
+        TreeNode<E> ancestor = checkPosition(v);
+        TreeNode<E> descendant = checkPosition(w);
+        if (!labels.valid) {
+            relabel();
+        }
+        return ancestor.pre <= descendant.pre && descendant.post <= ancestor.post;
+    }
+
+    /**
+     * Add a delta to the stored depth of every node of a subtree.
+     *
+     * @param node  The root of the subtree
+     * @param delta The change of depth
+     */
+    private void shiftDepths(TreeNode<E> node, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        Iterator<Position<E>> it = new PreOrderIterator(node);
+        while (it.hasNext()) {
+            ((TreeNode<E>) it.next()).depth += delta;
+        }
+    }
+
     /**
      * Checks if the given tree is of type LinkedTree.
      *
@@ -261,6 +860,45 @@ public class LinkedTree<E> extends DrawableTree<E> {
         return node.getChildren();
     }
 
+    @Override
+    public int childCount(Position<E> v) {
+        TreeNode<E> node = checkPosition(v);
+        return node.getChildren().size();
+    }
+
+    @Override
+    public Position<E> child(Position<E> v, int i) {
+        TreeNode<E> node = checkPosition(v);
+        if (i < 0 || i >= node.getChildren().size()) {
+            throw new RuntimeException("The position is invalid");
+        }
+        return node.getChildren().get(i);
+    }
+
+    /**
+     * Return the next sibling of a node, found from its slot in the children of its parent.
+     *
+     * @param v the node
+     * @return the next sibling of v, or null if v is the last child or the root of this tree
+     */
+    @Override
+    public Position<E> nextSibling(Position<E> v) {
+        TreeNode<E> node = checkPosition(v);
+        return node == root || node.getParent() == null ? null : node.getParent().children.after(node);
+    }
+
+    /**
+     * Return the previous sibling of a node, found from its slot in the children of its parent.
+     *
+     * @param v the node
+     * @return the previous sibling of v, or null if v is the first child or the root of this tree
+     */
+    @Override
+    public Position<E> prevSibling(Position<E> v) {
+        TreeNode<E> node = checkPosition(v);
+        return node == root || node.getParent() == null ? null : node.getParent().children.before(node);
+    }
+
     @Override
     public boolean isInternal(Position<E> v) {
         TreeNode<E> node = checkPosition(v);
@@ -280,67 +918,143 @@ public class LinkedTree<E> extends DrawableTree<E> {
     }
 
 
+    /**
+     * Return an iterator of all positions of the tree in breadth-first order.
+     * The traversal is lazy: only the current frontier is kept in memory.
+     *
+     * @return an iterator of the tree's positions
+     */
     @Override
     public Iterator<Position<E>> iterator() {
-        if (isEmpty()) {
-            // empty iterator
-            return new ArrayList<Position<E>>().iterator();
-        }
-        List<Position<E>> positions = new ArrayList<>();
-        breadthFirstTraversal(root, positions);
-        return positions.iterator();
+        return new BreadthFirstIterator(root);
     }
 
 
+    /**
+     * Return an iterator of all positions of the tree in pre-order.
+     * The traversal is lazy and keeps one children iterator per level.
+     *
+     * @return an iterator of the tree's positions
+     */
     public Iterator<Position<E>> iteratorPreOrder() {
-        if (isEmpty()) {
-            // empty iterator
-            return new ArrayList<Position<E>>().iterator();
-        }
-        List<Position<E>> positions = new ArrayList<>();
-        preOrderTraversal(root, positions);
-        return positions.iterator();
+        return new PreOrderIterator(root);
     }
 
 
+    /**
+     * Return an iterator of all positions of the tree in post-order.
+     * The traversal is lazy and keeps one children iterator per level.
+     *
+     * @return an iterator of the tree's positions
+     */
     public Iterator<Position<E>> iteratorPostOrder() {
-        if (isEmpty()) {
-            // empty iterator
-            return new ArrayList<Position<E>>().iterator();
-        }
-        List<Position<E>> positions = new ArrayList<>();
-        postOrderTraversal(root, positions);
-        return positions.iterator();
-    }
-
-    private void breadthFirstTraversal(TreeNode<E> node, List<Position<E>> positions) {
-        if (node != null) {
-            List<TreeNode<E>> queue = new ArrayList<>();
-            queue.add(node);
-            while (!queue.isEmpty()) {
-                TreeNode<E> nodeToVisit = queue.remove(0);
-                positions.add(nodeToVisit);
-                queue.addAll(nodeToVisit.getChildren());
+        return new PostOrderIterator(root);
+    }
+
+    /**
+     * Lazy breadth-first iterator backed by a queue holding the pending frontier.
+     */
+    private class BreadthFirstIterator implements Iterator<Position<E>> {
+
+        private final Deque<TreeNode<E>> queue = new ArrayDeque<>();
+
+        BreadthFirstIterator(TreeNode<E> start) {
+            if (start != null) {
+                queue.add(start);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public Position<E> next() {
+            if (queue.isEmpty()) {
+                throw new NoSuchElementException();
             }
+            TreeNode<E> node = queue.poll();
+            queue.addAll(node.getChildren());
+            return node;
         }
     }
 
-    private void postOrderTraversal(TreeNode<E> node, List<Position<E>> positions) {
-        if (node != null) {
-            for (TreeNode<E> child : node.getChildren()) {
-                postOrderTraversal(child, positions);
+    /**
+     * Lazy pre-order iterator backed by an explicit stack of children iterators.
+     */
+    private class PreOrderIterator implements Iterator<Position<E>> {
+
+        private final Deque<Iterator<TreeNode<E>>> stack = new ArrayDeque<>();
+
+        private TreeNode<E> nextNode;
+
+        PreOrderIterator(TreeNode<E> start) {
+            nextNode = start;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextNode != null;
+        }
+
+        @Override
+        public Position<E> next() {
+            if (nextNode == null) {
+                throw new NoSuchElementException();
+            }
+            TreeNode<E> node = nextNode;
+            if (!node.getChildren().isEmpty()) {
+                stack.push(node.getChildren().iterator());
+            }
+            nextNode = null;
+            while (!stack.isEmpty() && nextNode == null) {
+                Iterator<TreeNode<E>> siblings = stack.peek();
+                if (siblings.hasNext()) {
+                    nextNode = siblings.next();
+                } else {
+                    stack.pop();
+                }
             }
-            positions.add(node);
+            return node;
         }
     }
 
-    private void preOrderTraversal(TreeNode<E> node, List<Position<E>> positions) {
-        if (node != null) {
-            positions.add(node);
-            for (TreeNode<E> child : node.getChildren()) {
-                preOrderTraversal(child, positions);
+    /**
+     * Lazy post-order iterator backed by explicit stacks of pending nodes and their children iterators.
+     */
+    private class PostOrderIterator implements Iterator<Position<E>> {
+
+        private final Deque<TreeNode<E>> nodes = new ArrayDeque<>();
+
+        private final Deque<Iterator<TreeNode<E>>> stack = new ArrayDeque<>();
+
+        PostOrderIterator(TreeNode<E> start) {
+            if (start != null) {
+                nodes.push(start);
+                stack.push(start.getChildren().iterator());
             }
         }
+
+        @Override
+        public boolean hasNext() {
+            return !nodes.isEmpty();
+        }
+
+        @Override
+        public Position<E> next() {
+            if (nodes.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            // descend until the node on top of the stack has no pending children
+            while (stack.peek().hasNext()) {
+                TreeNode<E> child = stack.peek().next();
+                nodes.push(child);
+                stack.push(child.getChildren().iterator());
+            }
+            stack.pop();
+            return nodes.pop();
+        }
     }
 
     /**
@@ -348,6 +1062,7 @@ public class LinkedTree<E> extends DrawableTree<E> {
      *
      * @return the number of elements in the tree
      */
+    @Override
     public int size() {
         return size;
     }
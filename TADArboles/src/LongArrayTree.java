@@ -0,0 +1,135 @@
+import java.util.Arrays;
+
+
+/**
+ * An array-backed implementation of the LongNAryTree interface.
+ * <p>
+ * Nodes are slots of parallel int arrays and the elements are kept in a long array, so adding nodes, reading
+ * elements and traversing the tree never box.
+ */
+public class LongArrayTree extends PrimitiveArrayTree implements LongNAryTree {
+
+    /**
+     * Topology plus a long element array.
+     */
+    private static class LongStorage extends Storage {
+
+        private long[] values;
+
+        LongStorage(int initialCapacity) {
+            super(initialCapacity);
+            values = new long[nodes.capacity()];
+        }
+
+        @Override
+        int elementCapacity() {
+            return values.length;
+        }
+
+        @Override
+        void growElements(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void swap(int i, int j) {
+            long aux = values[i];
+            values[i] = values[j];
+            values[j] = aux;
+        }
+
+        @Override
+        void copy(Storage from, int src, int dst) {
+            values[dst] = ((LongStorage) from).values[src];
+        }
+    }
+
+    /**
+     * Creates an empty tree.
+     */
+    public LongArrayTree() {
+        this(16);
+    }
+
+    /**
+     * Creates an empty tree able to hold the given number of nodes before growing its arrays.
+     *
+     * @param initialCapacity the number of nodes to reserve room for
+     */
+    public LongArrayTree(int initialCapacity) {
+        super(new LongStorage(initialCapacity), NONE, 0);
+    }
+
+    private LongArrayTree(Storage store, int root, int size) {
+        super(store, root, size);
+    }
+
+    private long[] values() {
+        return ((LongStorage) store).values;
+    }
+
+    @Override
+    public long getElement(int v) {
+        return values()[checkNode(v)];
+    }
+
+    @Override
+    public int addRoot(long e) {
+        int node = allocateRoot();
+        values()[node] = e;
+        return node;
+    }
+
+    @Override
+    public int add(long element, int p) {
+        int node = allocateChild(p);
+        values()[node] = element;
+        return node;
+    }
+
+    @Override
+    public int add(long element, int p, int n) {
+        int node = allocateChild(p, n);
+        values()[node] = element;
+        return node;
+    }
+
+    @Override
+    public long replace(int p, long e) {
+        long[] values = values();
+        long old = values[checkNode(p)];
+        values[p] = e;
+        return old;
+    }
+
+    @Override
+    public LongNAryTree subTree(int v) {
+        return new LongArrayTree(store, v, countSubtree(v));
+    }
+
+    @Override
+    public void attach(int p, LongNAryTree t) {
+        if (!(t instanceof LongArrayTree)) {
+            throw new RuntimeException("The tree is invalid");
+        }
+        attachTree(p, (LongArrayTree) t);
+    }
+
+    @Override
+    public void forEachBreadthFirst(Visitor visitor) {
+        long[] values = values();
+        breadthFirst(i -> visitor.visit(i, values[i]));
+    }
+
+    @Override
+    public void forEachPreOrder(Visitor visitor) {
+        long[] values = values();
+        preOrder(i -> visitor.visit(i, values[i]));
+    }
+
+    @Override
+    public void forEachPostOrder(Visitor visitor) {
+        long[] values = values();
+        postOrder(i -> visitor.visit(i, values[i]));
+    }
+}
@@ -0,0 +1,349 @@
+import material.Position;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+
+/**
+ * A read-only tree stored in a binary file and navigated in place through a memory mapping.
+ * <p>
+ * The file starts with a header (magic number, version, number of nodes and element width) followed by one
+ * fixed-width record per node. Nodes are numbered in breadth-first order, so the children of a node are
+ * consecutive records and a record only needs the parent index, the index of the first child, the number of
+ * children and the element encoded with an {@link ElementCodec}.
+ * <p>
+ * Opening a file only reads the header; the records are mapped lazily in chunks the first time they are accessed,
+ * so opening takes the same time whatever the size of the tree.
+ *
+ * @param <E> the type of elements stored in the tree
+ */
+public class MappedTree<E> implements Tree<E>, Closeable {
+
+    private static final int MAGIC = 0x54524545;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 16;
+
+    private static final int NONE = -1;
+
+    private static final int PARENT = 0;
+
+    private static final int FIRST_CHILD = 4;
+
+    private static final int CHILD_COUNT = 8;
+
+    private static final int ELEMENT = 12;
+
+    /**
+     * log2 of the number of records mapped together.
+     */
+    private static final int CHUNK_BITS = 20;
+
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+    private final FileChannel channel;
+
+    private final ElementCodec<E> codec;
+
+    private final int recordWidth;
+
+    private final int size;
+
+    private final MappedByteBuffer[] chunks;
+
+    /**
+     * A position of a MappedTree: the tree it belongs to and a record index.
+     *
+     * @param <T> the type of the element
+     */
+    private static final class Handle<T> implements Position<T> {
+
+        private final MappedTree<T> tree;
+
+        private final int index;
+
+        Handle(MappedTree<T> tree, int index) {
+            this.tree = tree;
+            this.index = index;
+        }
+
+        @Override
+        public T getElement() {
+            return tree.codec.read(tree.chunk(index), tree.offset(index, ELEMENT));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Handle)) {
+                return false;
+            }
+            Handle<?> other = (Handle<?>) o;
+            return tree == other.tree && index == other.index;
+        }
+
+        @Override
+        public int hashCode() {
+            return index;
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(getElement());
+        }
+    }
+
+    private MappedTree(FileChannel channel, ElementCodec<E> codec, int size) {
+        this.channel = channel;
+        this.codec = codec;
+        this.recordWidth = ELEMENT + codec.width();
+        this.size = size;
+        this.chunks = new MappedByteBuffer[(size + CHUNK_MASK) >>> CHUNK_BITS];
+    }
+
+    /**
+     * Write a tree to a file in the format read by {@link #open(Path, ElementCodec)}.
+     *
+     * @param tree  the tree to save
+     * @param codec the fixed-width encoding of the elements
+     * @param file  the file to create or overwrite
+     * @param <E>   the type of the elements
+     * @throws IOException if there is an error writing to the file
+     */
+    public static <E> void write(Tree<E> tree, ElementCodec<E> codec, Path file) throws IOException {
+        int recordWidth = ELEMENT + codec.width();
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(Math.max(HEADER_SIZE, recordWidth * 4096));
+            out.position(HEADER_SIZE);
+            int count = 0;
+            if (!tree.isEmpty()) {
+                // breadth-first queue of pending positions together with the index of their parent
+                Deque<Position<E>> queue = new ArrayDeque<>();
+                Deque<Integer> parents = new ArrayDeque<>();
+                queue.add(tree.root());
+                parents.add(NONE);
+                int nextIndex = 1;
+                while (!queue.isEmpty()) {
+                    Position<E> node = queue.poll();
+                    int parent = parents.poll();
+                    int firstChild = nextIndex;
+                    for (Position<E> child : tree.children(node)) {
+                        queue.add(child);
+                        parents.add(count);
+                        nextIndex++;
+                    }
+                    if (buffer.remaining() < recordWidth) {
+                        flush(buffer, out);
+                    }
+                    int offset = buffer.position();
+                    buffer.putInt(offset + PARENT, parent);
+                    buffer.putInt(offset + FIRST_CHILD, firstChild);
+                    buffer.putInt(offset + CHILD_COUNT, nextIndex - firstChild);
+                    codec.write(buffer, offset + ELEMENT, node.getElement());
+                    buffer.position(offset + recordWidth);
+                    count++;
+                }
+            }
+            flush(buffer, out);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(codec.width());
+            buffer.flip();
+            long at = 0;
+            while (buffer.hasRemaining()) {
+                at += out.write(buffer, at);
+            }
+        }
+    }
+
+    private static void flush(ByteBuffer buffer, FileChannel out) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Open a tree file written by {@link #write(Tree, ElementCodec, Path)}. Only the header is read, and checked
+     * against the codec and the length of the file.
+     *
+     * @param file  the tree file
+     * @param codec the encoding used to write the elements
+     * @param <E>   the type of the elements
+     * @return the mapped tree, which must be closed to release the file
+     * @throws IOException if the file cannot be read or is not a tree file
+     */
+    public static <E> MappedTree<E> open(Path file, ElementCodec<E> codec) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+                // keep reading until the header is complete
+            }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                throw new IOException("The file is not a tree file: " + file);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("The tree file version " + version + " is not supported, expected " + VERSION);
+            }
+            int size = header.getInt();
+            if (size < 0) {
+                throw new IOException("The node count of the tree file is negative: " + size);
+            }
+            int width = header.getInt();
+            if (width != codec.width()) {
+                throw new IOException("The element width of the file is " + width + " bytes but the codec writes "
+                        + codec.width());
+            }
+            // the records are only mapped later, so a short file would fail on the first access to a missing one
+            long expected = HEADER_SIZE + (long) size * (ELEMENT + width);
+            if (channel.size() < expected) {
+                throw new IOException("The tree file is truncated: " + size + " nodes need " + expected
+                        + " bytes but the file has " + channel.size());
+            }
+            return new MappedTree<>(channel, codec, size);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Close the underlying file.
+     *
+     * @throws IOException if there is an error closing the file
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private ByteBuffer chunk(int index) {
+        int c = index >>> CHUNK_BITS;
+        if (chunks[c] == null) {
+            long start = HEADER_SIZE + ((long) c << CHUNK_BITS) * recordWidth;
+            long length = (long) Math.min(1 << CHUNK_BITS, size - (c << CHUNK_BITS)) * recordWidth;
+            try {
+                chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            } catch (IOException e) {
+                throw new RuntimeException("The tree file cannot be mapped", e);
+            }
+        }
+        return chunks[c];
+    }
+
+    private int offset(int index, int field) {
+        return (index & CHUNK_MASK) * recordWidth + field;
+    }
+
+    private int get(int index, int field) {
+        return chunk(index).getInt(offset(index, field));
+    }
+
+    private int checkPosition(Position<E> p) {
+        if (!(p instanceof Handle) || ((Handle<E>) p).tree != this) {
+            throw new RuntimeException("The position is invalid");
+        }
+        return ((Handle<E>) p).index;
+    }
+
+    private Position<E> handle(int index) {
+        return index == NONE ? null : new Handle<>(this, index);
+    }
+
+    /**
+     * Return the number of elements stored in the tree.
+     *
+     * @return the number of elements in the tree
+     */
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public Position<E> root() {
+        return isEmpty() ? null : handle(0);
+    }
+
+    @Override
+    public Position<E> parent(Position<E> v) {
+        return handle(get(checkPosition(v), PARENT));
+    }
+
+    @Override
+    public Iterable<? extends Position<E>> children(Position<E> v) {
+        int node = checkPosition(v);
+        int first = get(node, FIRST_CHILD);
+        int end = first + get(node, CHILD_COUNT);
+        return () -> new IndexIterator(first, end);
+    }
+
+    @Override
+    public boolean isInternal(Position<E> v) {
+        return get(checkPosition(v), CHILD_COUNT) > 0;
+    }
+
+    @Override
+    public boolean isLeaf(Position<E> v) {
+        return get(checkPosition(v), CHILD_COUNT) == 0;
+    }
+
+    @Override
+    public boolean isRoot(Position<E> v) {
+        return checkPosition(v) == 0;
+    }
+
+    /**
+     * Return an iterator of all positions of the tree in breadth-first order, which is the order of the records.
+     *
+     * @return an iterator of the tree's positions
+     */
+    @Override
+    public Iterator<Position<E>> iterator() {
+        return new IndexIterator(0, size);
+    }
+
+    /**
+     * Iterator over a range of consecutive record indexes.
+     */
+    private class IndexIterator implements Iterator<Position<E>> {
+
+        private int next;
+
+        private final int end;
+
+        IndexIterator(int start, int end) {
+            this.next = start;
+            this.end = end;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < end;
+        }
+
+        @Override
+        public Position<E> next() {
+            if (next >= end) {
+                throw new NoSuchElementException();
+            }
+            return handle(next++);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+import material.Position;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * A batch of additions and removals applied to an NAryTree at once.
+ * <p>
+ * The operations are recorded and then applied in order by {@link #apply()}, which calls
+ * {@link NAryTree#applyBatch(MutationBatch)}. Trees that support it change the links of every operation right away
+ * and update the subtree sizes and the other derived data once for the whole batch, visiting every affected
+ * ancestor once instead of once per operation. A node added by the batch can be the parent of later additions
+ * through the index returned by {@link #add(Object, Position)}.
+ *
+ * @param <E> the type of elements stored in the tree
+ */
+public final class MutationBatch<E> {
+
+    /**
+     * A recorded operation. The target is the parent of an addition or the removed node; if it is null, the target
+     * is the node created by the addition number addedTarget of the batch.
+     */
+    static final class Operation<E> {
+
+        final boolean remove;
+
+        final E element;
+
+        final Position<E> target;
+
+        final int addedTarget;
+
+        Operation(boolean remove, E element, Position<E> target, int addedTarget) {
+            this.remove = remove;
+            this.element = element;
+            this.target = target;
+            this.addedTarget = addedTarget;
+        }
+
+        /**
+         * Return the target of the operation, given the nodes added so far by the batch.
+         */
+        Position<E> target(List<Position<E>> added) {
+            return target != null ? target : added.get(addedTarget);
+        }
+    }
+
+    /**
+     * The outcome of applying a batch.
+     *
+     * @param <E> the type of elements stored in the tree
+     */
+    public static final class Result<E> {
+
+        private final List<Position<E>> added;
+
+        private final int operations;
+
+        private final long elapsedNanos;
+
+        Result(List<Position<E>> added, int operations, long elapsedNanos) {
+            this.added = Collections.unmodifiableList(added);
+            this.operations = operations;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * Return the positions of the added nodes, in the order of the additions.
+         *
+         * @return the added positions
+         */
+        public List<Position<E>> added() {
+            return added;
+        }
+
+        /**
+         * Return the number of operations applied.
+         *
+         * @return the number of operations
+         */
+        public int operations() {
+            return operations;
+        }
+
+        /**
+         * Return the time spent applying the batch.
+         *
+         * @return the elapsed time in nanoseconds
+         */
+        public long elapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * Return the throughput of the batch.
+         *
+         * @return the number of operations applied per second
+         */
+        public double operationsPerSecond() {
+            return elapsedNanos == 0 ? Double.POSITIVE_INFINITY : operations * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d operations in %.3f ms (%.0f ops/s)", operations, elapsedNanos / 1e6,
+                    operationsPerSecond());
+        }
+    }
+
+    private final NAryTree<E> tree;
+
+    private final List<Operation<E>> operations = new ArrayList<>();
+
+    private int additions;
+
+    /**
+     * Creates an empty batch for a tree.
+     *
+     * @param tree the tree the batch is applied to
+     */
+    public MutationBatch(NAryTree<E> tree) {
+        this.tree = tree;
+    }
+
+    /**
+     * Record the addition of a new last child of a node of the tree.
+     *
+     * @param element The element stored in the new node.
+     * @param p       The position of the parent
+     * @return The index of the addition, to add children to the new node in this batch
+     */
+    public int add(E element, Position<E> p) {
+        if (p == null) {
+            throw new RuntimeException("The position is invalid");
+        }
+        operations.add(new Operation<>(false, element, p, -1));
+        return additions++;
+    }
+
+    /**
+     * Record the addition of a new last child of a node added by this batch.
+     *
+     * @param element The element stored in the new node.
+     * @param added   The index of the addition that creates the parent
+     * @return The index of the addition, to add children to the new node in this batch
+     */
+    public int add(E element, int added) {
+        if (added < 0 || added >= additions) {
+            throw new RuntimeException("The position is invalid");
+        }
+        operations.add(new Operation<>(false, element, null, added));
+        return additions++;
+    }
+
+    /**
+     * Record the removal of a node of the tree and of its subtree.
+     *
+     * @param p The position of the node
+     */
+    public void remove(Position<E> p) {
+        if (p == null) {
+            throw new RuntimeException("The position is invalid");
+        }
+        operations.add(new Operation<>(true, null, p, -1));
+    }
+
+    /**
+     * Record the removal of a node added by this batch and of its subtree.
+     *
+     * @param added The index of the addition that creates the node
+     */
+    public void remove(int added) {
+        if (added < 0 || added >= additions) {
+            throw new RuntimeException("The position is invalid");
+        }
+        operations.add(new Operation<>(true, null, null, added));
+    }
+
+    /**
+     * Return the number of recorded operations.
+     *
+     * @return the number of operations waiting to be applied
+     */
+    public int size() {
+        return operations.size();
+    }
+
+    List<Operation<E>> operations() {
+        return operations;
+    }
+
+    /**
+     * Apply the recorded operations in order and empty the batch, so that it can record the next one. If an
+     * operation has an invalid position, the operations before it stay applied, the tree stays consistent, the batch
+     * is emptied and the exception is thrown.
+     *
+     * @return the added positions and the throughput of the batch
+     */
+    public Result<E> apply() {
+        int count = operations.size();
+        long start = System.nanoTime();
+        List<Position<E>> added;
+        try {
+            added = tree.applyBatch(this);
+        } finally {
+            operations.clear();
+            additions = 0;
+        }
+        long elapsed = System.nanoTime() - start;
+        return new Result<>(added, count, elapsed);
+    }
+}
@@ -1,5 +1,14 @@
 import material.Position;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 
 public interface NAryTree<E> extends Tree<E> {
 
@@ -72,4 +81,214 @@ public interface NAryTree<E> extends Tree<E> {
      */
     public void attach(Position<E> p, NAryTree<E> t);
 
+    /**
+     * Return the number of elements stored in the tree.
+     *
+     * @return the number of elements in the tree
+     */
+    public int size();
+
+    /**
+     * Return the number of nodes of the subtree rooted at a node, including the node itself.
+     *
+     * @param v the root of the subtree
+     * @return the number of nodes of the subtree
+     */
+    public int size(Position<E> v);
+
+    /**
+     * Return whether v is an ancestor of w. A node is considered an ancestor of itself.
+     * <p>
+     * This default implementation walks the parent chain of w.
+     *
+     * @param v the candidate ancestor
+     * @param w the candidate descendant
+     * @return true if w belongs to the subtree rooted at v
+     */
+    public default boolean isAncestor(Position<E> v, Position<E> w) {
+        for (Position<E> p = w; p != null; p = isRoot(p) ? null : parent(p)) {
+            if (p.equals(v)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reduce the elements of the tree in parallel on the common fork/join pool. See
+     * {@link #reduce(Object, Function, BinaryOperator, ForkJoinPool, int)}.
+     *
+     * @param identity the identity of the combiner
+     * @param mapper   the function applied to every element
+     * @param combiner an associative function combining two results
+     * @param <R>      the type of the result
+     * @return the combination of the mapped elements in pre-order, or identity if the tree is empty
+     */
+    public default <R> R reduce(R identity, Function<? super E, ? extends R> mapper, BinaryOperator<R> combiner) {
+        return reduce(identity, mapper, combiner, ForkJoinPool.commonPool(), 4096);
+    }
+
+    /**
+     * Reduce the elements of the tree in parallel on a fork/join pool. Every element is mapped and the results are
+     * combined in pre-order, so the combiner has to be associative but need not be commutative. Work is split at
+     * subtrees and runs of sibling subtrees holding more than threshold nodes; smaller ones are folded
+     * sequentially by a single task.
+     * <p>
+     * The tree must not be modified during the reduction. Trees that store subtree sizes split exactly; other trees
+     * estimate the size of a subtree from its parent's, see {@link SubtreeReduction}.
+     *
+     * @param identity  the identity of the combiner
+     * @param mapper    the function applied to every element
+     * @param combiner  an associative function combining two results
+     * @param pool      the pool that runs the tasks
+     * @param threshold the maximum number of nodes folded sequentially by one task
+     * @param <R>       the type of the result
+     * @return the combination of the mapped elements in pre-order, or identity if the tree is empty
+     */
+    public default <R> R reduce(R identity, Function<? super E, ? extends R> mapper, BinaryOperator<R> combiner,
+                                ForkJoinPool pool, int threshold) {
+        return SubtreeReduction.reduce(this, identity, mapper, combiner, pool, threshold, false);
+    }
+
+    /**
+     * Return a sequential stream of the positions of the tree in breadth-first order, the order of iterator().
+     *
+     * @return a stream of the positions of the tree
+     */
+    public default Stream<Position<E>> stream() {
+        return stream(TraversalOrder.BREADTH_FIRST);
+    }
+
+    /**
+     * Return a sequential stream of the positions of the tree in a given order.
+     *
+     * @param order the traversal order
+     * @return a stream of the positions of the tree
+     */
+    public default Stream<Position<E>> stream(TraversalOrder order) {
+        return StreamSupport.stream(new TreeSpliterator<>(this, order), false);
+    }
+
+    /**
+     * Return a parallel stream of the positions of the tree in breadth-first order.
+     *
+     * @return a parallel stream of the positions of the tree
+     */
+    public default Stream<Position<E>> parallelStream() {
+        return parallelStream(TraversalOrder.BREADTH_FIRST);
+    }
+
+    /**
+     * Return a parallel stream of the positions of the tree in a given order. Depth-first orders split the work
+     * along subtree boundaries; see {@link TreeSpliterator}. The tree must not be modified while the stream runs.
+     *
+     * @param order the traversal order
+     * @return a parallel stream of the positions of the tree
+     */
+    public default Stream<Position<E>> parallelStream(TraversalOrder order) {
+        return StreamSupport.stream(new TreeSpliterator<>(this, order), true);
+    }
+
+    /**
+     * Return the number of children of a node.
+     * <p>
+     * This default implementation counts the children while iterating them.
+     *
+     * @param v the node
+     * @return the number of children of v
+     */
+    public default int childCount(Position<E> v) {
+        int count = 0;
+        for (Position<E> ignored : children(v)) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Return the child of a node at a given index.
+     * <p>
+     * This default implementation walks the children up to the index.
+     *
+     * @param v the node
+     * @param i the index of the child, between 0 and childCount(v) - 1
+     * @return the i-th child of v
+     */
+    public default Position<E> child(Position<E> v, int i) {
+        if (i >= 0) {
+            Iterator<? extends Position<E>> it = children(v).iterator();
+            for (int k = 0; it.hasNext(); k++) {
+                Position<E> child = it.next();
+                if (k == i) {
+                    return child;
+                }
+            }
+        }
+        throw new RuntimeException("The position is invalid");
+    }
+
+    /**
+     * Return the sibling that follows a node in the children of its parent.
+     * <p>
+     * This default implementation scans the children of the parent.
+     *
+     * @param v the node
+     * @return the next sibling of v, or null if v is the last child or the root of this tree
+     */
+    public default Position<E> nextSibling(Position<E> v) {
+        if (isRoot(v)) {
+            return null;
+        }
+        Iterator<? extends Position<E>> it = children(parent(v)).iterator();
+        while (it.hasNext()) {
+            if (it.next().equals(v)) {
+                return it.hasNext() ? it.next() : null;
+            }
+        }
+        throw new RuntimeException("The position is invalid");
+    }
+
+    /**
+     * Return the sibling that precedes a node in the children of its parent.
+     * <p>
+     * This default implementation scans the children of the parent.
+     *
+     * @param v the node
+     * @return the previous sibling of v, or null if v is the first child or the root of this tree
+     */
+    public default Position<E> prevSibling(Position<E> v) {
+        if (isRoot(v)) {
+            return null;
+        }
+        Position<E> previous = null;
+        for (Position<E> child : children(parent(v))) {
+            if (child.equals(v)) {
+                return previous;
+            }
+            previous = child;
+        }
+        throw new RuntimeException("The position is invalid");
+    }
+
+    /**
+     * Apply the operations of a batch in order. Use {@link MutationBatch#apply()} instead of calling it directly.
+     * <p>
+     * This default implementation calls add and remove for every operation.
+     *
+     * @param batch the batch to apply
+     * @return the positions of the added nodes, in the order of the additions
+     */
+    public default List<Position<E>> applyBatch(MutationBatch<E> batch) {
+        List<Position<E>> added = new ArrayList<>();
+        for (MutationBatch.Operation<E> operation : batch.operations()) {
+            Position<E> target = operation.target(added);
+            if (operation.remove) {
+                remove(target);
+            } else {
+                added.add(add(operation.element, target));
+            }
+        }
+        return added;
+    }
+
 }
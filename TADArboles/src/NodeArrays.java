@@ -0,0 +1,356 @@
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Topology of a forest stored as parallel int arrays (struct of arrays).
+ * <p>
+ * Every node is identified by a slot index. The arrays hold, for each slot, the index of its parent,
+ * its first child, its last child and its next sibling. Released slots are kept in a free list
+ * (threaded through the next-sibling array) and reused by later allocations.
+ * <p>
+ * Element storage is left to the owner, which must grow its own arrays up to {@link #capacity()}
+ * after every allocation.
+ */
+class NodeArrays implements NodeLinks {
+
+    /**
+     * Marker for a missing link (no parent, no child, no sibling).
+     */
+    static final int NONE = -1;
+
+    /**
+     * Parent marker of a slot that is in the free list.
+     */
+    private static final int FREE = -2;
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    int[] parent;
+
+    int[] firstChild;
+
+    int[] lastChild;
+
+    int[] nextSibling;
+
+    /**
+     * Head of the free list, or NONE if there are no released slots.
+     */
+    private int freeHead = NONE;
+
+    /**
+     * Number of slots that have ever been handed out.
+     */
+    private int used;
+
+    /**
+     * Incremented by every change of the links, so that the trees sharing this topology can tell whether another
+     * one changed it.
+     */
+    int version;
+
+    /**
+     * Creates an empty topology with the default capacity.
+     */
+    NodeArrays() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty topology able to hold the given number of nodes without growing.
+     *
+     * @param initialCapacity the initial number of slots
+     */
+    NodeArrays(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        parent = new int[capacity];
+        firstChild = new int[capacity];
+        lastChild = new int[capacity];
+        nextSibling = new int[capacity];
+    }
+
+    /**
+     * Returns the number of slots currently backed by the arrays.
+     *
+     * @return the capacity
+     */
+    int capacity() {
+        return parent.length;
+    }
+
+    /**
+     * Returns whether the given index denotes a slot that holds a node.
+     *
+     * @param i the slot index
+     * @return true if the slot is in use
+     */
+    boolean isLive(int i) {
+        return i >= 0 && i < used && parent[i] != FREE;
+    }
+
+    /**
+     * Allocates a detached node, reusing a released slot if there is one.
+     *
+     * @return the slot index of the new node
+     */
+    int allocate() {
+        int i;
+        if (freeHead != NONE) {
+            i = freeHead;
+            freeHead = nextSibling[i];
+        } else {
+            if (used == parent.length) {
+                grow();
+            }
+            i = used++;
+        }
+        parent[i] = NONE;
+        firstChild[i] = NONE;
+        lastChild[i] = NONE;
+        nextSibling[i] = NONE;
+        return i;
+    }
+
+    private void grow() {
+        int capacity = parent.length + (parent.length >> 1) + 1;
+        parent = Arrays.copyOf(parent, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        lastChild = Arrays.copyOf(lastChild, capacity);
+        nextSibling = Arrays.copyOf(nextSibling, capacity);
+    }
+
+    @Override
+    public int parentOf(int i) {
+        return parent[i];
+    }
+
+    @Override
+    public int firstChildOf(int i) {
+        return firstChild[i];
+    }
+
+    @Override
+    public int nextSiblingOf(int i) {
+        return nextSibling[i];
+    }
+
+    /**
+     * Links a detached node as the last child of p.
+     *
+     * @param child the detached node
+     * @param p     the new parent
+     */
+    @Override
+    public void append(int child, int p) {
+        version++;
+        parent[child] = p;
+        if (lastChild[p] == NONE) {
+            firstChild[p] = child;
+        } else {
+            nextSibling[lastChild[p]] = child;
+        }
+        lastChild[p] = child;
+    }
+
+    /**
+     * Links a detached node as the n-th child of p. If p has fewer than n children the node is appended.
+     *
+     * @param child the detached node
+     * @param p     the new parent
+     * @param n     the index of the new child
+     */
+    void insert(int child, int p, int n) {
+        version++;
+        if (n == 0) {
+            parent[child] = p;
+            nextSibling[child] = firstChild[p];
+            firstChild[p] = child;
+            if (lastChild[p] == NONE) {
+                lastChild[p] = child;
+            }
+            return;
+        }
+        int previous = firstChild[p];
+        for (int i = 1; i < n && previous != NONE && previous != lastChild[p]; i++) {
+            previous = nextSibling[previous];
+        }
+        if (previous == NONE || previous == lastChild[p]) {
+            append(child, p);
+        } else {
+            parent[child] = p;
+            nextSibling[child] = nextSibling[previous];
+            nextSibling[previous] = child;
+        }
+    }
+
+    /**
+     * Detaches a node (and so its subtree) from its parent. The node keeps its children.
+     *
+     * @param child the node to detach
+     */
+    void unlink(int child) {
+        int p = parent[child];
+        if (p == NONE) {
+            return;
+        }
+        version++;
+        if (firstChild[p] == child) {
+            firstChild[p] = nextSibling[child];
+            if (lastChild[p] == child) {
+                lastChild[p] = NONE;
+            }
+        } else {
+            int previous = firstChild[p];
+            while (nextSibling[previous] != child) {
+                previous = nextSibling[previous];
+            }
+            nextSibling[previous] = nextSibling[child];
+            if (lastChild[p] == child) {
+                lastChild[p] = previous;
+            }
+        }
+        parent[child] = NONE;
+        nextSibling[child] = NONE;
+    }
+
+    /**
+     * Returns the number of nodes of the subtree rooted at the given node.
+     *
+     * @param top the root of the subtree
+     * @return the number of nodes of the subtree
+     */
+    int countSubtree(int top) {
+        int count = 0;
+        int i = top;
+        while (i != NONE) {
+            count++;
+            i = nextPreOrder(i, top);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the node that follows i in a pre-order traversal of the subtree rooted at top.
+     *
+     * @param i   the current node
+     * @param top the root of the traversal
+     * @return the next node, or NONE if i is the last one
+     */
+    int nextPreOrder(int i, int top) {
+        if (firstChild[i] != NONE) {
+            return firstChild[i];
+        }
+        while (i != top) {
+            if (nextSibling[i] != NONE) {
+                return nextSibling[i];
+            }
+            i = parent[i];
+        }
+        return NONE;
+    }
+
+    /**
+     * Returns the first node of a post-order traversal of the subtree rooted at i.
+     *
+     * @param i the root of the subtree
+     * @return the leftmost descendant of i
+     */
+    int leftmostDescendant(int i) {
+        while (firstChild[i] != NONE) {
+            i = firstChild[i];
+        }
+        return i;
+    }
+
+    /**
+     * Returns the node that follows i in a post-order traversal of the subtree rooted at top.
+     *
+     * @param i   the current node
+     * @param top the root of the traversal
+     * @return the next node, or NONE if i is the last one
+     */
+    int nextPostOrder(int i, int top) {
+        if (i == top) {
+            return NONE;
+        }
+        if (nextSibling[i] != NONE) {
+            return leftmostDescendant(nextSibling[i]);
+        }
+        return parent[i];
+    }
+
+    /**
+     * Returns whether a node is an ancestor of another one, or the same node, by walking up the parent links.
+     *
+     * @param links the links of the topology
+     * @param a     the possible ancestor
+     * @param v     the node
+     * @return whether a is v or one of its ancestors
+     */
+    static boolean isAncestor(NodeLinks links, int a, int v) {
+        for (int i = v; i != NONE; i = links.parentOf(i)) {
+            if (i == a) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Copies the subtree rooted at top in one topology as the last child of a node of another one, in pre-order
+     * and without recursion.
+     *
+     * @param from   the links of the subtree
+     * @param top    the root of the subtree in from
+     * @param to     the links that receive the copy
+     * @param target the node of to that receives the copy
+     * @param copy   allocates a detached node of to holding the element of a node of from, and returns its slot
+     */
+    static void copySubtree(NodeLinks from, int top, NodeLinks to, int target, IntUnaryOperator copy) {
+        // copies[i] is the copy of the node at depth i of the current pre-order path
+        int[] copies = new int[16];
+        int depth = 0;
+        copies[0] = target;
+        int i = top;
+        while (i != NONE) {
+            int node = copy.applyAsInt(i);
+            to.append(node, copies[depth]);
+            if (from.firstChildOf(i) != NONE) {
+                if (++depth == copies.length) {
+                    copies = Arrays.copyOf(copies, depth * 2);
+                }
+                copies[depth] = node;
+                i = from.firstChildOf(i);
+            } else {
+                // go back up to the first ancestor with a pending sibling
+                while (i != top && from.nextSiblingOf(i) == NONE) {
+                    i = from.parentOf(i);
+                    depth--;
+                }
+                i = i == top ? NONE : from.nextSiblingOf(i);
+            }
+        }
+    }
+
+    /**
+     * Releases every slot of the subtree rooted at the given detached node.
+     *
+     * @param top the root of the subtree, which must already be unlinked
+     * @return the number of released slots
+     */
+    int releaseSubtree(int top) {
+        version++;
+        int count = 0;
+        int i = leftmostDescendant(top);
+        while (i != NONE) {
+            // the successor must be computed before the slot is overwritten
+            int next = nextPostOrder(i, top);
+            parent[i] = FREE;
+            nextSibling[i] = freeHead;
+            freeHead = i;
+            count++;
+            i = next;
+        }
+        return count;
+    }
+}
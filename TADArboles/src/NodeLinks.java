@@ -0,0 +1,20 @@
+/**
+ * The links of a topology of slot indexes, whatever holds them: {@link NodeArrays} keeps them in int arrays and
+ * OffHeapTree in direct buffers. Lets the walks of NodeArrays run over any of them.
+ */
+interface NodeLinks {
+
+    int parentOf(int i);
+
+    int firstChildOf(int i);
+
+    int nextSiblingOf(int i);
+
+    /**
+     * Links a detached node as the last child of p.
+     *
+     * @param child the detached node
+     * @param p     the new parent
+     */
+    void append(int child, int p);
+}
@@ -0,0 +1,745 @@
+import material.Position;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+
+/**
+ * An implementation of the NAryTree interface that keeps its nodes outside of the Java heap.
+ * <p>
+ * Every node is a fixed-width record (parent, first child, last child and next sibling indexes followed by the
+ * element encoded with an {@link ElementCodec}) stored in direct ByteBuffers. The buffers are allocated in chunks
+ * of a fixed number of nodes, so growing the tree never copies the existing nodes and the heap only holds one
+ * reference per chunk.
+ * <p>
+ * The native memory is released by {@link #close()}; afterwards every operation of the tree, of the trees obtained
+ * from it with subTree and of the positions handed out by them throws an IllegalStateException.
+ *
+ * @param <E> the type of elements stored in the tree
+ */
+public class OffHeapTree<E> extends DrawableTree<E> implements AutoCloseable {
+
+    private static final int NONE = -1;
+
+    /**
+     * Parent marker of a slot that is in the free list.
+     */
+    private static final int FREE = -2;
+
+    private static final int PARENT = 0;
+
+    private static final int FIRST_CHILD = 4;
+
+    private static final int LAST_CHILD = 8;
+
+    private static final int NEXT_SIBLING = 12;
+
+    private static final int ELEMENT = 16;
+
+    /**
+     * log2 of the number of nodes stored in every chunk.
+     */
+    private static final int CHUNK_BITS = 16;
+
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+    /**
+     * The storage shared by this tree and every tree obtained from it with subTree.
+     */
+    private final Storage<E> store;
+
+    /**
+     * The slot of the root node, or NONE if the tree is empty.
+     */
+    private int root;
+
+    /**
+     * The number of nodes in the tree, valid while the version of the storage is sizeVersion.
+     */
+    private int size;
+
+    /**
+     * The version of the storage when size was last counted or updated by this tree. The trees obtained with
+     * subTree share the storage, so a change made through one of them makes the others count their nodes again.
+     */
+    private int sizeVersion;
+
+    /**
+     * Chunked off-heap node records.
+     *
+     * @param <T> the type of the elements
+     */
+    private static class Storage<T> implements NodeLinks {
+
+        private final ElementCodec<T> codec;
+
+        private final int recordWidth;
+
+        private ByteBuffer[] chunks = new ByteBuffer[4];
+
+        private int chunkCount;
+
+        /**
+         * Number of slots that have ever been handed out.
+         */
+        private int used;
+
+        /**
+         * Head of the free list, threaded through the next-sibling field.
+         */
+        private int freeHead = NONE;
+
+        private boolean closed;
+
+        /**
+         * Incremented by every change of the links.
+         */
+        private int version;
+
+        Storage(ElementCodec<T> codec) {
+            this.codec = codec;
+            this.recordWidth = ELEMENT + codec.width();
+        }
+
+        private ByteBuffer chunk(int i) {
+            if (closed) {
+                throw new IllegalStateException("The tree is closed");
+            }
+            return chunks[i >>> CHUNK_BITS];
+        }
+
+        private int offset(int i, int field) {
+            return (i & CHUNK_MASK) * recordWidth + field;
+        }
+
+        int get(int i, int field) {
+            return chunk(i).getInt(offset(i, field));
+        }
+
+        void set(int i, int field, int value) {
+            chunk(i).putInt(offset(i, field), value);
+        }
+
+        T element(int i) {
+            return codec.read(chunk(i), offset(i, ELEMENT));
+        }
+
+        void setElement(int i, T element) {
+            checkElement(element);
+            codec.write(chunk(i), offset(i, ELEMENT), element);
+        }
+
+        private static void checkElement(Object element) {
+            if (element == null) {
+                throw new RuntimeException("Null elements cannot be stored off-heap");
+            }
+        }
+
+        boolean isLive(int i) {
+            return !closed && i >= 0 && i < used && get(i, PARENT) != FREE;
+        }
+
+        int allocate(T element) {
+            // a rejected element must not take a slot
+            checkElement(element);
+            int i;
+            if (freeHead != NONE) {
+                i = freeHead;
+                freeHead = get(i, NEXT_SIBLING);
+            } else {
+                if (used == chunkCount << CHUNK_BITS) {
+                    if (closed) {
+                        throw new IllegalStateException("The tree is closed");
+                    }
+                    if (chunkCount == chunks.length) {
+                        chunks = Arrays.copyOf(chunks, chunkCount * 2);
+                    }
+                    chunks[chunkCount++] = ByteBuffer.allocateDirect(recordWidth << CHUNK_BITS);
+                }
+                i = used++;
+            }
+            setElement(i, element);
+            set(i, PARENT, NONE);
+            set(i, FIRST_CHILD, NONE);
+            set(i, LAST_CHILD, NONE);
+            set(i, NEXT_SIBLING, NONE);
+            return i;
+        }
+
+        @Override
+        public int parentOf(int i) {
+            return get(i, PARENT);
+        }
+
+        @Override
+        public int firstChildOf(int i) {
+            return get(i, FIRST_CHILD);
+        }
+
+        @Override
+        public int nextSiblingOf(int i) {
+            return get(i, NEXT_SIBLING);
+        }
+
+        @Override
+        public void append(int child, int p) {
+            version++;
+            set(child, PARENT, p);
+            int last = get(p, LAST_CHILD);
+            if (last == NONE) {
+                set(p, FIRST_CHILD, child);
+            } else {
+                set(last, NEXT_SIBLING, child);
+            }
+            set(p, LAST_CHILD, child);
+        }
+
+        void insert(int child, int p, int n) {
+            version++;
+            int last = get(p, LAST_CHILD);
+            if (n == 0) {
+                set(child, PARENT, p);
+                set(child, NEXT_SIBLING, get(p, FIRST_CHILD));
+                set(p, FIRST_CHILD, child);
+                if (last == NONE) {
+                    set(p, LAST_CHILD, child);
+                }
+                return;
+            }
+            int previous = get(p, FIRST_CHILD);
+            for (int k = 1; k < n && previous != NONE && previous != last; k++) {
+                previous = get(previous, NEXT_SIBLING);
+            }
+            if (previous == NONE || previous == last) {
+                append(child, p);
+            } else {
+                set(child, PARENT, p);
+                set(child, NEXT_SIBLING, get(previous, NEXT_SIBLING));
+                set(previous, NEXT_SIBLING, child);
+            }
+        }
+
+        void unlink(int child) {
+            int p = get(child, PARENT);
+            if (p == NONE) {
+                return;
+            }
+            version++;
+            int next = get(child, NEXT_SIBLING);
+            if (get(p, FIRST_CHILD) == child) {
+                set(p, FIRST_CHILD, next);
+                if (next == NONE) {
+                    set(p, LAST_CHILD, NONE);
+                }
+            } else {
+                int previous = get(p, FIRST_CHILD);
+                while (get(previous, NEXT_SIBLING) != child) {
+                    previous = get(previous, NEXT_SIBLING);
+                }
+                set(previous, NEXT_SIBLING, next);
+                if (next == NONE) {
+                    set(p, LAST_CHILD, previous);
+                }
+            }
+            set(child, PARENT, NONE);
+            set(child, NEXT_SIBLING, NONE);
+        }
+
+        int nextPreOrder(int i, int top) {
+            int child = get(i, FIRST_CHILD);
+            if (child != NONE) {
+                return child;
+            }
+            while (i != top) {
+                int next = get(i, NEXT_SIBLING);
+                if (next != NONE) {
+                    return next;
+                }
+                i = get(i, PARENT);
+            }
+            return NONE;
+        }
+
+        int leftmostDescendant(int i) {
+            for (int child = get(i, FIRST_CHILD); child != NONE; child = get(i, FIRST_CHILD)) {
+                i = child;
+            }
+            return i;
+        }
+
+        int nextPostOrder(int i, int top) {
+            if (i == top) {
+                return NONE;
+            }
+            int next = get(i, NEXT_SIBLING);
+            return next != NONE ? leftmostDescendant(next) : get(i, PARENT);
+        }
+
+        int count(int top) {
+            int count = 0;
+            for (int i = top; i != NONE; i = nextPreOrder(i, top)) {
+                count++;
+            }
+            return count;
+        }
+
+        int release(int top) {
+            version++;
+            int count = 0;
+            int i = leftmostDescendant(top);
+            while (i != NONE) {
+                int next = nextPostOrder(i, top);
+                set(i, PARENT, FREE);
+                set(i, NEXT_SIBLING, freeHead);
+                freeHead = i;
+                count++;
+                i = next;
+            }
+            return count;
+        }
+
+        void close() {
+            // dropping the only references lets the direct buffers release their native memory
+            closed = true;
+            chunks = null;
+            chunkCount = 0;
+        }
+    }
+
+    /**
+     * A position of an OffHeapTree: the storage it belongs to and a slot index.
+     *
+     * @param <T> the type of the element
+     */
+    private static final class Handle<T> implements Position<T> {
+
+        private final Storage<T> store;
+
+        private final int index;
+
+        Handle(Storage<T> store, int index) {
+            this.store = store;
+            this.index = index;
+        }
+
+        @Override
+        public T getElement() {
+            return store.element(index);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Handle)) {
+                return false;
+            }
+            Handle<?> other = (Handle<?>) o;
+            return store == other.store && index == other.index;
+        }
+
+        @Override
+        public int hashCode() {
+            return index;
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(getElement());
+        }
+    }
+
+    /**
+     * Creates an empty tree whose elements are stored with the given encoding.
+     *
+     * @param codec the fixed-width encoding of the elements
+     */
+    public OffHeapTree(ElementCodec<E> codec) {
+        this(new Storage<>(codec), NONE, 0);
+    }
+
+    private OffHeapTree(Storage<E> store, int root, int size) {
+        this.store = store;
+        this.root = root;
+        this.size = size;
+        this.sizeVersion = store.version;
+    }
+
+    /**
+     * Return the number of nodes, counting them again if the storage was changed through another tree since this
+     * one last changed it. If the root was removed through another tree, this tree is left empty.
+     */
+    private int count() {
+        if (sizeVersion != store.version) {
+            if (root != NONE && !store.isLive(root)) {
+                root = NONE;
+            }
+            size = root == NONE ? 0 : store.count(root);
+            sizeVersion = store.version;
+        }
+        return size;
+    }
+
+    /**
+     * Return the root, which is NONE if it was removed through another tree.
+     */
+    private int top() {
+        count();
+        return root;
+    }
+
+    /**
+     * Record the number of nodes after a change made through this tree.
+     */
+    private void resize(int size) {
+        this.size = size;
+        sizeVersion = store.version;
+    }
+
+    /**
+     * Check that the native memory of the tree has not been released.
+     *
+     * @throws IllegalStateException If the tree is closed
+     */
+    private void checkOpen() {
+        if (store.closed) {
+            throw new IllegalStateException("The tree is closed");
+        }
+    }
+
+    /**
+     * Check if a given position is a live node of this storage and return its slot.
+     *
+     * @param p The position to check
+     * @return The slot of the node
+     * @throws IllegalStateException If the tree is closed
+     * @throws RuntimeException      If the position is invalid
+     */
+    private int checkPosition(Position<E> p) {
+        checkOpen();
+        if (!(p instanceof Handle)) {
+            throw new RuntimeException("The position is invalid");
+        }
+        Handle<E> handle = (Handle<E>) p;
+        if (handle.store != store || !store.isLive(handle.index)) {
+            throw new RuntimeException("The position is invalid");
+        }
+        return handle.index;
+    }
+
+    private Position<E> handle(int index) {
+        return index == NONE ? null : new Handle<>(store, index);
+    }
+
+    /**
+     * Release the native memory of this tree. Trees obtained with subTree share the memory and are closed too.
+     */
+    @Override
+    public void close() {
+        store.close();
+        root = NONE;
+        size = 0;
+    }
+
+    @Override
+    public Position<E> addRoot(E e) {
+        checkOpen();
+        if (!isEmpty()) {
+            throw new RuntimeException("The tree already has a root");
+        }
+        root = store.allocate(e);
+        resize(1);
+        return handle(root);
+    }
+
+    @Override
+    public Position<E> add(E element, Position<E> p) {
+        int parent = checkPosition(p);
+        int before = count();
+        int node = store.allocate(element);
+        store.append(node, parent);
+        resize(before + 1);
+        return handle(node);
+    }
+
+    @Override
+    public Position<E> add(E element, Position<E> p, int n) {
+        int parent = checkPosition(p);
+        if (n < 0) {
+            throw new RuntimeException("The position is invalid");
+        }
+        int before = count();
+        int node = store.allocate(element);
+        store.insert(node, parent, n);
+        resize(before + 1);
+        return handle(node);
+    }
+
+    @Override
+    public void swapElements(Position<E> p1, Position<E> p2) {
+        int i = checkPosition(p1);
+        int j = checkPosition(p2);
+        E aux = store.element(i);
+        store.setElement(i, store.element(j));
+        store.setElement(j, aux);
+    }
+
+    @Override
+    public E replace(Position<E> p, E e) {
+        int i = checkPosition(p);
+        E old = store.element(i);
+        store.setElement(i, e);
+        return old;
+    }
+
+    @Override
+    public void remove(Position<E> p) {
+        int node = checkPosition(p);
+        int n = count();
+        store.unlink(node);
+        int removed = store.release(node);
+        if (node == root) {
+            root = NONE;
+            resize(0);
+        } else {
+            resize(n - removed);
+        }
+    }
+
+    @Override
+    public NAryTree<E> subTree(Position<E> v) {
+        int node = checkPosition(v);
+        return new OffHeapTree<>(store, node, store.count(node));
+    }
+
+    /**
+     * Attach the root of tree t as the last child of node p. If t shares the storage of this tree its root is
+     * moved, and it must not be p or an ancestor of p. Otherwise its nodes are copied into this tree.
+     *
+     * @param p Node in which t will be attached.
+     * @param t Tree to be attached.
+     */
+    @Override
+    public void attach(Position<E> p, NAryTree<E> t) {
+        int node = checkPosition(p);
+        if (!(t instanceof OffHeapTree)) {
+            throw new RuntimeException("The tree is invalid");
+        }
+        OffHeapTree<E> tree = (OffHeapTree<E>) t;
+        tree.checkOpen();
+        if (tree.isEmpty()) {
+            return;
+        }
+        int n = count();
+        if (tree.store == store) {
+            if (NodeArrays.isAncestor(store, tree.root, node)) {
+                throw new RuntimeException("The tree is invalid");
+            }
+            // nodes moved from another place of this tree are already counted
+            int moved = NodeArrays.isAncestor(store, root, tree.root) ? 0 : tree.size();
+            store.unlink(tree.root);
+            store.append(tree.root, node);
+            resize(n + moved);
+        } else {
+            Storage<E> source = tree.store;
+            NodeArrays.copySubtree(source, tree.root, store, node, i -> store.allocate(source.element(i)));
+            resize(n + tree.size());
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        checkOpen();
+        return count() == 0;
+    }
+
+    @Override
+    public Position<E> root() {
+        checkOpen();
+        return handle(top());
+    }
+
+    @Override
+    public Position<E> parent(Position<E> v) {
+        int node = checkPosition(v);
+        return handle(store.get(node, PARENT));
+    }
+
+    @Override
+    public Iterable<? extends Position<E>> children(Position<E> v) {
+        int node = checkPosition(v);
+        return () -> new Iterator<Position<E>>() {
+            private int next = store.get(node, FIRST_CHILD);
+
+            @Override
+            public boolean hasNext() {
+                return next != NONE;
+            }
+
+            @Override
+            public Position<E> next() {
+                if (next == NONE) {
+                    throw new NoSuchElementException();
+                }
+                int current = next;
+                next = store.get(current, NEXT_SIBLING);
+                return handle(current);
+            }
+        };
+    }
+
+    @Override
+    public boolean isInternal(Position<E> v) {
+        int node = checkPosition(v);
+        return store.get(node, FIRST_CHILD) != NONE;
+    }
+
+    @Override
+    public boolean isLeaf(Position<E> v) {
+        int node = checkPosition(v);
+        return store.get(node, FIRST_CHILD) == NONE;
+    }
+
+    @Override
+    public boolean isRoot(Position<E> v) {
+        int node = checkPosition(v);
+        return node == top();
+    }
+
+    /**
+     * Return an iterator of all positions of the tree in breadth-first order.
+     * The queue only holds the first child of each pending sibling chain.
+     *
+     * @return an iterator of the tree's positions
+     */
+    @Override
+    public Iterator<Position<E>> iterator() {
+        checkOpen();
+        return new Iterator<Position<E>>() {
+            // circular queue of sibling chain heads
+            private int[] chains = new int[16];
+
+            private int head;
+
+            private int count;
+
+            private int next = top();
+
+            @Override
+            public boolean hasNext() {
+                return next != NONE;
+            }
+
+            @Override
+            public Position<E> next() {
+                if (next == NONE) {
+                    throw new NoSuchElementException();
+                }
+                int current = next;
+                int child = store.get(current, FIRST_CHILD);
+                if (child != NONE) {
+                    offer(child);
+                }
+                next = current == root ? NONE : store.get(current, NEXT_SIBLING);
+                if (next == NONE && count > 0) {
+                    next = chains[head];
+                    head = (head + 1) % chains.length;
+                    count--;
+                }
+                return handle(current);
+            }
+
+            private void offer(int chain) {
+                if (count == chains.length) {
+                    int[] grown = new int[chains.length * 2];
+                    for (int k = 0; k < count; k++) {
+                        grown[k] = chains[(head + k) % chains.length];
+                    }
+                    chains = grown;
+                    head = 0;
+                }
+                chains[(head + count) % chains.length] = chain;
+                count++;
+            }
+        };
+    }
+
+    /**
+     * Return an iterator of all positions of the tree in pre-order.
+     * The traversal walks the index links, so it needs no stack.
+     *
+     * @return an iterator of the tree's positions
+     */
+    public Iterator<Position<E>> iteratorPreOrder() {
+        checkOpen();
+        return new Iterator<Position<E>>() {
+            private int next = top();
+
+            @Override
+            public boolean hasNext() {
+                return next != NONE;
+            }
+
+            @Override
+            public Position<E> next() {
+                if (next == NONE) {
+                    throw new NoSuchElementException();
+                }
+                int current = next;
+                next = store.nextPreOrder(current, root);
+                return handle(current);
+            }
+        };
+    }
+
+    /**
+     * Return an iterator of all positions of the tree in post-order.
+     * The traversal walks the index links, so it needs no stack.
+     *
+     * @return an iterator of the tree's positions
+     */
+    public Iterator<Position<E>> iteratorPostOrder() {
+        checkOpen();
+        return new Iterator<Position<E>>() {
+            private int next = top() == NONE ? NONE : store.leftmostDescendant(root);
+
+            @Override
+            public boolean hasNext() {
+                return next != NONE;
+            }
+
+            @Override
+            public Position<E> next() {
+                if (next == NONE) {
+                    throw new NoSuchElementException();
+                }
+                int current = next;
+                next = store.nextPostOrder(current, root);
+                return handle(current);
+            }
+        };
+    }
+
+    /**
+     * Return the number of elements stored in the tree.
+     *
+     * @return the number of elements in the tree
+     */
+    @Override
+    public int size() {
+        checkOpen();
+        return count();
+    }
+
+    /**
+     * Return the number of nodes of the subtree rooted at a node. The subtree is counted by walking its links.
+     *
+     * @param v the root of the subtree
+     * @return the number of nodes of the subtree
+     */
+    @Override
+    public int size(Position<E> v) {
+        return store.count(checkPosition(v));
+    }
+
+}
@@ -0,0 +1,505 @@
+import material.Position;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+
+/**
+ * An immutable tree. Every update returns a new version of the tree and leaves the old one untouched.
+ * <p>
+ * Updates use path copying: only the changed node and its ancestors are copied, and every other node is shared
+ * between the old and the new version. An update therefore costs O(depth * fan-out) instead of O(n), and any
+ * number of versions can be held at once, for instance by readers that need a consistent snapshot. To publish
+ * versions between threads use a {@link Ref}, which swaps the current version atomically.
+ * <p>
+ * Since nodes are shared between versions they cannot point to their parents. A position is a cursor that records
+ * the path of child indexes from the root. Positions handed out by a version are used directly by that version;
+ * positions from another version are resolved by following their path in this one, so they stay valid as long as
+ * the path leads to the same node, or to a copy of it made by an update. The element of a position is the one it
+ * had in the version it came from.
+ * <p>
+ * The NAryTree update methods return positions or nothing, so this class implements Tree and offers the same
+ * updates returning new versions.
+ *
+ * @param <E> the type of elements stored in the tree
+ */
+public final class PersistentTree<E> implements Tree<E> {
+
+    private static final Object[] NO_CHILDREN = new Object[0];
+
+    /**
+     * An immutable node.
+     */
+    private static final class Node<T> {
+
+        private final T element;
+
+        private final Object[] children;
+
+        /**
+         * The number of nodes of the subtree rooted at this node.
+         */
+        private final int size;
+
+        /**
+         * The node this one is a copy of, kept through every copy, or this node if it is not a copy.
+         */
+        private final Node<T> original;
+
+        Node(T element, Object[] children, int size) {
+            this.element = element;
+            this.children = children;
+            this.size = size;
+            this.original = this;
+        }
+
+        /**
+         * Creates a copy of a node made by an update, which stands for the same position.
+         */
+        Node(Node<T> copied, T element, Object[] children, int size) {
+            this.element = element;
+            this.children = children;
+            this.size = size;
+            this.original = copied.original;
+        }
+
+        @SuppressWarnings("unchecked")
+        Node<T> child(int i) {
+            return (Node<T>) children[i];
+        }
+    }
+
+    /**
+     * A position: a node, the cursor of its parent and its index among the children of the parent.
+     *
+     * @param <T> the type of the element
+     */
+    private static final class Cursor<T> implements Position<T> {
+
+        private final Node<T> node;
+
+        private final Cursor<T> parent;
+
+        private final int index;
+
+        /**
+         * The root of the version that created this cursor.
+         */
+        private final Node<T> versionRoot;
+
+        Cursor(Node<T> node, Cursor<T> parent, int index, Node<T> versionRoot) {
+            this.node = node;
+            this.parent = parent;
+            this.index = index;
+            this.versionRoot = versionRoot;
+        }
+
+        @Override
+        public T getElement() {
+            return node.element;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Cursor)) {
+                return false;
+            }
+            // the same node at the same path, even if the ancestors were copied by an update
+            Cursor<?> a = this;
+            Cursor<?> b = (Cursor<?>) o;
+            if (a.node != b.node) {
+                return false;
+            }
+            while (a.parent != null && b.parent != null && a.index == b.index) {
+                a = a.parent;
+                b = b.parent;
+            }
+            return a.parent == null && b.parent == null;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(node);
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(node.element);
+        }
+    }
+
+    private final Node<E> root;
+
+    /**
+     * Creates an empty tree.
+     */
+    public PersistentTree() {
+        this(null);
+    }
+
+    private PersistentTree(Node<E> root) {
+        this.root = root;
+    }
+
+    /**
+     * Return the cursor of a position in this version, following its path of child indexes if it comes from
+     * another version.
+     *
+     * @param p The position to check
+     * @return The cursor of the position in this version
+     * @throws RuntimeException If the path of the position does not lead to its node in this version
+     */
+    private Cursor<E> checkPosition(Position<E> p) {
+        if (!(p instanceof Cursor) || root == null) {
+            throw new RuntimeException("The position is invalid");
+        }
+        Cursor<E> cursor = (Cursor<E>) p;
+        if (cursor.versionRoot == root) {
+            return cursor;
+        }
+        Deque<Cursor<E>> path = new ArrayDeque<>();
+        for (Cursor<E> c = cursor; c.parent != null; c = c.parent) {
+            path.push(c);
+        }
+        Cursor<E> resolved = new Cursor<>(root, null, 0, root);
+        for (Cursor<E> step : path) {
+            if (step.index >= resolved.node.children.length) {
+                throw new RuntimeException("The position is invalid");
+            }
+            resolved = new Cursor<>(resolved.node.child(step.index), resolved, step.index, root);
+        }
+        // the path may lead to another node, if the children of an ancestor changed
+        if (resolved.node.original != cursor.node.original) {
+            throw new RuntimeException("The position is invalid");
+        }
+        return resolved;
+    }
+
+    /**
+     * Build the version in which the node of a cursor is replaced, copying the ancestors of the node.
+     *
+     * @param cursor      the cursor of the replaced node in this version
+     * @param replacement the new node, or null to remove the node
+     * @return the new version
+     */
+    private PersistentTree<E> copyPath(Cursor<E> cursor, Node<E> replacement) {
+        int delta = (replacement == null ? 0 : replacement.size) - cursor.node.size;
+        Node<E> current = replacement;
+        Cursor<E> c = cursor;
+        while (c.parent != null) {
+            Node<E> parent = c.parent.node;
+            Object[] children;
+            if (current == null) {
+                children = new Object[parent.children.length - 1];
+                System.arraycopy(parent.children, 0, children, 0, c.index);
+                System.arraycopy(parent.children, c.index + 1, children, c.index, children.length - c.index);
+            } else {
+                children = parent.children.clone();
+                children[c.index] = current;
+            }
+            current = new Node<>(parent, parent.element, children, parent.size + delta);
+            c = c.parent;
+        }
+        return new PersistentTree<>(current);
+    }
+
+    /**
+     * Return the version with a root, if this one is empty.
+     *
+     * @param e The element stored at the new root
+     * @return The new version
+     */
+    public PersistentTree<E> addRoot(E e) {
+        if (!isEmpty()) {
+            throw new RuntimeException("The tree already has a root");
+        }
+        return new PersistentTree<>(new Node<>(e, NO_CHILDREN, 1));
+    }
+
+    /**
+     * Return the version with a new last child of a node.
+     *
+     * @param element The element stored in the new node.
+     * @param p       The position of the parent
+     * @return The new version
+     */
+    public PersistentTree<E> add(E element, Position<E> p) {
+        Cursor<E> parent = checkPosition(p);
+        return add(element, parent, parent.node.children.length);
+    }
+
+    /**
+     * Return the version with a new child of a node at a given index.
+     *
+     * @param element The element stored in the new node.
+     * @param p       The position of the parent
+     * @param n       The index of the new child
+     * @return The new version
+     */
+    public PersistentTree<E> add(E element, Position<E> p, int n) {
+        Cursor<E> parent = checkPosition(p);
+        Object[] old = parent.node.children;
+        if (n < 0 || n > old.length) {
+            throw new RuntimeException("The position is invalid");
+        }
+        Object[] children = new Object[old.length + 1];
+        System.arraycopy(old, 0, children, 0, n);
+        children[n] = new Node<>(element, NO_CHILDREN, 1);
+        System.arraycopy(old, n, children, n + 1, old.length - n);
+        return copyPath(parent, new Node<>(parent.node, parent.node.element, children, parent.node.size + 1));
+    }
+
+    /**
+     * Return the version in which the element of a node is replaced.
+     *
+     * @param p The position of the node
+     * @param e The new element
+     * @return The new version
+     */
+    public PersistentTree<E> replace(Position<E> p, E e) {
+        Cursor<E> cursor = checkPosition(p);
+        return copyPath(cursor, new Node<>(cursor.node, e, cursor.node.children, cursor.node.size));
+    }
+
+    /**
+     * Return the version without a node and its subtree.
+     *
+     * @param p The position of the node
+     * @return The new version
+     */
+    public PersistentTree<E> remove(Position<E> p) {
+        Cursor<E> cursor = checkPosition(p);
+        if (cursor.parent == null) {
+            return new PersistentTree<>();
+        }
+        return copyPath(cursor, null);
+    }
+
+    /**
+     * Return the version in which the root of a tree is the last child of a node. The nodes of t are shared, not
+     * copied.
+     *
+     * @param p Node in which t will be attached.
+     * @param t Tree to be attached.
+     * @return The new version
+     */
+    public PersistentTree<E> attach(Position<E> p, PersistentTree<E> t) {
+        Cursor<E> parent = checkPosition(p);
+        if (t.isEmpty()) {
+            return this;
+        }
+        Object[] children = Arrays.copyOf(parent.node.children, parent.node.children.length + 1);
+        children[children.length - 1] = t.root;
+        return copyPath(parent,
+                new Node<>(parent.node, parent.node.element, children, parent.node.size + t.root.size));
+    }
+
+    /**
+     * Return the number of elements stored in the tree.
+     *
+     * @return the number of elements in the tree
+     */
+    public int size() {
+        return root == null ? 0 : root.size;
+    }
+
+    /**
+     * Return the number of nodes of the subtree rooted at a node, which is stored in the node.
+     *
+     * @param v the root of the subtree
+     * @return the number of nodes of the subtree
+     */
+    public int size(Position<E> v) {
+        return checkPosition(v).node.size;
+    }
+
+    /**
+     * Return the number of children of a node.
+     *
+     * @param v the node
+     * @return the number of children of v
+     */
+    public int childCount(Position<E> v) {
+        return checkPosition(v).node.children.length;
+    }
+
+    /**
+     * Return the child of a node at a given index.
+     *
+     * @param v the node
+     * @param i the index of the child
+     * @return the i-th child of v
+     */
+    public Position<E> child(Position<E> v, int i) {
+        Cursor<E> cursor = checkPosition(v);
+        if (i < 0 || i >= cursor.node.children.length) {
+            throw new RuntimeException("The position is invalid");
+        }
+        return new Cursor<>(cursor.node.child(i), cursor, i, root);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    @Override
+    public Position<E> root() {
+        return root == null ? null : new Cursor<>(root, null, 0, root);
+    }
+
+    @Override
+    public Position<E> parent(Position<E> v) {
+        return checkPosition(v).parent;
+    }
+
+    @Override
+    public Iterable<? extends Position<E>> children(Position<E> v) {
+        Cursor<E> cursor = checkPosition(v);
+        return () -> new Iterator<Position<E>>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < cursor.node.children.length;
+            }
+
+            @Override
+            public Position<E> next() {
+                if (next >= cursor.node.children.length) {
+                    throw new NoSuchElementException();
+                }
+                int i = next++;
+                return new Cursor<>(cursor.node.child(i), cursor, i, root);
+            }
+        };
+    }
+
+    @Override
+    public boolean isInternal(Position<E> v) {
+        return checkPosition(v).node.children.length > 0;
+    }
+
+    @Override
+    public boolean isLeaf(Position<E> v) {
+        return checkPosition(v).node.children.length == 0;
+    }
+
+    @Override
+    public boolean isRoot(Position<E> v) {
+        return checkPosition(v).parent == null;
+    }
+
+    /**
+     * Return the depth of a node, which is the length of its path.
+     *
+     * @param v the node
+     * @return the depth of the node
+     */
+    @Override
+    public int depth(Position<E> v) {
+        int depth = 0;
+        for (Cursor<E> c = checkPosition(v); c.parent != null; c = c.parent) {
+            depth++;
+        }
+        return depth;
+    }
+
+    /**
+     * Return an iterator of all positions of the tree in breadth-first order.
+     *
+     * @return an iterator of the tree's positions
+     */
+    @Override
+    public Iterator<Position<E>> iterator() {
+        return new Iterator<Position<E>>() {
+            private final Deque<Cursor<E>> queue = new ArrayDeque<>();
+
+            {
+                if (root != null) {
+                    queue.add(new Cursor<>(root, null, 0, root));
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !queue.isEmpty();
+            }
+
+            @Override
+            public Position<E> next() {
+                if (queue.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Cursor<E> cursor = queue.poll();
+                for (int i = 0; i < cursor.node.children.length; i++) {
+                    queue.add(new Cursor<>(cursor.node.child(i), cursor, i, root));
+                }
+                return cursor;
+            }
+        };
+    }
+
+    /**
+     * A reference to the current version of a persistent tree, shared between threads. Readers take the current
+     * version and keep using it for as long as they like; writers derive a new version and publish it atomically.
+     *
+     * @param <E> the type of elements stored in the tree
+     */
+    public static final class Ref<E> {
+
+        private final AtomicReference<PersistentTree<E>> current;
+
+        /**
+         * Creates a reference to an empty tree.
+         */
+        public Ref() {
+            this(new PersistentTree<>());
+        }
+
+        /**
+         * Creates a reference to a given version.
+         *
+         * @param initial the initial version
+         */
+        public Ref(PersistentTree<E> initial) {
+            current = new AtomicReference<>(initial);
+        }
+
+        /**
+         * Return the current version.
+         *
+         * @return the current version
+         */
+        public PersistentTree<E> get() {
+            return current.get();
+        }
+
+        /**
+         * Publish a version if the current one is still the expected one.
+         *
+         * @param expected the version the update was derived from
+         * @param update   the new version
+         * @return true if the new version was published
+         */
+        public boolean compareAndSet(PersistentTree<E> expected, PersistentTree<E> update) {
+            return current.compareAndSet(expected, update);
+        }
+
+        /**
+         * Derive a new version from the current one and publish it, retrying if another writer published first.
+         * The function may be called several times, so it must have no side effects.
+         *
+         * @param function the update
+         * @return the published version
+         */
+        public PersistentTree<E> update(UnaryOperator<PersistentTree<E>> function) {
+            return current.updateAndGet(function);
+        }
+    }
+}
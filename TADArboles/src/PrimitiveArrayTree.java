@@ -0,0 +1,390 @@
+import java.util.function.IntConsumer;
+
+/**
+ * Common topology handling of the primitive-specialized array trees (IntArrayTree, LongArrayTree and
+ * DoubleArrayTree).
+ * <p>
+ * Nodes are identified by the int slot indexes of a {@link NodeArrays} topology, and the elements live in a
+ * primitive array owned by a {@link Storage} subclass, so neither nodes nor elements are ever boxed.
+ */
+abstract class PrimitiveArrayTree {
+
+    /**
+     * Node index used for a missing node (the parent of the root, or the root of an empty tree).
+     */
+    static final int NONE = NodeArrays.NONE;
+
+    /**
+     * The storage shared by this tree and every tree obtained from it with subTree.
+     */
+    final Storage store;
+
+    /**
+     * The slot of the root node, or NONE if the tree is empty.
+     */
+    int root;
+
+    /**
+     * The number of nodes in the tree, valid while the version of the topology is sizeVersion.
+     */
+    int size;
+
+    /**
+     * The version of the topology when size was last counted or updated by this tree. The trees obtained with
+     * subTree share the topology, so a change made through one of them makes the others count their nodes again.
+     */
+    private int sizeVersion;
+
+    /**
+     * Node topology plus a primitive element array kept as long as the topology arrays.
+     */
+    abstract static class Storage {
+
+        final NodeArrays nodes;
+
+        Storage(int initialCapacity) {
+            nodes = new NodeArrays(initialCapacity);
+        }
+
+        /**
+         * Allocate a detached node, growing the element array if needed.
+         *
+         * @return the slot of the new node
+         */
+        int allocate() {
+            int i = nodes.allocate();
+            if (nodes.capacity() > elementCapacity()) {
+                growElements(nodes.capacity());
+            }
+            return i;
+        }
+
+        abstract int elementCapacity();
+
+        abstract void growElements(int capacity);
+
+        abstract void swap(int i, int j);
+
+        /**
+         * Copy the element of slot src of another storage of the same kind into slot dst.
+         *
+         * @param from the source storage
+         * @param src  the source slot
+         * @param dst  the destination slot
+         */
+        abstract void copy(Storage from, int src, int dst);
+    }
+
+    PrimitiveArrayTree(Storage store, int root, int size) {
+        this.store = store;
+        this.root = root;
+        this.size = size;
+        this.sizeVersion = store.nodes.version;
+    }
+
+    /**
+     * Return the number of nodes, counting them again if the topology was changed through another tree since this
+     * one last changed it. If the root was removed through another tree, this tree is left empty.
+     */
+    private int count() {
+        NodeArrays nodes = store.nodes;
+        if (sizeVersion != nodes.version) {
+            if (root != NONE && !nodes.isLive(root)) {
+                root = NONE;
+            }
+            size = root == NONE ? 0 : nodes.countSubtree(root);
+            sizeVersion = nodes.version;
+        }
+        return size;
+    }
+
+    /**
+     * Return the root, which is NONE if it was removed through another tree.
+     */
+    private int top() {
+        count();
+        return root;
+    }
+
+    /**
+     * Record the number of nodes after a change made through this tree.
+     */
+    private void resize(int size) {
+        this.size = size;
+        sizeVersion = store.nodes.version;
+    }
+
+    /**
+     * Check if a given node index is a live node of this storage.
+     *
+     * @param v The node to check
+     * @return The node
+     * @throws RuntimeException If the node is invalid
+     */
+    int checkNode(int v) {
+        if (!store.nodes.isLive(v)) {
+            throw new RuntimeException("The position is invalid");
+        }
+        return v;
+    }
+
+    int allocateRoot() {
+        if (!isEmpty()) {
+            throw new RuntimeException("The tree already has a root");
+        }
+        root = store.allocate();
+        resize(1);
+        return root;
+    }
+
+    int allocateChild(int p) {
+        checkNode(p);
+        int before = count();
+        int node = store.allocate();
+        store.nodes.append(node, p);
+        resize(before + 1);
+        return node;
+    }
+
+    int allocateChild(int p, int n) {
+        checkNode(p);
+        if (n < 0) {
+            throw new RuntimeException("The position is invalid");
+        }
+        int before = count();
+        int node = store.allocate();
+        store.nodes.insert(node, p, n);
+        resize(before + 1);
+        return node;
+    }
+
+    /**
+     * Swap the elements at two nodes
+     *
+     * @param p1 The first node
+     * @param p2 The second node
+     */
+    public void swapElements(int p1, int p2) {
+        store.swap(checkNode(p1), checkNode(p2));
+    }
+
+    /**
+     * Remove a node and its corresponding subtree rooted at node.
+     *
+     * @param p The node to be removed.
+     */
+    public void remove(int p) {
+        checkNode(p);
+        int n = count();
+        store.nodes.unlink(p);
+        int removed = store.nodes.releaseSubtree(p);
+        if (p == root) {
+            root = NONE;
+            resize(0);
+        } else {
+            resize(n - removed);
+        }
+    }
+
+    int countSubtree(int v) {
+        return store.nodes.countSubtree(checkNode(v));
+    }
+
+    /**
+     * Attach the root of the given tree as the last child of node p. If the tree shares the storage of this tree its
+     * root is moved, and it must not be p or an ancestor of p. Otherwise its nodes are copied into this tree.
+     *
+     * @param p    Node in which t will be attached.
+     * @param tree Tree to be attached.
+     */
+    void attachTree(int p, PrimitiveArrayTree tree) {
+        checkNode(p);
+        if (tree.isEmpty()) {
+            return;
+        }
+        int n = count();
+        if (tree.store == store) {
+            NodeArrays nodes = store.nodes;
+            if (NodeArrays.isAncestor(nodes, tree.root, p)) {
+                throw new RuntimeException("The tree is invalid");
+            }
+            // nodes moved from another place of this tree are already counted
+            int moved = NodeArrays.isAncestor(nodes, root, tree.root) ? 0 : tree.count();
+            nodes.unlink(tree.root);
+            nodes.append(tree.root, p);
+            resize(n + moved);
+        } else {
+            Storage source = tree.store;
+            NodeArrays.copySubtree(source.nodes, tree.root, store.nodes, p, i -> {
+                int copy = store.allocate();
+                store.copy(source, i, copy);
+                return copy;
+            });
+            resize(n + tree.count());
+        }
+    }
+
+    /**
+     * Returns whether the tree is empty.
+     *
+     * @return true if the tree is empty, false otherwise.
+     */
+    public boolean isEmpty() {
+        return count() == 0;
+    }
+
+    /**
+     * Return the number of elements stored in the tree.
+     *
+     * @return the number of elements in the tree
+     */
+    public int size() {
+        return count();
+    }
+
+    /**
+     * Returns the root of the tree.
+     *
+     * @return the root node, or -1 if the tree is empty.
+     */
+    public int root() {
+        return top();
+    }
+
+    /**
+     * Returns the parent of a given node.
+     *
+     * @param v the node whose parent is to be returned.
+     * @return the parent node, or -1 if v has no parent.
+     */
+    public int parent(int v) {
+        return store.nodes.parent[checkNode(v)];
+    }
+
+    /**
+     * Returns the number of children of a given node.
+     *
+     * @param v the node
+     * @return the number of children of v
+     */
+    public int childCount(int v) {
+        int count = 0;
+        for (int c = store.nodes.firstChild[checkNode(v)]; c != NONE; c = store.nodes.nextSibling[c]) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the first child of a given node.
+     *
+     * @param v the node
+     * @return the first child, or -1 if v is a leaf
+     */
+    public int firstChild(int v) {
+        return store.nodes.firstChild[checkNode(v)];
+    }
+
+    /**
+     * Returns the next sibling of a given node.
+     *
+     * @param v the node
+     * @return the next sibling, or -1 if v is the last child of its parent or the root of the tree
+     */
+    public int nextSibling(int v) {
+        return checkNode(v) == root ? NONE : store.nodes.nextSibling[v];
+    }
+
+    /**
+     * Returns whether a given node is internal.
+     *
+     * @param v the node to be tested.
+     * @return true if the node is internal, false otherwise.
+     */
+    public boolean isInternal(int v) {
+        return store.nodes.firstChild[checkNode(v)] != NONE;
+    }
+
+    /**
+     * Returns whether a given node is external.
+     *
+     * @param v the node to be tested.
+     * @return true if the node is external, false otherwise.
+     */
+    public boolean isLeaf(int v) {
+        return store.nodes.firstChild[checkNode(v)] == NONE;
+    }
+
+    /**
+     * Returns whether a given node is the root of the tree.
+     *
+     * @param v the node to be tested.
+     * @return true if the node is the root of the tree, false otherwise.
+     */
+    public boolean isRoot(int v) {
+        return checkNode(v) == top();
+    }
+
+    /**
+     * Visit the nodes of the tree in pre-order, walking the index links.
+     *
+     * @param action the action applied to each node index
+     */
+    void preOrder(IntConsumer action) {
+        for (int i = top(); i != NONE; i = store.nodes.nextPreOrder(i, root)) {
+            action.accept(i);
+        }
+    }
+
+    /**
+     * Visit the nodes of the tree in post-order, walking the index links.
+     *
+     * @param action the action applied to each node index
+     */
+    void postOrder(IntConsumer action) {
+        if (top() == NONE) {
+            return;
+        }
+        for (int i = store.nodes.leftmostDescendant(root); i != NONE; i = store.nodes.nextPostOrder(i, root)) {
+            action.accept(i);
+        }
+    }
+
+    /**
+     * Visit the nodes of the tree in breadth-first order. The queue only holds the first child of each pending
+     * sibling chain.
+     *
+     * @param action the action applied to each node index
+     */
+    void breadthFirst(IntConsumer action) {
+        if (top() == NONE) {
+            return;
+        }
+        NodeArrays nodes = store.nodes;
+        int[] chains = new int[16];
+        int head = 0;
+        int count = 0;
+        int i = root;
+        while (i != NONE) {
+            action.accept(i);
+            if (nodes.firstChild[i] != NONE) {
+                if (count == chains.length) {
+                    int[] grown = new int[chains.length * 2];
+                    for (int k = 0; k < count; k++) {
+                        grown[k] = chains[(head + k) % chains.length];
+                    }
+                    chains = grown;
+                    head = 0;
+                }
+                chains[(head + count) % chains.length] = nodes.firstChild[i];
+                count++;
+            }
+            i = i == root ? NONE : nodes.nextSibling[i];
+            if (i == NONE && count > 0) {
+                i = chains[head];
+                head = (head + 1) % chains.length;
+                count--;
+            }
+        }
+    }
+}
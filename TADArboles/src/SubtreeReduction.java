@@ -0,0 +1,191 @@
+import material.Position;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+
+/**
+ * A fork/join task that reduces a run of consecutive sibling subtrees of an NAryTree, see
+ * {@link NAryTree#reduce(Object, Function, BinaryOperator, java.util.concurrent.ForkJoinPool, int)}.
+ * <p>
+ * A run whose subtrees hold at most {@code threshold} nodes in total is folded sequentially. A larger run of
+ * several siblings is split in two halves of similar size, one of them forked; a single large subtree is expanded
+ * into its root and the run of its children. Results are always combined in pre-order, so the combiner only needs
+ * to be associative.
+ * <p>
+ * Trees that store their subtree sizes weigh the subtrees with {@link NAryTree#size(Position)}. Other trees would
+ * walk every weighed subtree, so a subtree is estimated instead as its parent's estimate shared among its siblings,
+ * as {@link TreeSpliterator} does.
+ *
+ * @param <E> the type of elements stored in the tree
+ * @param <R> the type of the result
+ */
+final class SubtreeReduction<E, R> extends RecursiveTask<R> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final NAryTree<E> tree;
+
+    private final List<Position<E>> siblings;
+
+    private final int from;
+
+    private final int to;
+
+    /**
+     * sizes[i] is the number of nodes of the subtree rooted at siblings[i], or its estimate if the tree does not
+     * store subtree sizes, shared by the tasks of one run.
+     */
+    private final long[] sizes;
+
+    private final boolean storedSizes;
+
+    private final R identity;
+
+    private final Function<? super E, ? extends R> mapper;
+
+    private final BinaryOperator<R> combiner;
+
+    private final int threshold;
+
+    private SubtreeReduction(NAryTree<E> tree, List<Position<E>> siblings, long[] sizes, boolean storedSizes,
+                             int from, int to, R identity, Function<? super E, ? extends R> mapper,
+                             BinaryOperator<R> combiner, int threshold) {
+        this.tree = tree;
+        this.siblings = siblings;
+        this.sizes = sizes;
+        this.storedSizes = storedSizes;
+        this.from = from;
+        this.to = to;
+        this.identity = identity;
+        this.mapper = mapper;
+        this.combiner = combiner;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Reduce the elements of a tree in parallel, see
+     * {@link NAryTree#reduce(Object, Function, BinaryOperator, java.util.concurrent.ForkJoinPool, int)}.
+     *
+     * @param tree        the tree
+     * @param identity    the identity of the combiner
+     * @param mapper      the function applied to every element
+     * @param combiner    an associative function combining two results
+     * @param pool        the pool that runs the tasks
+     * @param threshold   the maximum number of nodes folded sequentially
+     * @param storedSizes whether the tree stores the size of every subtree
+     * @param <E>         the type of elements stored in the tree
+     * @param <R>         the type of the result
+     * @return the combination of the mapped elements in pre-order, or identity if the tree is empty
+     */
+    static <E, R> R reduce(NAryTree<E> tree, R identity, Function<? super E, ? extends R> mapper,
+                           BinaryOperator<R> combiner, ForkJoinPool pool, int threshold, boolean storedSizes) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("The threshold must be positive");
+        }
+        if (tree.isEmpty()) {
+            return identity;
+        }
+        long[] sizes = {tree.size()};
+        return pool.invoke(new SubtreeReduction<>(tree, List.of(tree.root()), sizes, storedSizes, 0, 1, identity,
+                mapper, combiner, threshold));
+    }
+
+    /**
+     * The sizes of the subtrees rooted at the children of a node, exact with stored sizes and otherwise the
+     * estimate of the node shared evenly among them.
+     */
+    private static <E> long[] sizesOf(NAryTree<E> tree, List<Position<E>> children, boolean storedSizes,
+                                      long estimate) {
+        long[] sizes = new long[children.size()];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = storedSizes ? tree.size(children.get(i)) : Math.max(1, (estimate - 1) / sizes.length);
+        }
+        return sizes;
+    }
+
+    @Override
+    protected R compute() {
+        // The task keeps working on the right part of its run and forks the left parts, so neither deep nor
+        // unbalanced trees nest calls. The result is values[0] + forked[0] + values[1] + ... + current.
+        List<R> values = new ArrayList<>();
+        List<SubtreeReduction<E, R>> forked = new ArrayList<>();
+        R current = identity;
+        List<Position<E>> siblings = this.siblings;
+        long[] sizes = this.sizes;
+        int from = this.from;
+        int to = this.to;
+        while (from < to) {
+            long total = 0;
+            for (int i = from; i < to; i++) {
+                total += sizes[i];
+            }
+            if (total <= threshold) {
+                for (int i = from; i < to; i++) {
+                    current = combiner.apply(current, fold(siblings.get(i)));
+                }
+                break;
+            }
+            if (to - from == 1) {
+                // expand a single large subtree into its root and the run of its children
+                Position<E> node = siblings.get(from);
+                long estimate = sizes[from];
+                current = combiner.apply(current, mapper.apply(node.getElement()));
+                siblings = new ArrayList<>();
+                for (Position<E> child : tree.children(node)) {
+                    siblings.add(child);
+                }
+                sizes = sizesOf(tree, siblings, storedSizes, estimate);
+                from = 0;
+                to = siblings.size();
+            } else {
+                // split the run where the first half reaches half of the nodes, keeping a sibling in each half
+                int middle = from + 1;
+                long half = sizes[from];
+                while (middle < to - 1 && half + sizes[middle] <= total / 2) {
+                    half += sizes[middle++];
+                }
+                SubtreeReduction<E, R> left = new SubtreeReduction<>(tree, siblings, sizes, storedSizes, from, middle,
+                        identity, mapper, combiner, threshold);
+                left.fork();
+                values.add(current);
+                forked.add(left);
+                current = identity;
+                from = middle;
+            }
+        }
+        R result = identity;
+        for (int i = 0; i < forked.size(); i++) {
+            result = combiner.apply(result, values.get(i));
+            result = combiner.apply(result, forked.get(i).join());
+        }
+        return combiner.apply(result, current);
+    }
+
+    /**
+     * Fold a subtree sequentially in pre-order, with an explicit stack of children iterators.
+     */
+    private R fold(Position<E> top) {
+        R result = combiner.apply(identity, mapper.apply(top.getElement()));
+        Deque<Iterator<? extends Position<E>>> stack = new ArrayDeque<>();
+        stack.push(tree.children(top).iterator());
+        while (!stack.isEmpty()) {
+            Iterator<? extends Position<E>> children = stack.peek();
+            if (children.hasNext()) {
+                Position<E> child = children.next();
+                result = combiner.apply(result, mapper.apply(child.getElement()));
+                stack.push(tree.children(child).iterator());
+            } else {
+                stack.pop();
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,217 @@
+import java.util.Arrays;
+
+/**
+ * An immutable bit vector with rank and select support.
+ * <p>
+ * Ranks are sampled every 512 bits and select queries start from a sampled block, so both answer after a few
+ * popcounts while the directories add less than a tenth of the size of the bits.
+ */
+class SuccinctBits {
+
+    private static final int WORDS_PER_BLOCK = 8;
+
+    private static final int BLOCK_BITS = WORDS_PER_BLOCK * Long.SIZE;
+
+    /**
+     * Number of ones (or zeros) between two select samples.
+     */
+    private static final int SAMPLE = 1024;
+
+    private final long[] words;
+
+    private final int length;
+
+    /**
+     * blockRank[b] is the number of ones before block b.
+     */
+    private final int[] blockRank;
+
+    /**
+     * selectOnes[j] is the block holding the (j * SAMPLE + 1)-th one.
+     */
+    private final int[] selectOnes;
+
+    /**
+     * selectZeros[j] is the block holding the (j * SAMPLE + 1)-th zero.
+     */
+    private final int[] selectZeros;
+
+    /**
+     * Build the directories of a bit vector. Bit i is bit (i % 64) of words[i / 64].
+     *
+     * @param words  the bits, which are not copied
+     * @param length the number of valid bits
+     */
+    SuccinctBits(long[] words, int length) {
+        this.words = words;
+        this.length = length;
+        int blocks = (length + BLOCK_BITS - 1) / BLOCK_BITS;
+        blockRank = new int[blocks + 1];
+        for (int b = 0; b < blocks; b++) {
+            int ones = 0;
+            for (int w = b * WORDS_PER_BLOCK; w < Math.min(words.length, (b + 1) * WORDS_PER_BLOCK); w++) {
+                ones += Long.bitCount(words[w]);
+            }
+            blockRank[b + 1] = blockRank[b] + ones;
+        }
+        int totalOnes = blockRank[blocks];
+        selectOnes = sample(totalOnes, true);
+        selectZeros = sample(length - totalOnes, false);
+    }
+
+    private int[] sample(int total, boolean ones) {
+        int[] samples = new int[total / SAMPLE + 2];
+        Arrays.fill(samples, Math.max(0, blockRank.length - 2));
+        int b = 0;
+        for (int j = 0; j * SAMPLE < total; j++) {
+            int k = j * SAMPLE + 1;
+            while (countBefore(b + 1, ones) < k) {
+                b++;
+            }
+            samples[j] = b;
+        }
+        return samples;
+    }
+
+    /**
+     * Number of ones (or zeros) before the given block.
+     */
+    private int countBefore(int block, boolean ones) {
+        return ones ? blockRank[block] : block * BLOCK_BITS - blockRank[block];
+    }
+
+    /**
+     * Returns the number of valid bits.
+     *
+     * @return the length of the vector
+     */
+    int length() {
+        return length;
+    }
+
+    /**
+     * Returns the value of a bit.
+     *
+     * @param i the index of the bit
+     * @return true if the bit is set
+     */
+    boolean get(int i) {
+        return (words[i >>> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     * Returns the number of ones in the positions [0, i).
+     *
+     * @param i the end of the range (exclusive)
+     * @return the number of ones before i
+     */
+    int rank1(int i) {
+        int b = i / BLOCK_BITS;
+        int rank = blockRank[b];
+        int w = b * WORDS_PER_BLOCK;
+        for (; w < (i >>> 6); w++) {
+            rank += Long.bitCount(words[w]);
+        }
+        if ((i & 63) != 0) {
+            rank += Long.bitCount(words[w] & ((1L << i) - 1));
+        }
+        return rank;
+    }
+
+    /**
+     * Returns the position of the k-th one (k starting at 1).
+     *
+     * @param k the rank of the one
+     * @return its position
+     */
+    int select1(int k) {
+        return select(k, true, selectOnes);
+    }
+
+    /**
+     * Returns the position of the k-th zero (k starting at 1).
+     *
+     * @param k the rank of the zero
+     * @return its position
+     */
+    int select0(int k) {
+        return select(k, false, selectZeros);
+    }
+
+    private int select(int k, boolean ones, int[] samples) {
+        int j = (k - 1) / SAMPLE;
+        int lo = samples[j];
+        int hi = Math.max(lo, samples[Math.min(j + 1, samples.length - 1)]);
+        // largest block b in [lo, hi] with fewer than k matching bits before it
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (countBefore(mid, ones) < k) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        int remaining = k - countBefore(lo, ones);
+        for (int w = lo * WORDS_PER_BLOCK; ; w++) {
+            long word = ones ? words[w] : ~words[w];
+            int count = Long.bitCount(word);
+            if (remaining <= count) {
+                for (int r = 1; r < remaining; r++) {
+                    word &= word - 1;
+                }
+                return w * Long.SIZE + Long.numberOfTrailingZeros(word);
+            }
+            remaining -= count;
+        }
+    }
+
+    /**
+     * Returns the number of bytes used by the bits and the directories.
+     *
+     * @return an estimate of the memory footprint
+     */
+    long sizeInBytes() {
+        return (long) words.length * Long.BYTES
+                + (long) (blockRank.length + selectOnes.length + selectZeros.length) * Integer.BYTES;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(get(i) ? '1' : '0');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Incremental construction of a bit vector.
+     */
+    static class Builder {
+
+        private long[] words = new long[16];
+
+        private int length;
+
+        /**
+         * Append a bit.
+         *
+         * @param bit the value of the new bit
+         * @return this builder
+         */
+        Builder append(boolean bit) {
+            if ((length >>> 6) == words.length) {
+                words = Arrays.copyOf(words, words.length * 2);
+            }
+            if (bit) {
+                words[length >>> 6] |= 1L << length;
+            }
+            length++;
+            return this;
+        }
+
+        SuccinctBits build() {
+            return new SuccinctBits(Arrays.copyOf(words, (length + 63) >>> 6), length);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+import material.Position;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+
+/**
+ * An immutable tree whose topology is encoded with LOUDS (level-order unary degree sequence).
+ * <p>
+ * Nodes are numbered from 1 in breadth-first order. The bit sequence starts with "10" for a virtual super root
+ * and then lists, for every node, one 1 per child followed by a 0. The k-th 1 stands for node k and the k-th 0
+ * closes the children of node k - 1, so with select on the bits:
+ * <ul>
+ *     <li>the children of node k are the consecutive nodes starting at select0(k) + 2 - k, and there are
+ *     select0(k + 1) - select0(k) - 1 of them;</li>
+ *     <li>the parent of node k is select1(k) + 1 - k.</li>
+ * </ul>
+ * The topology takes about 2 bits per node plus the rank/select directories of {@link SuccinctBits}. Elements
+ * are kept in a separate dense array in node order.
+ *
+ * @param <E> the type of elements stored in the tree
+ */
+public class SuccinctTree<E> implements Tree<E> {
+
+    private final SuccinctBits bits;
+
+    /**
+     * elements[k - 1] is the element of node k.
+     */
+    private final Object[] elements;
+
+    /**
+     * A position of a SuccinctTree: the tree it belongs to and a node number.
+     *
+     * @param <T> the type of the element
+     */
+    private static final class Handle<T> implements Position<T> {
+
+        private final SuccinctTree<T> tree;
+
+        private final int node;
+
+        Handle(SuccinctTree<T> tree, int node) {
+            this.tree = tree;
+            this.node = node;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T getElement() {
+            return (T) tree.elements[node - 1];
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Handle)) {
+                return false;
+            }
+            Handle<?> other = (Handle<?>) o;
+            return tree == other.tree && node == other.node;
+        }
+
+        @Override
+        public int hashCode() {
+            return node;
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(getElement());
+        }
+    }
+
+    /**
+     * Build the succinct representation of a tree. Later changes to the source tree are not reflected.
+     *
+     * @param source the tree to copy
+     */
+    public SuccinctTree(Tree<E> source) {
+        SuccinctBits.Builder builder = new SuccinctBits.Builder();
+        builder.append(true).append(false);
+        int count = 0;
+        Object[] values = new Object[16];
+        if (!source.isEmpty()) {
+            Deque<Position<E>> queue = new ArrayDeque<>();
+            queue.add(source.root());
+            while (!queue.isEmpty()) {
+                Position<E> node = queue.poll();
+                if (count == values.length) {
+                    values = Arrays.copyOf(values, count * 2);
+                }
+                values[count++] = node.getElement();
+                for (Position<E> child : source.children(node)) {
+                    queue.add(child);
+                    builder.append(true);
+                }
+                builder.append(false);
+            }
+        }
+        this.bits = builder.build();
+        this.elements = Arrays.copyOf(values, count);
+    }
+
+    private int checkPosition(Position<E> p) {
+        if (!(p instanceof Handle) || ((Handle<E>) p).tree != this) {
+            throw new RuntimeException("The position is invalid");
+        }
+        return ((Handle<E>) p).node;
+    }
+
+    private Position<E> handle(int node) {
+        return new Handle<>(this, node);
+    }
+
+    /**
+     * Return the number of elements stored in the tree.
+     *
+     * @return the number of elements in the tree
+     */
+    public int size() {
+        return elements.length;
+    }
+
+    /**
+     * Returns the number of bytes used to encode the topology, including the rank/select directories.
+     *
+     * @return the size of the topology in bytes
+     */
+    public long topologySizeInBytes() {
+        return bits.sizeInBytes();
+    }
+
+    /**
+     * Returns the number of children of a given node.
+     *
+     * @param v the node
+     * @return the number of children of v
+     */
+    public int childCount(Position<E> v) {
+        int node = checkPosition(v);
+        return bits.select0(node + 1) - bits.select0(node) - 1;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return elements.length == 0;
+    }
+
+    @Override
+    public Position<E> root() {
+        return isEmpty() ? null : handle(1);
+    }
+
+    @Override
+    public Position<E> parent(Position<E> v) {
+        int node = checkPosition(v);
+        int parent = bits.select1(node) + 1 - node;
+        return parent == 0 ? null : handle(parent);
+    }
+
+    @Override
+    public Iterable<? extends Position<E>> children(Position<E> v) {
+        int node = checkPosition(v);
+        int start = bits.select0(node);
+        int first = start + 2 - node;
+        int end = first + bits.select0(node + 1) - start - 1;
+        return () -> new NodeIterator(first, end);
+    }
+
+    @Override
+    public boolean isInternal(Position<E> v) {
+        int node = checkPosition(v);
+        return bits.get(bits.select0(node) + 1);
+    }
+
+    @Override
+    public boolean isLeaf(Position<E> v) {
+        int node = checkPosition(v);
+        return !bits.get(bits.select0(node) + 1);
+    }
+
+    @Override
+    public boolean isRoot(Position<E> v) {
+        return checkPosition(v) == 1;
+    }
+
+    /**
+     * Return an iterator of all positions of the tree in breadth-first order, which is the order of the nodes.
+     *
+     * @return an iterator of the tree's positions
+     */
+    @Override
+    public Iterator<Position<E>> iterator() {
+        return new NodeIterator(1, elements.length + 1);
+    }
+
+    /**
+     * Iterator over a range of consecutive node numbers.
+     */
+    private class NodeIterator implements Iterator<Position<E>> {
+
+        private int next;
+
+        private final int end;
+
+        NodeIterator(int start, int end) {
+            this.next = start;
+            this.end = end;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < end;
+        }
+
+        @Override
+        public Position<E> next() {
+            if (next >= end) {
+                throw new NoSuchElementException();
+            }
+            return handle(next++);
+        }
+    }
+}
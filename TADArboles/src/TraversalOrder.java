@@ -0,0 +1,20 @@
+/**
+ * The orders in which the nodes of a tree can be traversed.
+ */
+public enum TraversalOrder {
+
+    /**
+     * Level by level, from the root down, and from left to right within a level.
+     */
+    BREADTH_FIRST,
+
+    /**
+     * Every node before its children, and each subtree before its right siblings.
+     */
+    PRE_ORDER,
+
+    /**
+     * Every node after its children, and each subtree before its right siblings.
+     */
+    POST_ORDER
+}
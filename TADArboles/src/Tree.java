@@ -1,5 +1,8 @@
 import material.Position;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+
 
 /**
  * This interface represents a Tree data structure, which is a collection of nodes organized in a hierarchical structure.
@@ -62,4 +65,44 @@ public interface Tree<E> extends Iterable<Position<E>> {
      * @return true if the node is the root of the tree, false otherwise.
      */
     public boolean isRoot(Position<E> v);
+
+    /**
+     * Returns the depth of a given node, that is, the number of its ancestors. The root has depth 0.
+     * <p>
+     * This default implementation walks the parent chain.
+     *
+     * @param v the node whose depth is to be returned.
+     * @return the depth of the node.
+     */
+    public default int depth(Position<E> v) {
+        int depth = 0;
+        for (Position<E> p = v; !isRoot(p); p = parent(p)) {
+            depth++;
+        }
+        return depth;
+    }
+
+    /**
+     * Returns the height of the subtree rooted at a given node, that is, the length of the longest path from the
+     * node to a leaf. A leaf has height 0.
+     * <p>
+     * This default implementation visits the whole subtree level by level.
+     *
+     * @param v the node whose height is to be returned.
+     * @return the height of the node.
+     */
+    public default int height(Position<E> v) {
+        Deque<Position<E>> level = new ArrayDeque<>();
+        level.add(v);
+        int height = -1;
+        while (!level.isEmpty()) {
+            height++;
+            for (int remaining = level.size(); remaining > 0; remaining--) {
+                for (Position<E> child : children(level.poll())) {
+                    level.add(child);
+                }
+            }
+        }
+        return height;
+    }
 }
\ No newline at end of file
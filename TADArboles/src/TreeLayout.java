@@ -0,0 +1,428 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+
+/**
+ * A tidy drawing of a tree, computed in linear time with Walker's algorithm as improved by Buchheim, J&uuml;nger and
+ * Leipert, and rendered as SVG.
+ * <p>
+ * Every node is a box wide enough for its label. The nodes of a level are at the same height, a parent is centered
+ * over its children, and every subtree is drawn as close as possible to its left siblings without overlapping them;
+ * the space freed between siblings is spread evenly among the smaller subtrees in between.
+ * <p>
+ * The tree is first copied into arrays through a {@link TreeSketch}, with the nodes numbered in pre-order, so that
+ * only part of a huge tree can be drawn. Both walks of the algorithm use explicit stacks, so that very deep trees
+ * can be drawn.
+ */
+final class TreeLayout {
+
+    static final double NODE_HEIGHT = 20;
+
+    static final double LEVEL_GAP = 40;
+
+    static final double SIBLING_GAP = 10;
+
+    static final double MARGIN = 10;
+
+    private static final double CHAR_WIDTH = 7;
+
+    private static final double PADDING = 10;
+
+    private static final int NONE = -1;
+
+    private final int n;
+
+    private final String[] labels;
+
+    private final boolean[] summary;
+
+    private final int[] parent;
+
+    private final int[] depth;
+
+    /**
+     * The index of every node among its siblings.
+     */
+    private final int[] number;
+
+    /**
+     * The children of node v are kids[start[v]] to kids[start[v + 1] - 1].
+     */
+    private final int[] start;
+
+    private final int[] kids;
+
+    private final double[] width;
+
+    private final double[] prelim;
+
+    private final double[] mod;
+
+    private final double[] shift;
+
+    private final double[] change;
+
+    private final int[] thread;
+
+    private final int[] ancestor;
+
+    /**
+     * The center of every node.
+     */
+    final double[] x;
+
+    final double[] y;
+
+    private double totalWidth;
+
+    private double totalHeight;
+
+    /**
+     * Compute the drawing of a tree.
+     *
+     * @param tree the tree to draw
+     * @param <E>  the type of the elements
+     */
+    <E> TreeLayout(NAryTree<E> tree) {
+        this(new TreeSketch(tree, new DrawOptions()));
+    }
+
+    /**
+     * Compute the drawing of the part of a tree kept by a sketch. Summary nodes are drawn with dashed boxes.
+     *
+     * @param sketch the nodes to draw, in pre-order
+     */
+    TreeLayout(TreeSketch sketch) {
+        n = sketch.size();
+        labels = new String[n];
+        summary = new boolean[n];
+        parent = new int[n];
+        depth = new int[n];
+        number = new int[n];
+        start = new int[n + 1];
+        kids = new int[Math.max(n - 1, 0)];
+        width = new double[n];
+        for (int v = 0; v < n; v++) {
+            labels[v] = sketch.label(v);
+            summary[v] = sketch.isSummary(v);
+            parent[v] = sketch.parent(v);
+            width[v] = labels[v].length() * CHAR_WIDTH + 2 * PADDING;
+            if (parent[v] != NONE) {
+                start[parent[v] + 1]++;
+            }
+        }
+        for (int v = 0; v < n; v++) {
+            start[v + 1] += start[v];
+        }
+        int[] filled = new int[n];
+        for (int v = 1; v < n; v++) {
+            int p = parent[v];
+            depth[v] = depth[p] + 1;
+            number[v] = filled[p]++;
+            kids[start[p] + number[v]] = v;
+        }
+        prelim = new double[n];
+        mod = new double[n];
+        shift = new double[n];
+        change = new double[n];
+        thread = new int[n];
+        ancestor = new int[n];
+        x = new double[n];
+        y = new double[n];
+        if (n > 0) {
+            firstWalk();
+            secondWalk();
+        } else {
+            totalWidth = 2 * MARGIN;
+            totalHeight = 2 * MARGIN;
+        }
+    }
+
+    private int childCount(int v) {
+        return start[v + 1] - start[v];
+    }
+
+    private int leftmostChild(int v) {
+        return childCount(v) == 0 ? NONE : kids[start[v]];
+    }
+
+    private int rightmostChild(int v) {
+        return childCount(v) == 0 ? NONE : kids[start[v + 1] - 1];
+    }
+
+    private int leftSibling(int v) {
+        return parent[v] == NONE || number[v] == 0 ? NONE : kids[start[parent[v]] + number[v] - 1];
+    }
+
+    private int nextLeft(int v) {
+        return childCount(v) == 0 ? thread[v] : leftmostChild(v);
+    }
+
+    private int nextRight(int v) {
+        return childCount(v) == 0 ? thread[v] : rightmostChild(v);
+    }
+
+    /**
+     * The distance between the centers of two neighbouring nodes of a level.
+     */
+    private double distance(int left, int right) {
+        return (width[left] + width[right]) / 2 + SIBLING_GAP;
+    }
+
+    /**
+     * Compute the preliminary positions bottom-up. Every node is placed once its children are, and then moved
+     * away from the subtrees of its left siblings by {@link #apportion(int, int)}.
+     */
+    private void firstWalk() {
+        int[] nextChild = new int[n];
+        int[] defaultAncestor = new int[n];
+        for (int v = 0; v < n; v++) {
+            thread[v] = NONE;
+            ancestor[v] = v;
+            defaultAncestor[v] = leftmostChild(v);
+        }
+        Deque<Integer> stack = new ArrayDeque<>();
+        stack.push(0);
+        while (!stack.isEmpty()) {
+            int v = stack.peek();
+            if (nextChild[v] < childCount(v)) {
+                stack.push(kids[start[v] + nextChild[v]++]);
+                continue;
+            }
+            stack.pop();
+            int w = leftSibling(v);
+            if (childCount(v) == 0) {
+                prelim[v] = w == NONE ? 0 : prelim[w] + distance(w, v);
+            } else {
+                executeShifts(v);
+                double midpoint = (prelim[leftmostChild(v)] + prelim[rightmostChild(v)]) / 2;
+                if (w == NONE) {
+                    prelim[v] = midpoint;
+                } else {
+                    prelim[v] = prelim[w] + distance(w, v);
+                    mod[v] = prelim[v] - midpoint;
+                }
+            }
+            if (parent[v] != NONE) {
+                defaultAncestor[parent[v]] = apportion(v, defaultAncestor[parent[v]]);
+            }
+        }
+    }
+
+    /**
+     * Move the subtree of v away from the subtrees of its left siblings, following the right contour of those and
+     * the left contour of v's subtree level by level, and thread the contours for the next siblings.
+     *
+     * @param v               the node placed last
+     * @param defaultAncestor the left sibling whose subtree holds the right contour by default
+     * @return the new default ancestor
+     */
+    private int apportion(int v, int defaultAncestor) {
+        int w = leftSibling(v);
+        if (w == NONE) {
+            return defaultAncestor;
+        }
+        int vip = v;
+        int vop = v;
+        int vim = w;
+        int vom = leftmostChild(parent[v]);
+        double sip = mod[vip];
+        double sop = mod[vop];
+        double sim = mod[vim];
+        double som = mod[vom];
+        while (nextRight(vim) != NONE && nextLeft(vip) != NONE) {
+            vim = nextRight(vim);
+            vip = nextLeft(vip);
+            vom = nextLeft(vom);
+            vop = nextRight(vop);
+            ancestor[vop] = v;
+            double gap = prelim[vim] + sim - (prelim[vip] + sip) + distance(vim, vip);
+            if (gap > 0) {
+                int left = parent[ancestor[vim]] == parent[v] ? ancestor[vim] : defaultAncestor;
+                moveSubtree(left, v, gap);
+                sip += gap;
+                sop += gap;
+            }
+            sim += mod[vim];
+            sip += mod[vip];
+            som += mod[vom];
+            sop += mod[vop];
+        }
+        if (nextRight(vim) != NONE && nextRight(vop) == NONE) {
+            thread[vop] = nextRight(vim);
+            mod[vop] += sim - sop;
+        }
+        if (nextLeft(vip) != NONE && nextLeft(vom) == NONE) {
+            thread[vom] = nextLeft(vip);
+            mod[vom] += sip - som;
+            defaultAncestor = v;
+        }
+        return defaultAncestor;
+    }
+
+    /**
+     * Move the subtree of wp to the right and record how the siblings between wm and wp are to be spread out.
+     */
+    private void moveSubtree(int wm, int wp, double distance) {
+        int subtrees = number[wp] - number[wm];
+        change[wp] -= distance / subtrees;
+        shift[wp] += distance;
+        change[wm] += distance / subtrees;
+        prelim[wp] += distance;
+        mod[wp] += distance;
+    }
+
+    /**
+     * Spread out the children of a node as recorded by moveSubtree, in one pass from right to left.
+     */
+    private void executeShifts(int v) {
+        double moved = 0;
+        double step = 0;
+        for (int k = start[v + 1] - 1; k >= start[v]; k--) {
+            int w = kids[k];
+            prelim[w] += moved;
+            mod[w] += moved;
+            step += change[w];
+            moved += shift[w] + step;
+        }
+    }
+
+    /**
+     * Compute the final positions top-down, adding to every node the modifiers of its ancestors, and shift the
+     * drawing so that it starts at the margin. Parents precede their children in pre-order, so one pass suffices.
+     */
+    private void secondWalk() {
+        double[] modSum = new double[n];
+        double left = Double.POSITIVE_INFINITY;
+        double right = Double.NEGATIVE_INFINITY;
+        int levels = 0;
+        for (int v = 0; v < n; v++) {
+            x[v] = prelim[v] + modSum[v];
+            y[v] = MARGIN + depth[v] * (NODE_HEIGHT + LEVEL_GAP) + NODE_HEIGHT / 2;
+            for (int k = start[v]; k < start[v + 1]; k++) {
+                modSum[kids[k]] = modSum[v] + mod[v];
+            }
+            left = Math.min(left, x[v] - width[v] / 2);
+            right = Math.max(right, x[v] + width[v] / 2);
+            levels = Math.max(levels, depth[v] + 1);
+        }
+        for (int v = 0; v < n; v++) {
+            x[v] += MARGIN - left;
+        }
+        totalWidth = right - left + 2 * MARGIN;
+        totalHeight = levels * NODE_HEIGHT + (levels - 1) * LEVEL_GAP + 2 * MARGIN;
+    }
+
+    /**
+     * Return the width of a node's box.
+     */
+    double width(int v) {
+        return width[v];
+    }
+
+    int size() {
+        return n;
+    }
+
+    int parent(int v) {
+        return parent[v];
+    }
+
+    /**
+     * Write the drawing as an SVG document: one line per edge and one labelled box per node.
+     *
+     * @param out the writer, which is flushed but not closed
+     * @throws IOException if there is an error writing
+     */
+    void writeSvg(Writer out) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<svg xmlns=\"http://www.w3.org/2000/svg\"");
+        attribute(sb, "width", totalWidth);
+        attribute(sb, "height", totalHeight);
+        sb.append(" viewBox=\"0 0 ");
+        number(sb, totalWidth).append(' ');
+        number(sb, totalHeight).append("\" font-family=\"sans-serif\" font-size=\"12\">\n");
+        sb.append("<g stroke=\"black\">\n");
+        for (int v = 1; v < n; v++) {
+            int p = parent[v];
+            sb.append("<line");
+            attribute(sb, "x1", x[p]);
+            attribute(sb, "y1", y[p] + NODE_HEIGHT / 2);
+            attribute(sb, "x2", x[v]);
+            attribute(sb, "y2", y[v] - NODE_HEIGHT / 2);
+            sb.append("/>\n");
+            flushIfFull(sb, out);
+        }
+        sb.append("</g>\n<g stroke=\"black\" fill=\"white\">\n");
+        for (int v = 0; v < n; v++) {
+            sb.append("<rect");
+            attribute(sb, "x", x[v] - width[v] / 2);
+            attribute(sb, "y", y[v] - NODE_HEIGHT / 2);
+            attribute(sb, "width", width[v]);
+            attribute(sb, "height", NODE_HEIGHT);
+            sb.append(summary[v] ? " rx=\"4\" stroke-dasharray=\"4 2\"/>\n" : " rx=\"4\"/>\n");
+            flushIfFull(sb, out);
+        }
+        sb.append("</g>\n<g text-anchor=\"middle\" dominant-baseline=\"central\">\n");
+        for (int v = 0; v < n; v++) {
+            sb.append("<text");
+            attribute(sb, "x", x[v]);
+            attribute(sb, "y", y[v]);
+            sb.append('>');
+            escape(labels[v], sb);
+            sb.append("</text>\n");
+            flushIfFull(sb, out);
+        }
+        sb.append("</g>\n</svg>\n");
+        out.append(sb);
+        out.flush();
+    }
+
+    private static void flushIfFull(StringBuilder sb, Writer out) throws IOException {
+        if (sb.length() >= 8192) {
+            out.append(sb);
+            sb.setLength(0);
+        }
+    }
+
+    private static void attribute(StringBuilder sb, String name, double value) {
+        sb.append(' ').append(name).append("=\"");
+        number(sb, value).append('"');
+    }
+
+    /**
+     * Append a coordinate with one decimal, without going through the locale-aware formatter.
+     */
+    private static StringBuilder number(StringBuilder sb, double value) {
+        long tenths = Math.round(value * 10);
+        if (tenths < 0) {
+            sb.append('-');
+            tenths = -tenths;
+        }
+        return sb.append(tenths / 10).append('.').append(tenths % 10);
+    }
+
+    private static void escape(String text, StringBuilder sb) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&':
+                    sb.append("&amp;");
+                    break;
+                case '<':
+                    sb.append("&lt;");
+                    break;
+                case '>':
+                    sb.append("&gt;");
+                    break;
+                case '"':
+                    sb.append("&quot;");
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * The shape of a tree given by the parent of every node, used by the bulk builders of the trees.
+ * <p>
+ * Nodes are numbered from 0 to n - 1. The children of every node are grouped with a counting sort, so that the
+ * children of node v are children[start[v]] to children[start[v + 1] - 1] (compressed sparse rows), and order lists
+ * the nodes breadth-first, every parent before its children. Building the shape and checking that the nodes form a
+ * single tree take linear time.
+ */
+final class TreeShape {
+
+    /**
+     * Parent marker of the root.
+     */
+    static final int NONE = -1;
+
+    final int[] start;
+
+    final int[] children;
+
+    final int[] order;
+
+    /**
+     * Group the nodes by parent.
+     *
+     * @param parents  the parent of every node, NONE for the root
+     * @param sequence the nodes other than the root in the order they take among their siblings, or null for
+     *                 the order of their numbers
+     */
+    private TreeShape(int[] parents, int[] sequence) {
+        int n = parents.length;
+        start = new int[n + 1];
+        children = new int[Math.max(n - 1, 0)];
+        order = new int[n];
+        if (n == 0) {
+            return;
+        }
+        int root = NONE;
+        for (int i = 0; i < n; i++) {
+            int p = parents[i];
+            if (p == NONE && root == NONE) {
+                root = i;
+            } else if (p < 0 || p >= n || p == i) {
+                throw new RuntimeException("The tree is invalid");
+            } else {
+                start[p + 1]++;
+            }
+        }
+        if (root == NONE) {
+            throw new RuntimeException("The tree is invalid");
+        }
+        for (int v = 0; v < n; v++) {
+            start[v + 1] += start[v];
+        }
+        int[] next = Arrays.copyOf(start, n);
+        if (sequence == null) {
+            for (int i = 0; i < n; i++) {
+                if (i != root) {
+                    children[next[parents[i]]++] = i;
+                }
+            }
+        } else {
+            for (int c : sequence) {
+                children[next[parents[c]]++] = c;
+            }
+        }
+        // every node has a single parent, so the walk ends; it misses the nodes of any cycle
+        order[0] = root;
+        int tail = 1;
+        for (int head = 0; head < tail; head++) {
+            int v = order[head];
+            for (int k = start[v]; k < start[v + 1]; k++) {
+                order[tail++] = children[k];
+            }
+        }
+        if (tail != n) {
+            throw new RuntimeException("The tree is invalid");
+        }
+    }
+
+    /**
+     * Return the shape given by a parent array. Siblings are ordered by their numbers.
+     *
+     * @param parents the parent of every node, NONE for the root
+     * @return the shape of the tree
+     * @throws RuntimeException if the array does not describe a single tree
+     */
+    static TreeShape fromParents(int[] parents) {
+        return new TreeShape(parents, null);
+    }
+
+    /**
+     * Return the shape given by the edges of a tree. Siblings are ordered by the position of their edges.
+     *
+     * @param n     the number of nodes
+     * @param edges the edges as {parent, child} pairs
+     * @return the shape of the tree
+     * @throws RuntimeException if the edges do not describe a single tree of n nodes
+     */
+    static TreeShape fromEdges(int n, Stream<int[]> edges) {
+        int[] parents = new int[n];
+        Arrays.fill(parents, NONE);
+        int[] sequence = new int[Math.max(n - 1, 0)];
+        int count = 0;
+        for (Iterator<int[]> it = edges.iterator(); it.hasNext(); ) {
+            int[] edge = it.next();
+            int child = edge[1];
+            if (count == sequence.length || child < 0 || child >= n || parents[child] != NONE || edge[0] < 0) {
+                throw new RuntimeException("The tree is invalid");
+            }
+            parents[child] = edge[0];
+            sequence[count++] = child;
+        }
+        if (count != sequence.length) {
+            throw new RuntimeException("The tree is invalid");
+        }
+        return new TreeShape(parents, sequence);
+    }
+
+    int size() {
+        return order.length;
+    }
+
+    int childCount(int v) {
+        return start[v + 1] - start[v];
+    }
+}
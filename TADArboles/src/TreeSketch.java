@@ -0,0 +1,165 @@
+import material.Position;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+
+/**
+ * The part of a tree that is drawn under some {@link DrawOptions}, with the nodes numbered in pre-order.
+ * <p>
+ * Every drawn node has a label and the number of its parent. The hidden parts of the tree are replaced by summary
+ * nodes, which are leaves labelled with the number of nodes they stand for. The tree is walked with an explicit
+ * stack, and only the drawn nodes and the first children past the limit of a wide node are visited.
+ */
+final class TreeSketch {
+
+    static final int NONE = -1;
+
+    /**
+     * A drawn node whose children are being walked, and the summary to add after them, if any.
+     */
+    private static final class Frame<E> {
+
+        private final int id;
+
+        private final int depth;
+
+        private final Iterator<? extends Position<E>> children;
+
+        private final String hidden;
+
+        Frame(int id, int depth, Iterator<? extends Position<E>> children, String hidden) {
+            this.id = id;
+            this.depth = depth;
+            this.children = children;
+            this.hidden = hidden;
+        }
+    }
+
+    private final List<String> labels = new ArrayList<>();
+
+    private int[] parents = new int[16];
+
+    private boolean[] summaries = new boolean[16];
+
+    /**
+     * Walk the drawn part of a tree.
+     *
+     * @param tree    the tree
+     * @param options what to hide
+     * @param <E>     the type of the elements
+     */
+    <E> TreeSketch(NAryTree<E> tree, DrawOptions options) {
+        if (tree.isEmpty()) {
+            return;
+        }
+        Deque<Frame<E>> stack = new ArrayDeque<>();
+        Position<E> root = tree.root();
+        stack.push(open(tree, options, root, add(String.valueOf(root.getElement()), NONE, false), 0));
+        while (!stack.isEmpty()) {
+            Frame<E> frame = stack.peek();
+            if (frame.children.hasNext()) {
+                Position<E> child = frame.children.next();
+                int id = add(String.valueOf(child.getElement()), frame.id, false);
+                stack.push(open(tree, options, child, id, frame.depth + 1));
+            } else {
+                stack.pop();
+                if (frame.hidden != null) {
+                    add(frame.hidden, frame.id, true);
+                }
+            }
+        }
+    }
+
+    /**
+     * Decide which children of a drawn node are drawn and what the summary of the others is.
+     */
+    private static <E> Frame<E> open(NAryTree<E> tree, DrawOptions options, Position<E> v, int id, int depth) {
+        Iterator<? extends Position<E>> none = Collections.emptyIterator();
+        if (tree.isLeaf(v)) {
+            return new Frame<>(id, depth, none, null);
+        }
+        if (depth > 0 && options.getCollapseAbove() < Integer.MAX_VALUE) {
+            int size = tree.size(v);
+            if (size > options.getCollapseAbove()) {
+                return new Frame<>(id, depth, none, "+" + (size - 1) + " nodes");
+            }
+        }
+        if (depth >= options.getMaxDepth()) {
+            return new Frame<>(id, depth, none, "+" + (tree.size(v) - 1) + " nodes");
+        }
+        if (options.getMaxChildren() == Integer.MAX_VALUE) {
+            return new Frame<>(id, depth, tree.children(v).iterator(), null);
+        }
+        List<Position<E>> shown = new ArrayList<>();
+        Iterator<? extends Position<E>> it = tree.children(v).iterator();
+        while (it.hasNext() && shown.size() < options.getMaxChildren()) {
+            shown.add(it.next());
+        }
+        if (!it.hasNext()) {
+            return new Frame<>(id, depth, shown.iterator(), null);
+        }
+        int hiddenNodes = tree.size(v) - 1;
+        for (Position<E> child : shown) {
+            hiddenNodes -= tree.size(child);
+        }
+        int hiddenChildren = tree.childCount(v) - shown.size();
+        return new Frame<>(id, depth, shown.iterator(), "+" + hiddenChildren + " children (" + hiddenNodes + " nodes)");
+    }
+
+    private int add(String label, int parent, boolean summary) {
+        int id = labels.size();
+        if (id == parents.length) {
+            parents = Arrays.copyOf(parents, id * 2);
+            summaries = Arrays.copyOf(summaries, id * 2);
+        }
+        labels.add(label);
+        parents[id] = parent;
+        summaries[id] = summary;
+        return id;
+    }
+
+    int size() {
+        return labels.size();
+    }
+
+    String label(int v) {
+        return labels.get(v);
+    }
+
+    int parent(int v) {
+        return parents[v];
+    }
+
+    boolean isSummary(int v) {
+        return summaries[v];
+    }
+
+    /**
+     * Return the prefix of the names of the summary nodes: one more '#' than any drawn label starts with, so that
+     * the name of a summary node is never the label of a drawn node.
+     */
+    String summaryPrefix() {
+        int longest = 0;
+        for (int v = 0; v < labels.size(); v++) {
+            if (!summaries[v]) {
+                String label = labels.get(v);
+                int run = 0;
+                while (run < label.length() && label.charAt(run) == '#') {
+                    run++;
+                }
+                longest = Math.max(longest, run);
+            }
+        }
+        StringBuilder prefix = new StringBuilder();
+        for (int i = 0; i <= longest; i++) {
+            prefix.append('#');
+        }
+        return prefix.toString();
+    }
+}
@@ -0,0 +1,323 @@
+import material.Position;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+
+/**
+ * A spliterator over the positions of an NAryTree in a given {@link TraversalOrder}.
+ * <p>
+ * The pending work is an ordered deque of entries. Each entry holds a node and two flags: whether the node itself
+ * is still to be reported, and whether its descendants are. Depth-first orders split the deque along subtree
+ * boundaries. A single pending subtree is first expanded into its root and the entries of its children. Breadth-first
+ * order splits the current frontier: the prefix reports the first frontier nodes, and the suffix keeps them only to
+ * expand their children at the right place in the next level. A frontier with a single node to report is first
+ * expanded into the next level, so that a traversal starting at the root can split.
+ * <p>
+ * The tree must not be modified while it is traversed. Breadth-first splits count the nodes they hand over, so
+ * they keep the number of remaining positions exact. Depth-first splits weigh the pending subtrees: trees that
+ * store their subtree sizes create the spliterator with stored sizes, and {@link NAryTree#size(Position)} gives
+ * exact weights, so the spliterator is SIZED and SUBSIZED. Other trees would walk every weighed subtree, so a
+ * subtree is estimated instead as its parent's estimate shared among its siblings, and depth-first splits are not
+ * sized. Trees that allow concurrent changes create it as not exact: the count is then only an estimate and the
+ * spliterator is CONCURRENT.
+ *
+ * @param <E> the type of elements stored in the tree
+ */
+final class TreeSpliterator<E> implements Spliterator<Position<E>> {
+
+    /**
+     * A pending node: report it if emit is set, traverse its descendants if expand is set.
+     */
+    private static final class Entry<E> {
+
+        private final Position<E> node;
+
+        private final boolean emit;
+
+        private final boolean expand;
+
+        /**
+         * The estimated number of nodes of the subtree, used when the tree does not store subtree sizes.
+         */
+        private final long estimate;
+
+        Entry(Position<E> node, boolean emit, boolean expand) {
+            this(node, emit, expand, 1);
+        }
+
+        Entry(Position<E> node, boolean emit, boolean expand, long estimate) {
+            this.node = node;
+            this.emit = emit;
+            this.expand = expand;
+            this.estimate = estimate;
+        }
+    }
+
+    private final NAryTree<E> tree;
+
+    private final TraversalOrder order;
+
+    private final Deque<Entry<E>> pending;
+
+    /**
+     * The number of positions this spliterator still reports, exact unless the tree changes concurrently.
+     */
+    private long remaining;
+
+    /**
+     * Whether the tree does not change during the traversal.
+     */
+    private final boolean exact;
+
+    /**
+     * Whether {@link NAryTree#size(Position)} is read from stored sizes rather than computed by a walk.
+     */
+    private final boolean storedSizes;
+
+    /**
+     * Whether remaining is exact, which stops being true after an estimated depth-first split.
+     */
+    private boolean sized;
+
+    /**
+     * Reusable buffer to push the children of a node at the front of the deque in order.
+     */
+    private final List<Position<E>> buffer = new ArrayList<>();
+
+    /**
+     * Creates a spliterator over all the positions of a tree.
+     *
+     * @param tree  the tree
+     * @param order the traversal order
+     */
+    TreeSpliterator(NAryTree<E> tree, TraversalOrder order) {
+        this(tree, order, true, false);
+    }
+
+    /**
+     * Creates a spliterator over all the positions of a tree that may change concurrently if exact is false.
+     *
+     * @param tree        the tree
+     * @param order       the traversal order
+     * @param exact       whether the tree stays unchanged during the traversal
+     * @param storedSizes whether the tree stores the size of every subtree
+     */
+    TreeSpliterator(NAryTree<E> tree, TraversalOrder order, boolean exact, boolean storedSizes) {
+        this(tree, order, new ArrayDeque<>(), 0, exact, storedSizes, exact);
+        if (!tree.isEmpty()) {
+            remaining = tree.size();
+            pending.add(new Entry<>(tree.root(), true, true, remaining));
+        }
+    }
+
+    private TreeSpliterator(NAryTree<E> tree, TraversalOrder order, Deque<Entry<E>> pending, long remaining,
+                            boolean exact, boolean storedSizes, boolean sized) {
+        this.tree = tree;
+        this.exact = exact;
+        this.storedSizes = storedSizes;
+        this.sized = sized;
+        this.order = order;
+        this.pending = pending;
+        this.remaining = remaining;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Position<E>> action) {
+        while (!pending.isEmpty()) {
+            Entry<E> entry = pending.poll();
+            switch (order) {
+                case BREADTH_FIRST:
+                    if (entry.expand) {
+                        for (Position<E> child : tree.children(entry.node)) {
+                            pending.add(new Entry<>(child, true, true));
+                        }
+                    }
+                    break;
+                case PRE_ORDER:
+                    if (entry.expand) {
+                        pushChildren(entry);
+                    }
+                    break;
+                default:
+                    if (entry.expand) {
+                        // the node is reported after all of its children
+                        pending.push(new Entry<>(entry.node, entry.emit, false));
+                        pushChildren(entry);
+                        continue;
+                    }
+                    break;
+            }
+            if (entry.emit) {
+                remaining--;
+                action.accept(entry.node);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Push entries for the children of a node at the front of the deque, keeping their order. The descendants
+     * estimated for the node are shared evenly among the children.
+     */
+    private void pushChildren(Entry<E> entry) {
+        buffer.clear();
+        for (Position<E> child : tree.children(entry.node)) {
+            buffer.add(child);
+        }
+        long estimate = buffer.isEmpty() ? 1 : Math.max(1, (entry.estimate - 1) / buffer.size());
+        for (int i = buffer.size() - 1; i >= 0; i--) {
+            pending.push(new Entry<>(buffer.get(i), true, true, estimate));
+        }
+        buffer.clear();
+    }
+
+    /**
+     * The number of positions an entry reports, exact with stored sizes and estimated otherwise.
+     */
+    private long weight(Entry<E> entry) {
+        long descendants = storedSizes ? tree.size(entry.node) - 1 : entry.estimate - 1;
+        return (entry.emit ? 1 : 0) + (entry.expand ? descendants : 0);
+    }
+
+    @Override
+    public Spliterator<Position<E>> trySplit() {
+        if (sized && remaining < 2) {
+            return null;
+        }
+        return order == TraversalOrder.BREADTH_FIRST ? splitFrontier() : splitSubtrees();
+    }
+
+    /**
+     * Split a depth-first traversal: the prefix takes the first pending subtrees, about half of the positions.
+     */
+    private Spliterator<Position<E>> splitSubtrees() {
+        if (pending.size() == 1) {
+            Entry<E> entry = pending.poll();
+            if (entry.expand) {
+                // expand the only subtree into its root and its children, in traversal order
+                if (order == TraversalOrder.POST_ORDER) {
+                    pending.push(new Entry<>(entry.node, entry.emit, false));
+                    pushChildren(entry);
+                } else {
+                    pushChildren(entry);
+                    pending.push(new Entry<>(entry.node, entry.emit, false));
+                }
+            } else {
+                pending.push(entry);
+            }
+            if (pending.size() < 2) {
+                return null;
+            }
+        }
+        Deque<Entry<E>> prefix = new ArrayDeque<>();
+        long taken = 0;
+        do {
+            Entry<E> entry = pending.poll();
+            prefix.add(entry);
+            taken += weight(entry);
+        } while (pending.size() > 1 && taken + weight(pending.peek()) <= remaining / 2);
+        remaining -= taken;
+        if (!storedSizes) {
+            sized = false;
+        }
+        return new TreeSpliterator<>(tree, order, prefix, taken, exact, storedSizes, sized);
+    }
+
+    /**
+     * Split a breadth-first traversal: the prefix reports the first half of the nodes of the frontier, and this
+     * spliterator keeps those nodes only to expand them after the rest of the frontier. A frontier with fewer than
+     * two nodes to report, such as the root alone, is first replaced by the next one.
+     */
+    private Spliterator<Position<E>> splitFrontier() {
+        int emitted = emitted();
+        while (emitted < 2) {
+            if (!expandFrontier()) {
+                return null;
+            }
+            emitted = emitted();
+        }
+        Deque<Entry<E>> prefix = new ArrayDeque<>();
+        Deque<Entry<E>> expandLater = new ArrayDeque<>();
+        long taken = 0;
+        while (taken < emitted / 2) {
+            Entry<E> entry = pending.poll();
+            if (entry.emit) {
+                prefix.add(new Entry<>(entry.node, true, false));
+                taken++;
+            }
+            if (entry.expand) {
+                expandLater.add(new Entry<>(entry.node, false, true));
+            }
+        }
+        // the nodes kept for expansion must come first, their children precede those of the rest of the frontier
+        while (!expandLater.isEmpty()) {
+            pending.push(expandLater.pollLast());
+        }
+        remaining -= taken;
+        return new TreeSpliterator<>(tree, order, prefix, taken, exact, storedSizes, sized);
+    }
+
+    /**
+     * Count the pending entries that report their node.
+     */
+    private int emitted() {
+        int emitted = 0;
+        for (Entry<E> entry : pending) {
+            if (entry.emit) {
+                emitted++;
+            }
+        }
+        return emitted;
+    }
+
+    /**
+     * Replace the frontier by the nodes it still reports followed by the children of the nodes it expands. This is
+     * the order tryAdvance visits them in, since it appends the children at the end of the deque.
+     *
+     * @return whether any node was expanded
+     */
+    private boolean expandFrontier() {
+        Deque<Entry<E>> next = new ArrayDeque<>();
+        boolean expanded = false;
+        for (Entry<E> entry : pending) {
+            if (entry.emit) {
+                next.add(new Entry<>(entry.node, true, false));
+            }
+        }
+        for (Entry<E> entry : pending) {
+            if (entry.expand) {
+                expanded = true;
+                for (Position<E> child : tree.children(entry.node)) {
+                    next.add(new Entry<>(child, true, true));
+                }
+            }
+        }
+        pending.clear();
+        pending.addAll(next);
+        return expanded;
+    }
+
+    @Override
+    public long estimateSize() {
+        return Math.max(remaining, 0);
+    }
+
+    @Override
+    public int characteristics() {
+        if (!exact) {
+            return ORDERED | CONCURRENT | NONNULL;
+        }
+        if (!sized) {
+            return ORDERED | NONNULL;
+        }
+        // without stored sizes only the breadth-first splits keep the counts exact
+        boolean subsized = storedSizes || order == TraversalOrder.BREADTH_FIRST;
+        return subsized ? ORDERED | SIZED | SUBSIZED | NONNULL : ORDERED | SIZED | NONNULL;
+    }
+}
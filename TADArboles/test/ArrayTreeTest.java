@@ -0,0 +1,530 @@
+import material.Position;
+import org.junit.*;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+/**
+ * This class is a test class for the ArrayTree class.
+ * It runs the same contract as LCRSTreeTest plus the checks specific to the array storage.
+ */
+public class ArrayTreeTest {
+
+
+
+    private ArrayTree<Integer> tree;
+
+    @Before
+    public void setUp() throws Exception {
+        tree = new ArrayTree<>();
+    }
+
+    public void setTree() {
+
+        Position<Integer> p = tree.addRoot(1);
+        tree.add(2, p);
+        Position<Integer> p1 = tree.add(3, p);
+        tree.add(4, p);
+
+        tree.add(5, p1);
+        Position<Integer> p2 = tree.add(6, p1);
+
+        tree.add(7, p2);
+        Position<Integer> p3 = tree.add(8, p2);
+
+        tree.add(9, p3);
+        tree.add(10, p3);
+        tree.add(11, p3);
+        tree.add(12, p3);
+    }
+
+    @Test
+    public void testSize() {
+        Position<Integer> p = this.tree.addRoot(100);
+        this.tree.add(200, p);
+        Position<Integer> h = this.tree.add(300, p);
+        this.tree.add(400, h);
+        this.tree.add(500, h);
+        assertEquals(this.tree.size(), 5);
+    }
+
+
+    @Test
+    public void testSize2() {
+        this.setTree();
+        assertEquals(this.tree.size(), 12);
+    }
+
+    @Test
+    public void testRoot() {
+        this.setTree();
+        Integer a = this.tree.root().getElement();
+        boolean b = (a == 1);
+        assertTrue(b);
+
+    }
+
+    @Test
+    public void testIsEmpty() {
+        assertTrue(this.tree.isEmpty());
+    }
+
+    @Test
+    public void testIsEmpty2() {
+        Position<Integer> p = this.tree.addRoot(2);
+        this.tree.add(3, p);
+        assertFalse(this.tree.isEmpty());
+    }
+
+
+/*	public void testParent() {
+		this.setTree();
+
+		try {
+			Position<Integer> p = this.tree.root();
+			this.tree.parent(p);
+		} catch (BoundaryViolationException e) {
+			assertTrue(true);
+		}
+
+	}*/
+
+
+    @Test
+    public void testParent2() {
+        Position<Integer> p = tree.addRoot(1);
+        tree.add(2, p);
+        Position<Integer> p1 = tree.add(3, p);
+        tree.add(4, p);
+        tree.add(5, p1);
+        Position<Integer> p2 = tree.add(6, p1);
+        tree.add(7, p2);
+        Position<Integer> p3 = tree.add(8, p2);
+        tree.add(9, p3);
+        tree.add(10, p3);
+        tree.add(11, p3);
+        tree.add(12, p3);
+        assertEquals(p2, tree.parent(p3));
+    }
+
+    @Test
+    public void testParent3() {
+        this.setTree();
+
+        try {
+            this.tree.parent(null);
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+    }
+
+    @Test
+    public void testPositions() {
+        Position<Integer> p = this.tree.addRoot(100);
+        this.tree.add(200, p);
+        this.tree.add(300, p);
+        StringBuilder salida = new StringBuilder();
+        for (Position<Integer> e : this.tree) {
+            salida.append(e.getElement());
+        }
+        assertEquals(salida.toString(), "100200300");
+    }
+
+
+    @Test
+    public void testRemove() {
+        Position<Integer> p = this.tree.addRoot(100);
+        Position<Integer> q = this.tree.add(200, p);
+        Position<Integer> h = this.tree.add(300, p);
+        this.tree.add(400, h);
+        this.tree.add(500, h);
+        this.tree.remove(h);
+        assertEquals(this.tree.size(), 2);
+
+    }
+
+    @Test
+    public void testRemove2() {
+        this.setTree();
+        this.tree.remove(this.tree.root());
+        assertEquals(this.tree.size(), 0);
+    }
+
+
+    @Test
+    public void testRemove3() {
+        Position<Integer> p = tree.addRoot(1);
+        tree.add(2, p);
+        Position<Integer> p1 = tree.add(3, p);
+        tree.add(4, p);
+        tree.add(5, p1);
+        Position<Integer> p2 = tree.add(6, p1);
+        tree.add(7, p2);
+        Position<Integer> p3 = tree.add(8, p2);
+        tree.add(9, p3);
+        tree.add(10, p3);
+        tree.add(11, p3);
+        tree.add(12, p3);
+
+        this.tree.remove(p2);
+
+        StringBuilder s = new StringBuilder();
+        for (Position<Integer> pos : this.tree) {
+            s.append(pos.getElement());
+        }
+        assertEquals(s.toString(), "12345");
+    }
+
+
+    @Test
+    public void testGetUnmodifiableChildren() {
+        Position<Integer> p = this.tree.addRoot(100);
+        this.tree.add(200, p);
+        this.tree.add(300, p);
+        Iterable<? extends Position<Integer>> l = this.tree.children(p);
+        try {
+            l.iterator().remove();
+            fail("The children collection has been modified");
+        } catch (Exception e) {
+            assertTrue(true);
+        }
+    }
+
+
+    @Test
+    public void testGetChildren() {
+        Position<Integer> p = this.tree.addRoot(100);
+        this.tree.add(200, p);
+        this.tree.add(300, p);
+
+        StringBuilder salida = new StringBuilder();
+        for (Position<Integer> e : this.tree.children(p)) {
+            salida.append(e.getElement());
+        }
+        assertEquals(salida.toString(), "200300");
+    }
+
+
+    @Test
+    public void testGetChildren2() {
+        Position<Integer> p = tree.addRoot(1);
+        tree.add(2, p);
+        Position<Integer> p1 = tree.add(3, p);
+        tree.add(4, p);
+        tree.add(5, p1);
+        Position<Integer> p2 = tree.add(6, p1);
+        tree.add(7, p2);
+        Position<Integer> p3 = tree.add(8, p2);
+        tree.add(9, p3);
+        tree.add(10, p3);
+        tree.add(11, p3);
+        tree.add(12, p3);
+
+        StringBuilder salida = new StringBuilder();
+        for (Position<Integer> e : this.tree.children(p3)) {
+            salida.append(e.getElement());
+        }
+        assertEquals(salida.toString(), "9101112");
+    }
+
+
+    @Test
+    public void testIterator() {
+        this.setTree();
+
+        StringBuilder s = new StringBuilder();
+        for (Position<Integer> pos : this.tree) {
+            s.append(pos.getElement());
+        }
+        assertEquals(s.toString(), "123456789101112");
+    }
+
+
+
+    @Test
+    public void testIteratorPreOrder(){
+        this.setTree();
+        StringBuilder s = new StringBuilder();
+        var it = this.tree.iteratorPreOrder();
+        while(it.hasNext()){
+            s.append(it.next().getElement());
+        }
+        assertEquals("123567891011124", s.toString());
+    }
+
+
+    @Test
+    public void testIteratorPostOrder(){
+        this.setTree();
+        StringBuilder s = new StringBuilder();
+        var it = this.tree.iteratorPostOrder();
+        while(it.hasNext()){
+            s.append(it.next().getElement());
+        }
+        assertEquals("257910111286341", s.toString());
+    }
+
+    @Test
+    public void testIteratorsOnSubTree() {
+        Position<Integer> p = tree.addRoot(1);
+        Position<Integer> p1 = tree.add(2, p);
+        tree.add(3, p1);
+        tree.add(4, p1);
+        tree.add(5, p);
+
+        ArrayTree<Integer> sub = (ArrayTree<Integer>) this.tree.subTree(p1);
+        StringBuilder bfs = new StringBuilder();
+        for (Position<Integer> pos : sub) {
+            bfs.append(pos.getElement());
+        }
+        StringBuilder pre = new StringBuilder();
+        sub.iteratorPreOrder().forEachRemaining(pos -> pre.append(pos.getElement()));
+        StringBuilder post = new StringBuilder();
+        sub.iteratorPostOrder().forEachRemaining(pos -> post.append(pos.getElement()));
+
+        assertEquals("234", bfs.toString());
+        assertEquals("234", pre.toString());
+        assertEquals("342", post.toString());
+    }
+
+
+    @Test
+    public void testIsRoot() {
+        this.setTree();
+        Integer a = this.tree.root().getElement();
+        boolean b = (a == 1);
+        assertTrue(b);
+
+    }
+
+
+    @Test
+    public void testIsRoot2() {
+        try {
+            this.tree.isRoot(null);
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+    }
+
+
+    @Test
+    public void testSwapElements() {
+        Position<Integer> p = tree.addRoot(1);
+        tree.add(2, p);
+        Position<Integer> p1 = tree.add(3, p);
+        tree.add(4, p);
+        tree.add(5, p1);
+        Position<Integer> p2 = tree.add(6, p1);
+        tree.add(7, p2);
+        Position<Integer> p3 = tree.add(8, p2);
+        tree.add(9, p3);
+        tree.add(10, p3);
+        tree.add(11, p3);
+        tree.add(12, p3);
+
+
+        this.tree.swapElements(p, p1);
+        this.tree.swapElements(p2, p3);
+
+        StringBuilder salida = new StringBuilder();
+        for (Position<Integer> e : this.tree) {
+            salida.append(e.getElement());
+        }
+        assertEquals(salida.toString(), "321458769101112");
+    }
+
+
+    @Test
+    public void testReplace() {
+        Position<Integer> p = tree.addRoot(1);
+        tree.add(2, p);
+        Position<Integer> p1 = tree.add(3, p);
+        tree.add(4, p);
+        tree.add(5, p1);
+        Position<Integer> p2 = tree.add(6, p1);
+        tree.add(7, p2);
+        Position<Integer> p3 = tree.add(8, p2);
+        tree.add(9, p3);
+        tree.add(10, p3);
+        tree.add(11, p3);
+        tree.add(12, p3);
+
+
+        this.tree.replace(p, -1);
+        this.tree.replace(p1, -2);
+        this.tree.replace(p2, -3);
+        this.tree.replace(p3, -4);
+
+        StringBuilder salida = new StringBuilder();
+        for (Position<Integer> e : this.tree) {
+            salida.append(e.getElement());
+        }
+        assertEquals(salida.toString(), "-12-245-37-49101112");
+    }
+
+
+    @Test
+    public void testAttachTree(){
+        ArrayTree<Integer> tree2 = new ArrayTree<>();
+        Position<Integer> p = tree.addRoot(1);
+        tree.add(2, p);
+        Position<Integer> p1 = tree.add(3, p);
+        tree.add(4, p);
+        tree.add(5, p1);
+        Position<Integer> p2 = tree.add(6, p1);
+        tree.add(7, p2);
+        Position<Integer> p3 = tree.add(8, p2);
+        tree.add(9, p3);
+        tree.add(10, p3);
+        tree.add(11, p3);
+        tree.add(12, p3);
+
+        Position<Integer> p4 = tree2.addRoot(100);
+        tree2.add(200, p4);
+        tree2.add(300, p4);
+        tree2.add(400, p4);
+        tree2.add(500, p4);
+        tree2.add(600, p4);
+        tree2.add(700, p4);
+        tree2.add(800, p4);
+        tree2.add(900, p4);
+        tree2.add(1000, p4);
+        tree2.add(1100, p4);
+        tree2.add(1200, p4);
+        tree2.add(1300, p4);
+
+        this.tree.attach(p3, tree2);
+
+        StringBuilder salida = new StringBuilder();
+        for (Position<Integer> e : this.tree) {
+            salida.append(e.getElement());
+        }
+        assertEquals(salida.toString(), "1234567891011121002003004005006007008009001000110012001300");
+
+
+    }
+
+
+    @Test
+    public void testRemovedSlotsAreReused() {
+        Position<Integer> p = tree.addRoot(1);
+        Position<Integer> p1 = tree.add(2, p);
+        tree.add(3, p1);
+        tree.add(4, p1);
+        tree.remove(p1);
+        Position<Integer> p2 = tree.add(5, p);
+        tree.add(6, p2);
+        tree.add(7, p2);
+
+        StringBuilder s = new StringBuilder();
+        for (Position<Integer> pos : this.tree) {
+            s.append(pos.getElement());
+        }
+        assertEquals("1567", s.toString());
+        assertEquals(4, tree.size());
+    }
+
+    @Test
+    public void testRemovedPositionIsInvalid() {
+        Position<Integer> p = tree.addRoot(1);
+        Position<Integer> p1 = tree.add(2, p);
+        tree.remove(p1);
+        try {
+            tree.add(3, p1);
+            fail("A removed position has been accepted");
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+    }
+
+    @Test
+    public void testAddN() {
+        Position<Integer> p = tree.addRoot(1);
+        tree.add(2, p);
+        tree.add(4, p);
+        tree.add(3, p, 1);
+        tree.add(0, p, 0);
+        tree.add(5, p, 10);
+
+        StringBuilder s = new StringBuilder();
+        for (Position<Integer> e : this.tree.children(p)) {
+            s.append(e.getElement());
+        }
+        assertEquals("02345", s.toString());
+    }
+
+    private int walk(NAryTree<Integer> t) {
+        int count = 0;
+        for (Position<Integer> pos : t) {
+            count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void testRemoveRootOfSubTree() {
+        Position<Integer> p = tree.addRoot(1);
+        tree.add(2, p);
+        Position<Integer> p1 = tree.add(3, p);
+        tree.add(4, p1);
+        tree.add(5, p1);
+        NAryTree<Integer> sub = tree.subTree(p1);
+        sub.remove(sub.root());
+        assertTrue(sub.isEmpty());
+        assertEquals(2, tree.size());
+        assertEquals(walk(tree), tree.size());
+        // a view whose root was removed through another tree is empty
+        NAryTree<Integer> leaf = tree.subTree(tree.add(6, p));
+        tree.remove(leaf.root());
+        assertEquals(0, leaf.size());
+        assertNull(leaf.root());
+    }
+
+    @Test
+    public void testAttachSubTreeOfSameStorage() {
+        Position<Integer> p = tree.addRoot(1);
+        Position<Integer> a = tree.add(2, p);
+        Position<Integer> b = tree.add(3, p);
+        tree.add(4, b);
+        tree.add(5, b);
+        // moving nodes inside the tree keeps its size
+        tree.attach(a, tree.subTree(b));
+        assertEquals(5, tree.size());
+        assertEquals(walk(tree), tree.size());
+        // moving nodes into a view adds them to the view only
+        NAryTree<Integer> view = tree.subTree(a);
+        Position<Integer> c = tree.add(6, p);
+        view.attach(view.root(), tree.subTree(c));
+        assertEquals(5, view.size());
+        assertEquals(walk(view), view.size());
+        assertEquals(6, tree.size());
+        assertEquals(walk(tree), tree.size());
+        try {
+            view.attach(b, tree.subTree(a));
+            fail("A tree has been attached below itself");
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+    }
+
+    @Test
+    public void testReduceDoesNotWalkSubtrees() {
+        int[] walks = new int[1];
+        ArrayTree<Integer> counted = new ArrayTree<Integer>() {
+            @Override
+            public int size(Position<Integer> v) {
+                walks[0]++;
+                return super.size(v);
+            }
+        };
+        Position<Integer> p = counted.addRoot(0);
+        int sum = 0;
+        for (int i = 1; i < 2000; i++) {
+            p = counted.add(i, i % 3 == 0 ? counted.root() : p);
+            sum += i;
+        }
+        assertEquals(Integer.valueOf(sum), counted.reduce(0, e -> e, Integer::sum, ForkJoinPool.commonPool(), 16));
+        assertEquals(0, walks[0]);
+    }
+}
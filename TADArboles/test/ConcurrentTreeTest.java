@@ -0,0 +1,252 @@
+import material.Position;
+import org.junit.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * This class is a test class for the ConcurrentTree class.
+ * It checks the NAryTree contract on a single thread and then stresses the tree with concurrent writers and readers.
+ */
+public class ConcurrentTreeTest {
+
+    private ConcurrentTree<Integer> tree;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        tree = new ConcurrentTree<>();
+        executor = Executors.newFixedThreadPool(8);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+    }
+
+    public void setTree() {
+        Position<Integer> p = tree.addRoot(1);
+        tree.add(2, p);
+        Position<Integer> p1 = tree.add(3, p);
+        tree.add(4, p);
+        tree.add(5, p1);
+        Position<Integer> p2 = tree.add(6, p1);
+        tree.add(7, p2);
+        Position<Integer> p3 = tree.add(8, p2);
+        tree.add(9, p3);
+        tree.add(10, p3);
+        tree.add(11, p3);
+        tree.add(12, p3);
+    }
+
+    @Test
+    public void testSize() {
+        this.setTree();
+        assertEquals(12, tree.size());
+        assertEquals(9, tree.size(tree.child(tree.root(), 1)));
+    }
+
+    @Test
+    public void testIterator() {
+        this.setTree();
+        StringBuilder s = new StringBuilder();
+        for (Position<Integer> pos : tree) {
+            s.append(pos.getElement());
+        }
+        assertEquals("123456789101112", s.toString());
+    }
+
+    @Test
+    public void testAddNAndRemove() {
+        Position<Integer> r = tree.addRoot(0);
+        Position<Integer> a = tree.add(1, r);
+        Position<Integer> c = tree.add(3, r);
+        tree.add(2, r, 1);
+        tree.add(4, c);
+        StringBuilder s = new StringBuilder();
+        for (Position<Integer> child : tree.children(r)) {
+            s.append(child.getElement());
+        }
+        assertEquals("123", s.toString());
+        tree.remove(c);
+        assertEquals(3, tree.size());
+        try {
+            tree.add(5, c);
+            fail("A removed node has been modified");
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+        tree.remove(r);
+        assertTrue(tree.isEmpty());
+        assertEquals(0, tree.size());
+        try {
+            tree.replace(a, 7);
+            fail("A removed node has been modified");
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+    }
+
+    @Test
+    public void testChildrenSnapshot() {
+        Position<Integer> r = tree.addRoot(0);
+        tree.add(1, r);
+        Iterable<? extends Position<Integer>> children = tree.children(r);
+        tree.add(2, r);
+        int count = 0;
+        for (Position<Integer> child : children) {
+            count++;
+        }
+        assertEquals(1, count);
+        assertEquals(2, tree.childCount(r));
+    }
+
+    @Test
+    public void testSubTreeAndAttach() {
+        this.setTree();
+        Position<Integer> p1 = tree.child(tree.root(), 1);
+        NAryTree<Integer> sub = tree.subTree(p1);
+        assertEquals(9, sub.size());
+        sub.add(13, p1);
+        assertEquals(13, tree.size());
+        ConcurrentTree<Integer> other = new ConcurrentTree<>();
+        Position<Integer> q = other.addRoot(20);
+        other.add(21, q);
+        tree.attach(tree.root(), other);
+        assertEquals(15, tree.size());
+        assertEquals(tree.root(), tree.parent(q));
+        assertEquals(3, tree.depth(tree.child(q, 0)) + tree.depth(p1));
+    }
+
+    /**
+     * Every writer owns a subtree of the root and adds, replaces and removes nodes in it while readers traverse
+     * the whole tree. Writers in different subtrees must not block each other nor lose updates.
+     */
+    @Test
+    public void testDisjointWriters() throws Exception {
+        Position<Integer> r = tree.addRoot(-1);
+        int writers = 6;
+        int operations = 20_000;
+        List<Position<Integer>> tops = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            tops.add(tree.add(w, r));
+        }
+        AtomicBoolean done = new AtomicBoolean();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            Position<Integer> top = tops.get(w);
+            int seed = w;
+            results.add(executor.submit(() -> {
+                start.await();
+                Random random = new Random(seed);
+                List<Position<Integer>> mine = new ArrayList<>();
+                mine.add(top);
+                for (int i = 0; i < operations; i++) {
+                    int choice = random.nextInt(10);
+                    if (choice < 7 || mine.size() < 2) {
+                        mine.add(tree.add(i, mine.get(random.nextInt(mine.size()))));
+                    } else if (choice < 9) {
+                        tree.replace(mine.get(random.nextInt(mine.size())), i);
+                    } else {
+                        Position<Integer> victim = mine.get(1 + random.nextInt(mine.size() - 1));
+                        tree.remove(victim);
+                        // forget the removed subtree
+                        mine.removeIf(p -> tree.isAncestor(victim, p));
+                    }
+                }
+                return mine.size();
+            }));
+        }
+        List<Future<Long>> readers = new ArrayList<>();
+        for (int k = 0; k < 2; k++) {
+            readers.add(executor.submit(() -> {
+                start.await();
+                long visited = 0;
+                while (!done.get()) {
+                    for (Position<Integer> pos : tree) {
+                        assertNotNull(pos);
+                        visited++;
+                    }
+                    visited += tree.parallelStream(TraversalOrder.PRE_ORDER).count();
+                }
+                return visited;
+            }));
+        }
+        start.countDown();
+        int expected = 1;
+        for (Future<Integer> result : results) {
+            expected += result.get(60, TimeUnit.SECONDS);
+        }
+        done.set(true);
+        for (Future<Long> reader : readers) {
+            assertTrue(reader.get(60, TimeUnit.SECONDS) > 0);
+        }
+        assertEquals(expected, tree.size());
+        assertEquals(expected, tree.size(r));
+        checkLinks(tree);
+    }
+
+    /**
+     * Many threads add children to the same parent while others remove subtrees that are still being grown.
+     */
+    @Test
+    public void testContendedParentAndRacingRemovals() throws Exception {
+        Position<Integer> r = tree.addRoot(-1);
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            results.add(executor.submit(() -> {
+                start.await();
+                Random random = new Random(seed);
+                for (int i = 0; i < 5_000; i++) {
+                    Position<Integer> parent = r;
+                    int children = tree.childCount(r);
+                    if (children > 0 && random.nextBoolean()) {
+                        try {
+                            parent = tree.child(r, random.nextInt(children));
+                        } catch (RuntimeException e) {
+                            continue;
+                        }
+                    }
+                    try {
+                        if (parent != r && random.nextInt(20) == 0) {
+                            tree.remove(parent);
+                        } else {
+                            tree.add(i, parent);
+                        }
+                    } catch (RuntimeException e) {
+                        // the parent was removed by another thread
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get(60, TimeUnit.SECONDS);
+        }
+        assertEquals(tree.size(r), tree.size());
+        checkLinks(tree);
+    }
+
+    private static void checkLinks(ConcurrentTree<Integer> tree) {
+        for (Position<Integer> pos : tree) {
+            for (Position<Integer> child : tree.children(pos)) {
+                assertEquals(pos, tree.parent(child));
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+import material.Position;
+import org.junit.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * This class is a test class for the walks of the trees on a path of a million nodes.
+ * Every walk must run on the default thread stack, so none of them may recurse once per level.
+ */
+public class DeepTreeTest {
+
+    private static final int DEPTH = 1_000_000;
+
+    private static List<Integer> elements;
+
+    private static int[] parents;
+
+    @BeforeClass
+    public static void setUpPath() {
+        elements = new ArrayList<>(DEPTH);
+        parents = new int[DEPTH];
+        for (int i = 0; i < DEPTH; i++) {
+            elements.add(i);
+            parents[i] = i - 1;
+        }
+    }
+
+    private static NAryTree<Integer> addPath(NAryTree<Integer> tree) {
+        Position<Integer> p = tree.addRoot(0);
+        for (int i = 1; i < DEPTH; i++) {
+            p = tree.add(i, p);
+        }
+        return tree;
+    }
+
+    private static Position<Integer> deepest(NAryTree<Integer> tree) {
+        Position<Integer> p = tree.root();
+        while (!tree.isLeaf(p)) {
+            p = tree.child(p, 0);
+        }
+        return p;
+    }
+
+    private static void checkLast(Iterator<Position<Integer>> it, int first, int last) {
+        assertEquals(first, it.next().getElement().intValue());
+        int count = 1;
+        Position<Integer> p = null;
+        while (it.hasNext()) {
+            p = it.next();
+            count++;
+        }
+        assertEquals(DEPTH, count);
+        assertEquals(last, p.getElement().intValue());
+    }
+
+    private static void checkWalks(NAryTree<Integer> tree) {
+        Position<Integer> leaf = deepest(tree);
+        assertEquals(DEPTH, tree.size());
+        assertEquals(DEPTH, tree.size(tree.root()));
+        assertEquals(DEPTH - 1, tree.height(tree.root()));
+        assertEquals(DEPTH - 1, tree.depth(leaf));
+        assertTrue(tree.isAncestor(tree.root(), leaf));
+        assertFalse(tree.isAncestor(leaf, tree.root()));
+        checkLast(tree.iterator(), 0, DEPTH - 1);
+        assertEquals(DEPTH, tree.stream(TraversalOrder.PRE_ORDER).count());
+        String dot = ((DrawableTree<Integer>) tree).toDot();
+        assertTrue(dot.endsWith("\"" + (DEPTH - 2) + "\" -> \"" + (DEPTH - 1) + "\";\n}"));
+        // cut the path in the middle
+        Position<Integer> middle = tree.root();
+        for (int i = 0; i < DEPTH / 2; i++) {
+            middle = tree.child(middle, 0);
+        }
+        NAryTree<Integer> lower = tree.subTree(middle);
+        assertEquals(DEPTH / 2, lower.size());
+        assertEquals(DEPTH / 2 - 1, lower.height(middle));
+        tree.remove(middle);
+        assertEquals(DEPTH / 2, tree.size());
+        assertEquals(DEPTH / 2 - 1, tree.height(tree.root()));
+    }
+
+    /**
+     * Check the parallel walks, which split the tree by subtree sizes and are only run on trees that store them.
+     */
+    private static void checkParallelWalks(NAryTree<Integer> tree) {
+        assertEquals(DEPTH, tree.parallelStream(TraversalOrder.POST_ORDER).count());
+        assertEquals(DEPTH, tree.parallelStream(TraversalOrder.PRE_ORDER).count());
+        long sum = (long) DEPTH * (DEPTH - 1) / 2;
+        assertEquals(Long.valueOf(sum), tree.reduce(0L, Long::valueOf, Long::sum, ForkJoinPool.commonPool(), 1024));
+    }
+
+    @Test
+    public void testLinkedTree() {
+        LinkedTree<Integer> tree = LinkedTree.fromParents(elements, parents);
+        checkLast(tree.iteratorPreOrder(), 0, DEPTH - 1);
+        checkLast(tree.iteratorPostOrder(), DEPTH - 1, 0);
+        checkParallelWalks(tree);
+        checkWalks(tree);
+    }
+
+    @Test
+    public void testLCRSTree() {
+        LCRSTree<Integer> tree = LCRSTree.fromParents(elements, parents);
+        checkLast(tree.iteratorPreOrder(), 0, DEPTH - 1);
+        checkLast(tree.iteratorPostOrder(), DEPTH - 1, 0);
+        checkParallelWalks(tree);
+        checkWalks(tree);
+    }
+
+    @Test
+    public void testArrayTree() {
+        ArrayTree<Integer> tree = (ArrayTree<Integer>) addPath(new ArrayTree<>());
+        checkLast(tree.iteratorPreOrder(), 0, DEPTH - 1);
+        checkLast(tree.iteratorPostOrder(), DEPTH - 1, 0);
+        checkWalks(tree);
+    }
+
+    @Test
+    public void testConcurrentTree() {
+        checkWalks(addPath(new ConcurrentTree<>()));
+    }
+
+    @Test
+    public void testSuccinctTreeAndLcaIndex() {
+        LinkedTree<Integer> source = LinkedTree.fromParents(elements, parents);
+        SuccinctTree<Integer> succinct = new SuccinctTree<>(source);
+        assertEquals(DEPTH, succinct.size());
+        assertEquals(DEPTH - 1, succinct.height(succinct.root()));
+        LcaIndex<Integer> index = new LcaIndex<>(source);
+        Position<Integer> leaf = deepest(source);
+        Position<Integer> middle = source.parent(source.parent(leaf));
+        assertEquals(middle, index.lca(middle, leaf));
+        assertEquals(DEPTH - 1, index.depth(leaf));
+    }
+
+    @Test
+    public void testPersistentTree() {
+        PersistentTree<Integer> tree = new PersistentTree<Integer>().addRoot(0);
+        Position<Integer> p = tree.root();
+        for (int i = 1; i < 10_000; i++) {
+            tree = tree.add(i, p);
+            p = tree.child(p, 0);
+        }
+        // every update copies the whole path
+        assertEquals(10_000, tree.size());
+        assertEquals(9_999, tree.depth(p));
+        assertEquals(9_999, tree.height(tree.root()));
+        assertEquals(10_001, tree.add(10_000, p).size());
+    }
+}
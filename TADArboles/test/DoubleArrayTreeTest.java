@@ -0,0 +1,150 @@
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * This class is a test class for the DoubleArrayTree class.
+ * It checks the NAryTree operations on double elements and the primitive traversal callbacks.
+ */
+public class DoubleArrayTreeTest {
+
+    private static final double DELTA = 1e-9;
+
+    private DoubleArrayTree tree;
+
+    private int p1;
+
+    private int p2;
+
+    private int p3;
+
+    @Before
+    public void setUp() throws Exception {
+        tree = new DoubleArrayTree();
+    }
+
+    public void setTree() {
+        int p = tree.addRoot(1);
+        tree.add(2, p);
+        p1 = tree.add(3, p);
+        tree.add(4, p);
+
+        tree.add(5, p1);
+        p2 = tree.add(6, p1);
+
+        tree.add(7, p2);
+        p3 = tree.add(8, p2);
+
+        tree.add(9, p3);
+        tree.add(10, p3);
+        tree.add(11, p3);
+        tree.add(12, p3);
+    }
+
+    private String breadthFirst(DoubleNAryTree t) {
+        StringBuilder s = new StringBuilder();
+        t.forEachBreadthFirst((node, element) -> s.append(element).append(' '));
+        return s.toString().trim();
+    }
+
+    @Test
+    public void testSize() {
+        this.setTree();
+        assertEquals(12, this.tree.size());
+    }
+
+    @Test
+    public void testIsEmpty() {
+        assertTrue(this.tree.isEmpty());
+        assertEquals(-1, this.tree.root());
+    }
+
+    @Test
+    public void testParent() {
+        this.setTree();
+        assertEquals(p2, this.tree.parent(p3));
+        assertEquals(-1, this.tree.parent(this.tree.root()));
+    }
+
+    @Test
+    public void testTraversals() {
+        this.setTree();
+        StringBuilder pre = new StringBuilder();
+        this.tree.forEachPreOrder((node, element) -> pre.append((int) element));
+        StringBuilder post = new StringBuilder();
+        this.tree.forEachPostOrder((node, element) -> post.append((int) element));
+
+        assertEquals("1.0 2.0 3.0 4.0 5.0 6.0 7.0 8.0 9.0 10.0 11.0 12.0", breadthFirst(this.tree));
+        assertEquals("123567891011124", pre.toString());
+        assertEquals("257910111286341", post.toString());
+    }
+
+    @Test
+    public void testSum() {
+        int p = this.tree.addRoot(0.5);
+        this.tree.add(0.25, this.tree.add(0.125, p));
+        this.tree.add(Double.NaN, p);
+        double[] sum = new double[1];
+        this.tree.forEachPostOrder((node, element) -> sum[0] += Double.isNaN(element) ? 0 : element);
+        assertEquals(0.875, sum[0], DELTA);
+        assertTrue(Double.isNaN(this.tree.getElement(this.tree.nextSibling(this.tree.firstChild(p)))));
+    }
+
+    @Test
+    public void testChildren() {
+        this.setTree();
+        double sum = 0;
+        for (int c = this.tree.firstChild(p3); c != -1; c = this.tree.nextSibling(c)) {
+            sum += this.tree.getElement(c);
+        }
+        assertEquals(42, sum, DELTA);
+        assertEquals(4, this.tree.childCount(p3));
+        assertTrue(this.tree.isLeaf(this.tree.firstChild(p3)));
+    }
+
+    @Test
+    public void testAddN() {
+        int p = this.tree.addRoot(1);
+        this.tree.add(2, p);
+        this.tree.add(4, p);
+        this.tree.add(3.5, p, 1);
+        assertEquals("1.0 2.0 3.5 4.0", breadthFirst(this.tree));
+    }
+
+    @Test
+    public void testSwapAndReplace() {
+        this.setTree();
+        this.tree.swapElements(this.tree.root(), p1);
+        assertEquals(6, this.tree.replace(p2, -0.5), DELTA);
+        assertEquals("3.0 2.0 1.0 4.0 5.0 -0.5 7.0 8.0 9.0 10.0 11.0 12.0", breadthFirst(this.tree));
+    }
+
+    @Test
+    public void testRemove() {
+        this.setTree();
+        this.tree.remove(p2);
+        assertEquals(5, this.tree.size());
+        assertEquals("1.0 2.0 3.0 4.0 5.0", breadthFirst(this.tree));
+        try {
+            this.tree.getElement(p3);
+            fail("A removed node has been accepted");
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+    }
+
+    @Test
+    public void testSubTreeAndAttach() {
+        this.setTree();
+        DoubleNAryTree sub = this.tree.subTree(p2);
+        assertEquals(7, sub.size());
+        assertEquals("6.0 7.0 8.0 9.0 10.0 11.0 12.0", breadthFirst(sub));
+
+        DoubleArrayTree other = new DoubleArrayTree();
+        int q = other.addRoot(0.25);
+        other.add(0.75, q);
+        this.tree.attach(p3, other);
+        assertEquals(14, this.tree.size());
+        assertEquals("1.0 2.0 3.0 4.0 5.0 6.0 7.0 8.0 9.0 10.0 11.0 12.0 0.25 0.75", breadthFirst(this.tree));
+    }
+}
@@ -0,0 +1,170 @@
+import material.Position;
+import org.junit.*;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * This class is a test class for the level-of-detail export of the DrawableTree class.
+ * It checks that depth limits, collapsed subtrees and sampled children are summarized with the right counts.
+ */
+public class DrawOptionsTest {
+
+    private static final Pattern COUNT = Pattern.compile("label=\"\\+(?:\\d+ children \\()?(\\d+) nodes\\)?\"");
+
+    private LinkedTree<String> tree;
+
+    @Before
+    public void setUp() throws Exception {
+        // A(B(D, E, F), C(G(H)))
+        tree = new LinkedTree<>();
+        Position<String> a = tree.addRoot("A");
+        Position<String> b = tree.add("B", a);
+        Position<String> c = tree.add("C", a);
+        tree.add("D", b);
+        tree.add("E", b);
+        tree.add("F", b);
+        tree.add("H", tree.add("G", c));
+    }
+
+    private static String summary(int id, String label) {
+        return summary("#", id, label);
+    }
+
+    private static String summary(String prefix, int id, String label) {
+        String name = "\"" + prefix + id + "\"";
+        return name + ";\n" + name + " [label=\"" + label + "\", shape=box, style=dashed];\n";
+    }
+
+    /**
+     * Count the nodes drawn and the nodes the summaries stand for.
+     */
+    private static int represented(String dot) {
+        int total = 1;
+        for (String line : dot.split("\n")) {
+            if (line.contains(" -> \"#")) {
+                continue;
+            }
+            Matcher matcher = COUNT.matcher(line);
+            if (matcher.find()) {
+                total += Integer.parseInt(matcher.group(1));
+            } else if (line.contains(" -> ")) {
+                total++;
+            }
+        }
+        return total;
+    }
+
+    @Test
+    public void testMaxDepth() {
+        assertEquals("digraph Tree {\n\"A\" -> \"B\";\n\"B\" -> " + summary(2, "+3 nodes")
+                + "\"A\" -> \"C\";\n\"C\" -> " + summary(4, "+2 nodes") + "}", tree.toDot(new DrawOptions().maxDepth(1)));
+        assertEquals("digraph Tree {\n\"A\" -> " + summary(1, "+7 nodes") + "}", tree.toDot(new DrawOptions().maxDepth(0)));
+    }
+
+    @Test
+    public void testCollapseAbove() {
+        assertEquals("digraph Tree {\n\"A\" -> \"B\";\n\"B\" -> " + summary(2, "+3 nodes")
+                        + "\"A\" -> \"C\";\n\"C\" -> \"G\";\n\"G\" -> \"H\";\n}",
+                tree.toDot(new DrawOptions().collapseAbove(3)));
+        // the root is never collapsed
+        assertEquals(tree.toDot(new DrawOptions().collapseAbove(1).maxDepth(1)), tree.toDot(new DrawOptions().collapseAbove(1)));
+    }
+
+    @Test
+    public void testMaxChildren() {
+        assertEquals("digraph Tree {\n\"A\" -> \"B\";\n\"B\" -> \"D\";\n\"B\" -> \"E\";\n\"B\" -> "
+                        + summary(4, "+1 children (1 nodes)") + "\"A\" -> \"C\";\n\"C\" -> \"G\";\n\"G\" -> \"H\";\n}",
+                tree.toDot(new DrawOptions().maxChildren(2)));
+    }
+
+    @Test
+    public void testSummaryNames() {
+        // the drawn node "#2" must not be merged with the summary of its own subtree, the third node drawn
+        LinkedTree<String> t = new LinkedTree<>();
+        Position<String> r = t.addRoot("R");
+        Position<String> named = t.add("#2", r);
+        t.add("X", named);
+        t.add("##1", t.add("Y", r));
+        assertEquals("digraph Tree {\n\"R\" -> \"#2\";\n\"#2\" -> " + summary("##", 2, "+1 nodes")
+                + "\"R\" -> \"Y\";\n\"Y\" -> " + summary("##", 4, "+1 nodes") + "}", t.toDot(new DrawOptions().maxDepth(1)));
+        // hidden labels such as "##1" do not matter
+        assertEquals("digraph Tree {\n\"R\" -> " + summary(1, "+4 nodes") + "}", t.toDot(new DrawOptions().maxDepth(0)));
+    }
+
+    @Test
+    public void testDefaultOptions() {
+        Random random = new Random(5);
+        LCRSTree<Integer> t = new LCRSTree<>();
+        List<Position<Integer>> nodes = new ArrayList<>();
+        nodes.add(t.addRoot(0));
+        for (int i = 1; i < 5000; i++) {
+            nodes.add(t.add(i, nodes.get(random.nextInt(i))));
+        }
+        assertEquals(t.toDot(), t.toDot(new DrawOptions()));
+        assertEquals(t.toSvg(), t.toSvg(new DrawOptions()));
+        DrawOptions options = new DrawOptions().maxDepth(4).collapseAbove(200).maxChildren(3);
+        String dot = t.toDot(options);
+        assertTrue(dot.length() < t.toDot().length() / 10);
+        assertEquals(5000, represented(dot));
+    }
+
+    @Test
+    public void testSvg() throws Exception {
+        String svg = tree.toSvg(new DrawOptions().maxDepth(1));
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new InputSource(new StringReader(svg)));
+        assertEquals(5, document.getElementsByTagName("rect").getLength());
+        assertEquals(4, document.getElementsByTagName("line").getLength());
+        assertEquals(2, svg.split("stroke-dasharray", -1).length - 1);
+        assertTrue(svg.contains(">+3 nodes</text>"));
+    }
+
+    @Test
+    public void testHugeTrees() {
+        int n = 1_000_000;
+        List<Integer> elements = new ArrayList<>(n);
+        int[] path = new int[n];
+        int[] star = new int[n];
+        for (int i = 0; i < n; i++) {
+            elements.add(i);
+            path[i] = i - 1;
+            star[i] = i == 0 ? -1 : 0;
+        }
+        LinkedTree<Integer> deep = LinkedTree.fromParents(elements, path);
+        String dot = deep.toDot(new DrawOptions().maxDepth(10));
+        assertEquals(14, dot.split("\n").length);
+        assertTrue(dot.contains("\"10\" -> " + summary(11, "+" + (n - 11) + " nodes")));
+        assertEquals(n, represented(deep.toDot(new DrawOptions().collapseAbove(1000))));
+
+        LCRSTree<Integer> wide = LCRSTree.fromParents(elements, star);
+        dot = wide.toDot(new DrawOptions().maxChildren(5));
+        assertEquals(n, represented(dot));
+        assertTrue(dot.contains(summary(6, "+" + (n - 6) + " children (" + (n - 6) + " nodes)")));
+        assertEquals(7, new TreeLayout(new TreeSketch(wide, new DrawOptions().maxChildren(5))).size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidDepth() {
+        new DrawOptions().maxDepth(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidThreshold() {
+        new DrawOptions().collapseAbove(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidChildren() {
+        new DrawOptions().maxChildren(0);
+    }
+}
@@ -0,0 +1,257 @@
+import material.Position;
+import org.junit.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * This class is a test class for the DOT export of the DrawableTree class.
+ * It checks that the streamed, the parallel and the encoded exports all match toDot.
+ */
+public class DrawableTreeTest {
+
+    private LinkedTree<String> linked;
+
+    private LCRSTree<String> lcrs;
+
+    private ForkJoinPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        linked = new LinkedTree<>();
+        lcrs = new LCRSTree<>();
+        pool = new ForkJoinPool(4);
+        Random random = new Random(23);
+        List<Position<String>> linkedNodes = new ArrayList<>();
+        List<Position<String>> lcrsNodes = new ArrayList<>();
+        linkedNodes.add(linked.addRoot("n0"));
+        lcrsNodes.add(lcrs.addRoot("n0"));
+        for (int i = 1; i < 20_000; i++) {
+            // a few wide nodes near the root and long paths below them
+            int parent = random.nextInt(4) == 0 ? random.nextInt(Math.min(i, 20)) : i - 1 - random.nextInt(Math.min(i, 5));
+            linkedNodes.add(linked.add("n" + i, linkedNodes.get(parent)));
+            lcrsNodes.add(lcrs.add("n" + i, lcrsNodes.get(parent)));
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void testToDot() {
+        LinkedTree<String> tree = new LinkedTree<>();
+        assertEquals("digraph Tree {\n}", tree.toDot());
+        Position<String> a = tree.addRoot("A");
+        Position<String> b = tree.add("B", a);
+        tree.add("C", a);
+        tree.add("D", b);
+        assertEquals("digraph Tree {\n\"A\" -> \"B\";\n\"B\" -> \"D\";\n\"A\" -> \"C\";\n}", tree.toDot());
+    }
+
+    @Test
+    public void testWriteDot() throws IOException {
+        for (DrawableTree<String> tree : List.of(linked, lcrs)) {
+            StringWriter out = new StringWriter();
+            tree.writeDot(out);
+            assertEquals(tree.toDot(), out.toString());
+            // the header, one line per edge and the closing brace
+            assertEquals(20_001, out.toString().split("\n").length);
+        }
+    }
+
+    @Test
+    public void testParallelWriteDot() throws IOException {
+        String expected = linked.toDot();
+        assertEquals(expected, lcrs.toDot());
+        for (int threshold : new int[]{1, 7, 500, 50_000}) {
+            StringWriter out = new StringWriter();
+            linked.writeDot(out, pool, threshold);
+            assertEquals(expected, out.toString());
+            out = new StringWriter();
+            lcrs.writeDot(out, pool, threshold);
+            assertEquals(expected, out.toString());
+        }
+        try {
+            linked.writeDot(new StringWriter(), pool, 0);
+            fail("A threshold of 0 has been accepted");
+        } catch (IllegalArgumentException e) {
+            assertTrue(true);
+        }
+    }
+
+    @Test
+    public void testParallelWriteDotWithoutStoredSizes() throws IOException {
+        // the same tree in an array storage, counting the subtrees it walks to weigh them
+        long[] walks = new long[1];
+        ArrayTree<String> array = new ArrayTree<String>() {
+            @Override
+            public int size(Position<String> v) {
+                walks[0]++;
+                return super.size(v);
+            }
+        };
+        Map<Position<String>, Position<String>> copies = new HashMap<>();
+        for (Position<String> p : linked) {
+            copies.put(p, linked.isRoot(p) ? array.addRoot(p.getElement())
+                    : array.add(p.getElement(), copies.get(linked.parent(p))));
+        }
+        String expected = linked.toDot();
+        for (int threshold : new int[]{1, 7, 500, 50_000}) {
+            StringWriter out = new StringWriter();
+            array.writeDot(out, pool, threshold);
+            assertEquals(expected, out.toString());
+        }
+        assertEquals(0, walks[0]);
+    }
+
+    @Test
+    public void testWriteDotToChannel() throws IOException {
+        LinkedTree<String> tree = new LinkedTree<>();
+        Position<String> r = tree.addRoot("\u00e1rbol");
+        tree.add("ni\u00f1o", r);
+        tree.add("\u20ac", r);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        tree.writeDot(Channels.newChannel(bytes));
+        assertEquals(tree.toDot(), bytes.toString(StandardCharsets.UTF_8));
+        bytes.reset();
+        tree.writeDot(Channels.newChannel(bytes), StandardCharsets.UTF_16BE);
+        assertEquals(tree.toDot(), bytes.toString(StandardCharsets.UTF_16BE));
+        bytes.reset();
+        linked.writeDot(Channels.newChannel(bytes));
+        assertEquals(linked.toDot(), bytes.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testParallelWriteDotIsStreamed() throws IOException {
+        // labels count how often they are rendered, the writer how many edges it has received
+        AtomicLong rendered = new AtomicLong();
+        LinkedTree<Object> tree = new LinkedTree<>();
+        List<Position<Object>> nodes = new ArrayList<>();
+        Random random = new Random(29);
+        for (int i = 0; i < 20_000; i++) {
+            int number = i;
+            Object label = new Object() {
+                @Override
+                public String toString() {
+                    rendered.incrementAndGet();
+                    return "n" + number;
+                }
+            };
+            nodes.add(i == 0 ? tree.addRoot(label) : tree.add(label, nodes.get(random.nextInt(Math.min(i, 200)))));
+        }
+        long[] edges = new long[1];
+        long[] behind = new long[1];
+        Writer out = new Writer() {
+            @Override
+            public void write(char[] buffer, int offset, int length) {
+                for (int i = offset; i < offset + length; i++) {
+                    if (buffer[i] == '\n') {
+                        edges[0]++;
+                    }
+                }
+                behind[0] = Math.max(behind[0], rendered.get() - 2 * edges[0]);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        ForkJoinPool small = new ForkJoinPool(2);
+        try {
+            tree.writeDot(out, small, 50);
+        } finally {
+            small.shutdownNow();
+        }
+        assertEquals(20_000, edges[0]);
+        // the edges rendered but not written yet stay within the window of tasks, far below the whole tree
+        assertTrue(behind[0] < 10_000);
+    }
+
+    @Test
+    public void testParallelWriteDotDrainsTheWalk() throws IOException {
+        // a task for the first leaf, then a long path walked by the writer itself behind that task
+        AtomicLong rendered = new AtomicLong();
+        LinkedTree<Object> tree = new LinkedTree<>();
+        Position<Object> p = tree.addRoot("r");
+        tree.add("leaf", p);
+        for (int i = 0; i < 20_000; i++) {
+            int number = i;
+            p = tree.add(new Object() {
+                @Override
+                public String toString() {
+                    rendered.incrementAndGet();
+                    return "n" + number;
+                }
+            }, p);
+        }
+        long[] edges = new long[1];
+        long[] behind = new long[1];
+        Writer out = new Writer() {
+            @Override
+            public void write(char[] buffer, int offset, int length) {
+                for (int i = offset; i < offset + length; i++) {
+                    if (buffer[i] == '\n') {
+                        edges[0]++;
+                    }
+                }
+                behind[0] = Math.max(behind[0], rendered.get() - 2 * edges[0]);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        tree.writeDot(out, pool, 1);
+        // the header and one line per edge
+        assertEquals(20_002, edges[0]);
+        // the text of the walk is written once the window is full, not kept until the end
+        assertTrue(behind[0] < 10_000);
+    }
+
+    @Test
+    public void testWriteDotToChannelEndsEncoding() throws IOException {
+        LinkedTree<String> tree = new LinkedTree<>();
+        Position<String> r = tree.addRoot("\u6728");
+        for (int i = 0; i < 3000; i++) {
+            // surrogate pairs that fall across the boundaries of the encoding buffer
+            tree.add("\uD83C\uDF33" + i + "\u6839", r);
+        }
+        Charset jis = Charset.forName("ISO-2022-JP");
+        for (Charset charset : List.of(StandardCharsets.UTF_8, StandardCharsets.UTF_16, jis)) {
+            if (charset == jis) {
+                tree = new LinkedTree<>();
+                tree.add("\u679D", tree.addRoot("\u6728"));
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            WritableByteChannel channel = Channels.newChannel(bytes);
+            tree.writeDot(channel, charset);
+            assertTrue(channel.isOpen());
+            assertEquals(tree.toDot(), new String(bytes.toByteArray(), charset));
+        }
+    }
+}
@@ -0,0 +1,159 @@
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * This class is a test class for the IntArrayTree class.
+ * It checks the NAryTree operations on int node indexes and the primitive traversal callbacks.
+ */
+public class IntArrayTreeTest {
+
+    private IntArrayTree tree;
+
+    private int p1;
+
+    private int p2;
+
+    private int p3;
+
+    @Before
+    public void setUp() throws Exception {
+        tree = new IntArrayTree();
+    }
+
+    public void setTree() {
+        int p = tree.addRoot(1);
+        tree.add(2, p);
+        p1 = tree.add(3, p);
+        tree.add(4, p);
+
+        tree.add(5, p1);
+        p2 = tree.add(6, p1);
+
+        tree.add(7, p2);
+        p3 = tree.add(8, p2);
+
+        tree.add(9, p3);
+        tree.add(10, p3);
+        tree.add(11, p3);
+        tree.add(12, p3);
+    }
+
+    private String breadthFirst(IntNAryTree t) {
+        StringBuilder s = new StringBuilder();
+        t.forEachBreadthFirst((node, element) -> s.append(element));
+        return s.toString();
+    }
+
+    @Test
+    public void testSize() {
+        this.setTree();
+        assertEquals(12, this.tree.size());
+    }
+
+    @Test
+    public void testIsEmpty() {
+        assertTrue(this.tree.isEmpty());
+        assertEquals(-1, this.tree.root());
+    }
+
+    @Test
+    public void testParent() {
+        this.setTree();
+        assertEquals(p2, this.tree.parent(p3));
+        assertEquals(-1, this.tree.parent(this.tree.root()));
+    }
+
+    @Test
+    public void testTraversals() {
+        this.setTree();
+        StringBuilder pre = new StringBuilder();
+        this.tree.forEachPreOrder((node, element) -> pre.append(element));
+        StringBuilder post = new StringBuilder();
+        this.tree.forEachPostOrder((node, element) -> post.append(element));
+
+        assertEquals("123456789101112", breadthFirst(this.tree));
+        assertEquals("123567891011124", pre.toString());
+        assertEquals("257910111286341", post.toString());
+    }
+
+    @Test
+    public void testChildren() {
+        this.setTree();
+        StringBuilder s = new StringBuilder();
+        for (int c = this.tree.firstChild(p3); c != -1; c = this.tree.nextSibling(c)) {
+            s.append(this.tree.getElement(c));
+        }
+        assertEquals("9101112", s.toString());
+        assertEquals(4, this.tree.childCount(p3));
+        assertTrue(this.tree.isLeaf(this.tree.firstChild(p3)));
+    }
+
+    @Test
+    public void testAddN() {
+        int p = this.tree.addRoot(1);
+        this.tree.add(2, p);
+        this.tree.add(4, p);
+        this.tree.add(3, p, 1);
+        assertEquals("1234", breadthFirst(this.tree));
+    }
+
+    @Test
+    public void testSwapAndReplace() {
+        this.setTree();
+        this.tree.swapElements(this.tree.root(), p1);
+        assertEquals(6, this.tree.replace(p2, -3));
+        assertEquals("32145-3789101112", breadthFirst(this.tree));
+    }
+
+    @Test
+    public void testRemove() {
+        this.setTree();
+        this.tree.remove(p2);
+        assertEquals(5, this.tree.size());
+        assertEquals("12345", breadthFirst(this.tree));
+        try {
+            this.tree.getElement(p3);
+            fail("A removed node has been accepted");
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+    }
+
+    @Test
+    public void testSubTreeAndAttach() {
+        this.setTree();
+        IntNAryTree sub = this.tree.subTree(p2);
+        assertEquals(7, sub.size());
+        assertEquals("6789101112", breadthFirst(sub));
+
+        IntArrayTree other = new IntArrayTree();
+        int q = other.addRoot(100);
+        other.add(200, q);
+        this.tree.attach(p3, other);
+        assertEquals(14, this.tree.size());
+        assertEquals("123456789101112100200", breadthFirst(this.tree));
+    }
+
+    @Test
+    public void testSubTreesShareTheSize() {
+        this.setTree();
+        IntNAryTree sub = this.tree.subTree(p2);
+        sub.remove(sub.root());
+        assertEquals(5, this.tree.size());
+        assertEquals("12345", breadthFirst(this.tree));
+        assertTrue(sub.isEmpty());
+
+        int q = this.tree.add(13, p1);
+        this.tree.add(14, q);
+        this.tree.attach(this.tree.root(), this.tree.subTree(q));
+        assertEquals(7, this.tree.size());
+        assertEquals("123413514", breadthFirst(this.tree));
+        try {
+            this.tree.attach(q, this.tree.subTree(this.tree.root()));
+            fail("A tree has been attached below itself");
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+    }
+}
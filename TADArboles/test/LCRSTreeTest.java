@@ -1,6 +1,13 @@
 import material.Position;
 import org.junit.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
 import static org.junit.Assert.*;
 /**
  * This class is a test class for the LCRSTree class.
@@ -174,6 +181,38 @@ public class LCRSTreeTest {
     }
 
 
+    @Test
+    public void testRemoveTwice() {
+        Position<Integer> p = this.tree.addRoot(1);
+        this.tree.add(2, p);
+        Position<Integer> c = this.tree.add(3, p);
+        Position<Integer> d = this.tree.add(4, c);
+        this.tree.add(5, p);
+        this.tree.remove(c);
+        for (Position<Integer> removed : List.of(c, d)) {
+            try {
+                this.tree.remove(removed);
+                fail("A removed node has been accepted");
+            } catch (RuntimeException e) {
+                assertTrue(true);
+            }
+        }
+        try {
+            this.tree.add(6, d);
+            fail("A descendant of a removed node has been accepted");
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+        assertEquals(3, this.tree.size());
+        assertEquals(3, this.tree.size(p));
+        assertEquals(2, this.tree.childCount(p));
+        StringBuilder s = new StringBuilder();
+        for (Position<Integer> pos : this.tree) {
+            s.append(pos.getElement());
+        }
+        assertEquals("125", s.toString());
+    }
+
     @Test
     public void testGetUnmodifiableChildren() {
         Position<Integer> p = this.tree.addRoot(100);
@@ -262,6 +301,394 @@ public class LCRSTreeTest {
         assertEquals("257910111286341", s.toString());
     }
 
+    @Test
+    public void testIteratorsOnSubTree() {
+        Position<Integer> p = tree.addRoot(1);
+        Position<Integer> p1 = tree.add(2, p);
+        tree.add(3, p1);
+        tree.add(4, p1);
+        tree.add(5, p);
+
+        LCRSTree<Integer> sub = (LCRSTree<Integer>) this.tree.subTree(p1);
+        StringBuilder bfs = new StringBuilder();
+        for (Position<Integer> pos : sub) {
+            bfs.append(pos.getElement());
+        }
+        StringBuilder pre = new StringBuilder();
+        sub.iteratorPreOrder().forEachRemaining(pos -> pre.append(pos.getElement()));
+        StringBuilder post = new StringBuilder();
+        sub.iteratorPostOrder().forEachRemaining(pos -> post.append(pos.getElement()));
+
+        assertEquals("234", bfs.toString());
+        assertEquals("234", pre.toString());
+        assertEquals("342", post.toString());
+    }
+
+
+    @Test
+    public void testSubtreeSizes() {
+        this.setTree();
+        Position<Integer> p = this.tree.root();
+        Position<Integer> p1 = this.tree.children(p).iterator().next();
+        assertEquals(12, this.tree.size(p));
+        assertEquals(1, this.tree.size(p1));
+
+        Position<Integer> p2 = this.tree.add(13, p1, 0);
+        assertEquals(13, this.tree.size(p));
+        assertEquals(2, this.tree.size(p1));
+
+        this.tree.remove(p2);
+        assertEquals(12, this.tree.size(p));
+        assertEquals(1, this.tree.size(p1));
+    }
+
+    @Test
+    public void testAttachSize() {
+        Position<Integer> p = this.tree.addRoot(1);
+        Position<Integer> p1 = this.tree.add(2, p);
+        LCRSTree<Integer> other = new LCRSTree<>();
+        Position<Integer> q = other.addRoot(3);
+        other.add(4, q);
+        this.tree.attach(p1, other);
+        assertEquals(4, this.tree.size());
+        assertEquals(4, this.tree.size(p));
+        assertEquals(3, this.tree.size(p1));
+        assertEquals(3, this.tree.subTree(p1).size());
+    }
+
+    @Test
+    public void testDepthAndHeight() {
+        this.setTree();
+        Position<Integer> p = this.tree.root();
+        Position<Integer> p1 = null;
+        Position<Integer> leaf = null;
+        for (Position<Integer> pos : this.tree) {
+            if (pos.getElement() == 3) {
+                p1 = pos;
+            } else if (pos.getElement() == 12) {
+                leaf = pos;
+            }
+        }
+        assertEquals(4, this.tree.depth(leaf));
+        assertEquals(4, this.tree.height(p));
+        assertEquals(3, this.tree.height(p1));
+        assertEquals(3, this.tree.subTree(p1).depth(leaf));
+
+        this.tree.remove(this.tree.parent(leaf));
+        assertEquals(3, this.tree.height(p));
+        Position<Integer> p2 = this.tree.add(13, p1, 0);
+        this.tree.add(14, this.tree.add(15, p2));
+        assertEquals(4, this.tree.height(p));
+    }
+
+    @Test
+    public void testAttachDepth() {
+        Position<Integer> p = this.tree.addRoot(1);
+        Position<Integer> p1 = this.tree.add(2, p);
+        LCRSTree<Integer> other = new LCRSTree<>();
+        Position<Integer> q = other.addRoot(3);
+        Position<Integer> q1 = other.add(4, q);
+        this.tree.attach(p1, other);
+        assertEquals(2, this.tree.depth(q));
+        assertEquals(3, this.tree.depth(q1));
+        assertEquals(3, this.tree.height(p));
+    }
+
+    @Test
+    public void testIsAncestor() {
+        Position<Integer> a = this.tree.addRoot(1);
+        Position<Integer> b = this.tree.add(2, a);
+        Position<Integer> c = this.tree.add(3, a);
+        Position<Integer> d = this.tree.add(4, b);
+        assertTrue(this.tree.isAncestor(a, d));
+        assertTrue(this.tree.isAncestor(b, d));
+        assertTrue(this.tree.isAncestor(d, d));
+        assertFalse(this.tree.isAncestor(c, d));
+        assertFalse(this.tree.isAncestor(d, b));
+        Position<Integer> e = this.tree.add(5, c);
+        Position<Integer> f = this.tree.add(6, a, 1);
+        Position<Integer> g = this.tree.add(7, b, 0);
+        assertTrue(this.tree.isAncestor(c, e));
+        assertFalse(this.tree.isAncestor(b, e));
+        assertFalse(this.tree.isAncestor(f, d));
+        assertTrue(this.tree.isAncestor(b, g));
+        NAryTree<Integer> sub = this.tree.subTree(c);
+        Position<Integer> h = sub.add(8, e);
+        assertTrue(this.tree.isAncestor(c, h));
+        assertFalse(this.tree.isAncestor(b, h));
+        LCRSTree<Integer> other = new LCRSTree<>();
+        Position<Integer> q = other.addRoot(9);
+        this.tree.attach(d, other);
+        assertTrue(this.tree.isAncestor(b, q));
+        assertFalse(this.tree.isAncestor(c, q));
+    }
+
+    @Test
+    public void testIsAncestorAfterManyInserts() {
+        Position<Integer> r = this.tree.addRoot(0);
+        Position<Integer> parent = this.tree.add(1, r);
+        this.tree.isAncestor(r, parent);
+        List<Position<Integer>> nodes = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Position<Integer> node = this.tree.add(i, parent, 0);
+            nodes.add(node);
+            if (i % 10 == 9) {
+                parent = node;
+            }
+        }
+        for (Position<Integer> v : nodes) {
+            for (Position<Integer> w : nodes) {
+                boolean expected = false;
+                for (Position<Integer> x = w; x != null; x = this.tree.isRoot(x) ? null : this.tree.parent(x)) {
+                    expected |= x == v;
+                }
+                assertEquals(expected, this.tree.isAncestor(v, w));
+            }
+        }
+    }
+
+    @Test
+    public void testWideFanOut() {
+        Position<Integer> r = this.tree.addRoot(-1);
+        List<Integer> expected = new ArrayList<>();
+        List<Position<Integer>> positions = new ArrayList<>();
+        Random random = new Random(12);
+        for (int i = 0; i < 2000; i++) {
+            int index = random.nextInt(expected.size() + 1);
+            Position<Integer> p;
+            if (i % 3 == 0) {
+                p = this.tree.add(i, r);
+                index = expected.size();
+            } else {
+                p = this.tree.add(i, r, index);
+            }
+            expected.add(index, i);
+            positions.add(index, p);
+            if (i % 7 == 0) {
+                int removed = random.nextInt(expected.size());
+                this.tree.remove(positions.remove(removed));
+                expected.remove(removed);
+            }
+        }
+        this.tree.add(5000, r, expected.size() + 10);
+        expected.add(5000);
+        List<Integer> actual = new ArrayList<>();
+        for (Position<Integer> child : this.tree.children(r)) {
+            actual.add(child.getElement());
+        }
+        assertEquals(expected, actual);
+        assertEquals(expected.size() + 1, this.tree.size());
+    }
+
+    @Test
+    public void testWideFanOutRemoval() {
+        Position<Integer> r = this.tree.addRoot(-1);
+        List<Position<Integer>> positions = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            positions.add(this.tree.add(i, r, i / 2));
+        }
+        positions.clear();
+        for (Position<Integer> child : this.tree.children(r)) {
+            positions.add(child);
+        }
+        Random random = new Random(3);
+        while (!positions.isEmpty()) {
+            this.tree.remove(positions.remove(random.nextInt(positions.size())));
+            assertEquals(positions.size(), this.tree.childCount(r));
+            if (!positions.isEmpty()) {
+                int index = random.nextInt(positions.size());
+                assertEquals(positions.get(index), this.tree.child(r, index));
+            }
+        }
+        assertTrue(this.tree.isLeaf(r));
+        this.tree.add(7, r, 0);
+        assertEquals(Integer.valueOf(7), this.tree.child(r, 0).getElement());
+    }
+
+    @Test
+    public void testWideFanOutIndexedAccess() {
+        Position<Integer> r = this.tree.addRoot(-1);
+        List<Position<Integer>> positions = new ArrayList<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 5000; i++) {
+            int operation = random.nextInt(10);
+            if (operation < 5 || positions.isEmpty()) {
+                int index = random.nextInt(positions.size() + 1);
+                positions.add(index, this.tree.add(i, r, index));
+            } else if (operation < 7) {
+                positions.add(this.tree.add(i, r));
+            } else {
+                this.tree.remove(positions.remove(random.nextInt(positions.size())));
+            }
+            if (!positions.isEmpty()) {
+                int index = random.nextInt(positions.size());
+                assertEquals(positions.get(index), this.tree.child(r, index));
+            }
+        }
+    }
+
+    @Test
+    public void testChildCountAndChild() {
+        Position<Integer> r = this.tree.addRoot(-1);
+        Iterable<? extends Position<Integer>> view = this.tree.children(r);
+        assertFalse(view.iterator().hasNext());
+        for (int i = 0; i < 1000; i++) {
+            this.tree.add(i, r);
+        }
+        assertEquals(1000, this.tree.childCount(r));
+        for (int i = 0; i < 1000; i += 37) {
+            assertEquals(Integer.valueOf(i), this.tree.child(r, i).getElement());
+        }
+        Position<Integer> c = this.tree.child(r, 500);
+        this.tree.remove(this.tree.child(r, 10));
+        assertEquals(c, this.tree.child(r, 499));
+        assertEquals(999, this.tree.childCount(r));
+        assertEquals(Integer.valueOf(0), view.iterator().next().getElement());
+        try {
+            this.tree.child(r, 999);
+            fail("The index is out of range");
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+    }
+
+    @Test
+    public void testReduce() {
+        this.setTree();
+        StringBuilder preOrder = new StringBuilder();
+        this.tree.iteratorPreOrder().forEachRemaining(pos -> preOrder.append(pos.getElement()));
+        assertEquals(preOrder.toString(),
+                this.tree.reduce("", String::valueOf, String::concat, ForkJoinPool.commonPool(), 1));
+        assertEquals(Integer.valueOf(78), this.tree.reduce(0, e -> e, Integer::sum));
+        NAryTree<Integer> sub = this.tree.subTree(this.tree.child(this.tree.root(), 1));
+        assertEquals(Integer.valueOf(3 + 5 + 6 + 7 + 8 + 9 + 10 + 11 + 12),
+                sub.reduce(0, e -> e, Integer::sum, ForkJoinPool.commonPool(), 1));
+    }
+
+    @Test
+    public void testSiblings() {
+        Position<Integer> r = this.tree.addRoot(1);
+        Position<Integer> a = this.tree.add(2, r);
+        Position<Integer> c = this.tree.add(4, r);
+        Position<Integer> b = this.tree.add(3, r, 1);
+        Position<Integer> z = this.tree.add(0, r, 0);
+        assertEquals(a, this.tree.nextSibling(z));
+        assertEquals(b, this.tree.nextSibling(a));
+        assertEquals(c, this.tree.nextSibling(b));
+        assertNull(this.tree.nextSibling(c));
+        assertEquals(b, this.tree.prevSibling(c));
+        assertEquals(z, this.tree.prevSibling(a));
+        assertNull(this.tree.prevSibling(z));
+        assertNull(this.tree.nextSibling(r));
+        this.tree.remove(b);
+        assertEquals(c, this.tree.nextSibling(a));
+        assertEquals(a, this.tree.prevSibling(c));
+        this.tree.remove(c);
+        Position<Integer> d = this.tree.add(5, r);
+        assertEquals(a, this.tree.prevSibling(d));
+        NAryTree<Integer> sub = this.tree.subTree(a);
+        assertNull(sub.nextSibling(a));
+    }
+
+    @Test
+    public void testPruneWideNode() {
+        Position<Integer> r = this.tree.addRoot(-1);
+        List<Position<Integer>> children = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            children.add(this.tree.add(i, r, i / 2));
+        }
+        // remove every other child, walking the chain by sibling links
+        Position<Integer> child = this.tree.children(r).iterator().next();
+        while (child != null) {
+            Position<Integer> next = this.tree.nextSibling(child);
+            this.tree.remove(child);
+            child = next == null ? null : this.tree.nextSibling(next);
+        }
+        assertEquals(50_001, this.tree.size());
+        int count = 0;
+        for (Position<Integer> c : this.tree.children(r)) {
+            Position<Integer> previous = this.tree.prevSibling(c);
+            if (previous != null) {
+                assertEquals(c, this.tree.nextSibling(previous));
+            }
+            count++;
+        }
+        assertEquals(50_000, count);
+        this.tree.add(7, r, 25_000);
+        assertEquals(50_002, this.tree.size());
+    }
+
+    @Test
+    public void testFromParents() {
+        List<Integer> elements = Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12);
+        this.tree = LCRSTree.fromParents(elements, new int[]{-1, 0, 0, 0, 2, 2, 5, 5, 7, 7, 7, 7});
+        StringBuilder s = new StringBuilder();
+        for (Position<Integer> pos : this.tree) {
+            s.append(pos.getElement());
+        }
+        assertEquals("123456789101112", s.toString());
+        assertEquals(12, this.tree.size());
+        Position<Integer> p1 = this.tree.child(this.tree.root(), 1);
+        Position<Integer> p3 = this.tree.child(this.tree.child(p1, 1), 1);
+        assertEquals(9, this.tree.size(p1));
+        assertEquals(4, this.tree.height(this.tree.root()));
+        assertEquals(3, this.tree.depth(p3));
+        assertTrue(this.tree.isAncestor(p1, this.tree.child(p3, 3)));
+        assertEquals(this.tree.child(p3, 2), this.tree.prevSibling(this.tree.child(p3, 3)));
+        this.tree.add(13, p3, 2);
+        assertEquals(10, this.tree.size(p1));
+        assertEquals(13, this.tree.child(p3, 2).getElement().intValue());
+    }
+
+    @Test
+    public void testFromEdges() {
+        List<Integer> elements = Arrays.asList(0, 1, 2, 3);
+        this.tree = LCRSTree.fromEdges(elements, Stream.of(new int[]{3, 1}, new int[]{3, 0}, new int[]{0, 2}));
+        assertEquals(3, this.tree.root().getElement().intValue());
+        assertEquals(1, this.tree.child(this.tree.root(), 0).getElement().intValue());
+        assertEquals(0, this.tree.child(this.tree.root(), 1).getElement().intValue());
+        assertEquals(2, this.tree.height(this.tree.root()));
+        try {
+            LCRSTree.fromEdges(elements, Stream.of(new int[]{1, 2}, new int[]{2, 1}, new int[]{0, 3}));
+            fail("A cycle has been accepted");
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+    }
+
+    @Test
+    public void testFromParentsWideFanOut() {
+        int n = 1_000_000;
+        int[] parents = new int[n];
+        List<Integer> elements = new ArrayList<>(n);
+        parents[0] = -1;
+        elements.add(0);
+        for (int i = 1; i < n; i++) {
+            parents[i] = i % 1000 == 0 ? i - 1000 : 0;
+            elements.add(i);
+        }
+        this.tree = LCRSTree.fromParents(elements, parents);
+        assertEquals(n, this.tree.size());
+        // node 1000 hangs from the root and starts a chain of 999 nodes
+        assertEquals(n - n / 1000 + 1, this.tree.childCount(this.tree.root()));
+        assertEquals(999, this.tree.child(this.tree.root(), 998).getElement().intValue());
+        assertEquals(1000, this.tree.child(this.tree.root(), 999).getElement().intValue());
+        assertEquals(n - 1, this.tree.child(this.tree.root(), n - n / 1000).getElement().intValue());
+        assertEquals(999, this.tree.height(this.tree.root()));
+    }
+
+    @Test
+    public void testAddNOnLeaf() {
+        Position<Integer> r = this.tree.addRoot(1);
+        this.tree.add(2, r, 3);
+        this.tree.add(3, r);
+        StringBuilder s = new StringBuilder();
+        for (Position<Integer> child : this.tree.children(r)) {
+            s.append(child.getElement());
+        }
+        assertEquals("23", s.toString());
+    }
+
     @Test
     public void testIsRoot() {
         this.setTree();
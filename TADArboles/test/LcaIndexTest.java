@@ -0,0 +1,101 @@
+import material.Position;
+import org.junit.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * This class is a test class for the LcaIndex class.
+ * It compares the answers of the index with a walk of the parent chains.
+ */
+public class LcaIndexTest {
+
+    private LinkedTree<String> tree;
+
+    private Position<String> b;
+
+    private Position<String> e;
+
+    private Position<String> g;
+
+    private Position<String> l;
+
+    @Before
+    public void setUp() throws Exception {
+        tree = new LinkedTree<>();
+        Position<String> p = tree.addRoot("A");
+        b = tree.add("B", p);
+        Position<String> p1 = tree.add("C", p);
+        tree.add("D", p);
+        e = tree.add("E", p1);
+        Position<String> p2 = tree.add("F", p1);
+        g = tree.add("G", p2);
+        Position<String> p3 = tree.add("H", p2);
+        tree.add("I", p3);
+        tree.add("J", p3);
+        tree.add("K", p3);
+        l = tree.add("L", p3);
+    }
+
+    private static <E> Position<E> naiveLca(Tree<E> tree, Position<E> p, Position<E> q) {
+        Set<Position<E>> ancestors = new HashSet<>();
+        for (Position<E> a = p; a != null; a = tree.isRoot(a) ? null : tree.parent(a)) {
+            ancestors.add(a);
+        }
+        Position<E> a = q;
+        while (!ancestors.contains(a)) {
+            a = tree.parent(a);
+        }
+        return a;
+    }
+
+    @Test
+    public void testLca() {
+        LcaIndex<String> index = new LcaIndex<>(tree);
+        assertEquals("C", index.lca(e, l).getElement());
+        assertEquals("F", index.lca(l, g).getElement());
+        assertEquals("A", index.lca(b, l).getElement());
+        assertEquals("L", index.lca(l, l).getElement());
+        assertEquals("C", index.lca(tree.parent(e), l).getElement());
+        assertEquals(4, index.depth(l));
+    }
+
+    @Test
+    public void testInvalidate() {
+        LcaIndex<String> index = new LcaIndex<>(tree);
+        Position<String> m = tree.add("M", b);
+        try {
+            index.lca(m, l);
+            fail("A position added after building the index has been accepted");
+        } catch (RuntimeException ex) {
+            assertTrue(true);
+        }
+        index.invalidate();
+        assertEquals("A", index.lca(m, l).getElement());
+        assertEquals("B", index.lca(m, b).getElement());
+    }
+
+    @Test
+    public void testRandomTrees() {
+        Random random = new Random(7);
+        List<NAryTree<Integer>> trees = List.of(new LinkedTree<>(), new LCRSTree<>());
+        for (NAryTree<Integer> t : trees) {
+            List<Position<Integer>> positions = new ArrayList<>();
+            positions.add(t.addRoot(0));
+            for (int i = 1; i < 2000; i++) {
+                positions.add(t.add(i, positions.get(random.nextInt(positions.size()))));
+            }
+            LcaIndex<Integer> index = new LcaIndex<>(t);
+            for (int i = 0; i < 2000; i++) {
+                Position<Integer> p = positions.get(random.nextInt(positions.size()));
+                Position<Integer> q = positions.get(random.nextInt(positions.size()));
+                assertEquals(naiveLca(t, p, q), index.lca(p, q));
+            }
+        }
+    }
+}
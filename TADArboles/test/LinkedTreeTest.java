@@ -1,6 +1,14 @@
 import junit.framework.TestCase;
 import material.Position;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
 
 public class LinkedTreeTest extends TestCase {
 
@@ -103,6 +111,359 @@ public class LinkedTreeTest extends TestCase {
 
     }
 
+    public void testSubtreeSizes() {
+        Position<String> p = this.tree.addRoot("+");
+        this.tree.add("2", p);
+        Position<String> h = this.tree.add("*", p);
+        Position<String> h1 = this.tree.add("3", h);
+        this.tree.add("5", h);
+        this.tree.add("7", h1, 0);
+        assertEquals(6, this.tree.size(p));
+        assertEquals(4, this.tree.size(h));
+        assertEquals(2, this.tree.size(h1));
+
+        this.tree.remove(h1);
+        assertEquals(4, this.tree.size(p));
+        assertEquals(2, this.tree.size(h));
+        assertEquals(2, this.tree.subTree(h).size());
+    }
+
+    public void testAttachSize() {
+        Position<String> p = this.tree.addRoot("A");
+        Position<String> b = this.tree.add("B", p);
+        LinkedTree<String> other = new LinkedTree<>();
+        Position<String> r = other.addRoot("R");
+        other.add("X", r);
+        other.add("Y", r);
+        this.tree.attach(b, other);
+        assertEquals(4, this.tree.size());
+        assertEquals(4, this.tree.size(p));
+        assertEquals(3, this.tree.size(b));
+        for (Position<String> child : this.tree.children(b)) {
+            assertEquals(b, this.tree.parent(child));
+        }
+    }
+
+    public void testAttachNestedSize() {
+        // A(B, C) with R(X(X1, X2(X3)), Y(Y1)) attached under B: R is dropped and its 6 descendants move
+        Position<String> p = this.tree.addRoot("A");
+        Position<String> b = this.tree.add("B", p);
+        Position<String> c = this.tree.add("C", p);
+        LinkedTree<String> other = new LinkedTree<>();
+        Position<String> r = other.addRoot("R");
+        Position<String> x = other.add("X", r);
+        other.add("X1", x);
+        Position<String> x3 = other.add("X3", other.add("X2", x));
+        other.add("Y1", other.add("Y", r));
+        this.tree.attach(b, other);
+        assertEquals(9, this.tree.size());
+        assertEquals(9, this.tree.size(p));
+        assertEquals(7, this.tree.size(b));
+        assertEquals(4, this.tree.size(x));
+        assertEquals(1, this.tree.size(c));
+        assertEquals(4, this.tree.depth(x3));
+
+        this.tree.add("X4", x3);
+        assertEquals(10, this.tree.size(p));
+        assertEquals(8, this.tree.size(b));
+        assertEquals(5, this.tree.size(x));
+        this.tree.remove(x);
+        assertEquals(5, this.tree.size());
+        assertEquals(3, this.tree.size(b));
+    }
+
+    public void testDepthAndHeight() {
+        Position<String> p = tree.addRoot("A");
+        tree.add("B", p);
+        Position<String> p1 = tree.add("C", p);
+        Position<String> p2 = tree.add("F", p1);
+        Position<String> p3 = tree.add("H", p2);
+        Position<String> p4 = tree.add("I", p3);
+        assertEquals(0, tree.depth(p));
+        assertEquals(4, tree.depth(p4));
+        assertEquals(4, tree.height(p));
+        assertEquals(0, tree.height(p4));
+
+        tree.remove(p3);
+        assertEquals(2, tree.height(p));
+        Position<String> p5 = tree.add("J", p2);
+        tree.add("K", p5);
+        assertEquals(4, tree.height(p));
+        assertEquals(1, tree.subTree(p1).depth(p2));
+    }
+
+    public void testAttachDepth() {
+        Position<String> p = tree.addRoot("A");
+        Position<String> p1 = tree.add("B", p);
+        LinkedTree<String> other = new LinkedTree<>();
+        Position<String> q = other.addRoot("R");
+        Position<String> q1 = other.add("X", q);
+        Position<String> q2 = other.add("Y", q1);
+        tree.attach(p1, other);
+        assertEquals(2, tree.depth(q1));
+        assertEquals(3, tree.depth(q2));
+        assertEquals(3, tree.height(p));
+    }
+
+    public void testIsAncestor() {
+        Position<String> a = tree.addRoot("A");
+        Position<String> b = tree.add("B", a);
+        Position<String> c = tree.add("C", a);
+        Position<String> d = tree.add("D", b);
+        assertTrue(tree.isAncestor(a, d));
+        assertTrue(tree.isAncestor(b, d));
+        assertTrue(tree.isAncestor(d, d));
+        assertFalse(tree.isAncestor(c, d));
+        assertFalse(tree.isAncestor(d, b));
+        // labels given by add after the first query
+        Position<String> e = tree.add("E", c);
+        Position<String> f = tree.add("F", a, 1);
+        assertTrue(tree.isAncestor(c, e));
+        assertFalse(tree.isAncestor(b, e));
+        assertFalse(tree.isAncestor(f, d));
+        assertTrue(tree.isAncestor(a, f));
+        NAryTree<String> sub = tree.subTree(b);
+        Position<String> g = sub.add("G", d);
+        assertTrue(tree.isAncestor(b, g));
+        assertFalse(tree.isAncestor(c, g));
+        tree.remove(b);
+        assertTrue(tree.isAncestor(a, e));
+    }
+
+    public void testIsAncestorAfterManyInserts() {
+        Position<String> r = tree.addRoot("R");
+        Position<String> first = tree.add("X", r);
+        tree.isAncestor(r, first);
+        // repeated insertions at the front exhaust the gaps and force relabelling
+        List<Position<String>> nodes = new ArrayList<>();
+        Position<String> parent = first;
+        for (int i = 0; i < 200; i++) {
+            Position<String> node = tree.add("N" + i, parent, 0);
+            nodes.add(node);
+            if (i % 10 == 9) {
+                parent = node;
+            }
+        }
+        for (Position<String> v : nodes) {
+            for (Position<String> w : nodes) {
+                boolean expected = false;
+                for (Position<String> x = w; x != null; x = tree.isRoot(x) ? null : tree.parent(x)) {
+                    expected |= x == v;
+                }
+                assertEquals(expected, tree.isAncestor(v, w));
+            }
+        }
+    }
+
+    public void testChildCountAndChild() {
+        Position<String> r = tree.addRoot("R");
+        Position<String> a = tree.add("A", r);
+        Position<String> b = tree.add("B", r);
+        Iterable<? extends Position<String>> view = tree.children(r);
+        assertEquals(2, tree.childCount(r));
+        assertEquals(0, tree.childCount(a));
+        assertEquals(b, tree.child(r, 1));
+        Position<String> c = tree.add("C", r, 0);
+        assertEquals(c, view.iterator().next());
+        assertEquals(3, tree.childCount(r));
+        try {
+            tree.child(r, 3);
+            fail("The index is out of range");
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+    }
+
+    public void testRemoveFromWideNode() {
+        Position<String> r = tree.addRoot("R");
+        List<Position<String>> expected = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            expected.add(tree.add("N" + i, r));
+        }
+        Random random = new Random(3);
+        for (int i = 0; i < 60_000; i++) {
+            tree.remove(expected.remove(random.nextInt(expected.size())));
+        }
+        Position<String> x = tree.add("X", r, 1000);
+        expected.add(1000, x);
+        assertEquals(expected.size(), tree.childCount(r));
+        assertEquals(expected.size() + 1, tree.size());
+        int i = 0;
+        for (Position<String> child : tree.children(r)) {
+            assertEquals(expected.get(i++), child);
+        }
+        assertEquals(expected.get(1001), tree.nextSibling(x));
+        assertEquals(expected.get(999), tree.prevSibling(x));
+        assertEquals(expected.get(12345), tree.child(r, 12345));
+    }
+
+    public void testRemoveTwice() {
+        Position<String> r = tree.addRoot("R");
+        Position<String> b = tree.add("B", r);
+        Position<String> c = tree.add("C", r);
+        Position<String> d = tree.add("D", r);
+        tree.remove(b);
+        // removing C squeezes out the empty slots, so D moves to the slot B had
+        tree.remove(c);
+        try {
+            tree.remove(b);
+            fail("A removed position has been accepted");
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+        try {
+            tree.parent(c);
+            fail("A removed position has been accepted");
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+        assertEquals(2, tree.size());
+        assertEquals(1, tree.childCount(r));
+        assertEquals(d, tree.child(r, 0));
+        assertEquals(r, tree.parent(d));
+        tree.remove(r);
+        try {
+            tree.remove(r);
+            fail("A removed root has been accepted");
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+        assertTrue(tree.isEmpty());
+    }
+
+    public void testRemovedDescendant() {
+        Position<String> r = tree.addRoot("R");
+        Position<String> b = tree.add("B", r);
+        Position<String> c = tree.add("C", b);
+        Position<String> d = tree.add("D", c);
+        tree.remove(b);
+        for (Position<String> p : List.of(c, d)) {
+            try {
+                tree.add("X", p);
+                fail("A descendant of a removed position has been accepted");
+            } catch (RuntimeException e) {
+                assertTrue(true);
+            }
+        }
+        assertEquals(1, tree.size());
+        assertEquals(1, tree.size(r));
+        assertTrue(tree.isLeaf(r));
+    }
+
+    public void testReduce() {
+        this.setTree();
+        StringBuilder preOrder = new StringBuilder();
+        tree.iteratorPreOrder().forEachRemaining(pos -> preOrder.append(pos.getElement()));
+        ForkJoinPool pool = new ForkJoinPool(4);
+        // string concatenation is associative but not commutative, so the order must be kept
+        assertEquals(preOrder.toString(), tree.reduce("", e -> e, String::concat, pool, 1));
+        assertEquals(preOrder.toString(), tree.reduce("", e -> e, String::concat));
+        assertEquals(Integer.valueOf(12), tree.reduce(0, e -> 1, Integer::sum, pool, 2));
+        assertEquals("", new LinkedTree<String>().reduce("", e -> e, String::concat));
+        pool.shutdown();
+    }
+
+    public void testReduceLargeTree() {
+        Position<String> r = tree.addRoot("0");
+        List<Position<String>> nodes = new ArrayList<>();
+        nodes.add(r);
+        Random random = new Random(5);
+        long expected = 0;
+        for (int i = 1; i < 200_000; i++) {
+            // mostly a long path with leaves hanging from it
+            Position<String> parent = random.nextInt(4) == 0 ? nodes.get(random.nextInt(nodes.size()))
+                    : nodes.get(nodes.size() - 1);
+            nodes.add(tree.add(String.valueOf(i), parent));
+            expected += i;
+        }
+        assertEquals(Long.valueOf(expected), tree.reduce(0L, Long::valueOf, Long::sum, ForkJoinPool.commonPool(), 64));
+        assertEquals(Integer.valueOf(199_999), tree.reduce(0, Integer::valueOf, Math::max));
+    }
+
+    public void testSiblings() {
+        Position<String> r = tree.addRoot("R");
+        Position<String> a = tree.add("A", r);
+        Position<String> b = tree.add("B", r);
+        Position<String> c = tree.add("C", r);
+        assertEquals(b, tree.nextSibling(a));
+        assertNull(tree.nextSibling(c));
+        assertEquals(b, tree.prevSibling(c));
+        assertNull(tree.prevSibling(a));
+        assertNull(tree.nextSibling(r));
+    }
+
+    public void testFromParents() {
+        List<String> elements = Arrays.asList("A", "B", "C", "D", "E", "F", "G", "H", "I", "J", "K", "L");
+        tree = LinkedTree.fromParents(elements, new int[]{-1, 0, 0, 0, 2, 2, 5, 5, 7, 7, 7, 7});
+        StringBuilder s = new StringBuilder();
+        for (Position<String> pos : tree) {
+            s.append(pos.getElement());
+        }
+        assertEquals("ABCDEFGHIJKL", s.toString());
+        assertEquals(12, tree.size());
+        Position<String> c = tree.child(tree.root(), 1);
+        Position<String> h = tree.child(tree.child(c, 1), 1);
+        assertEquals(9, tree.size(c));
+        assertEquals(4, tree.height(tree.root()));
+        assertEquals(3, tree.depth(h));
+        assertTrue(tree.isAncestor(c, tree.child(h, 3)));
+        tree.add("M", h);
+        assertEquals(10, tree.size(c));
+        assertEquals(5, tree.childCount(h));
+    }
+
+    public void testFromEdges() {
+        List<String> elements = Arrays.asList("A", "B", "C", "D");
+        tree = LinkedTree.fromEdges(elements, Stream.of(new int[]{3, 1}, new int[]{3, 0}, new int[]{0, 2}));
+        assertEquals("D", tree.root().getElement());
+        assertEquals("B", tree.child(tree.root(), 0).getElement());
+        assertEquals("A", tree.child(tree.root(), 1).getElement());
+        assertEquals(2, tree.height(tree.root()));
+        assertEquals(4, tree.size());
+        try {
+            LinkedTree.fromEdges(elements, Stream.of(new int[]{3, 1}, new int[]{3, 1}, new int[]{0, 2}));
+            fail("A node with two parents has been accepted");
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+    }
+
+    public void testFromParentsInvalid() {
+        List<String> elements = Arrays.asList("A", "B", "C", "D");
+        int[][] invalid = {{-1, 0, 3, 2}, {-1, -1, 0, 0}, {1, 0, 0, 0}, {-1, 0, 4, 0}, {-1, 0, 0}};
+        for (int[] parents : invalid) {
+            try {
+                LinkedTree.fromParents(elements, parents);
+                fail("An invalid parent array has been accepted");
+            } catch (RuntimeException e) {
+                assertTrue(true);
+            }
+        }
+        assertTrue(LinkedTree.fromParents(new ArrayList<String>(), new int[0]).isEmpty());
+    }
+
+    public void testFromParentsLargeTree() {
+        int n = 1_000_000;
+        int[] parents = new int[n];
+        List<String> elements = new ArrayList<>(n);
+        Random random = new Random(11);
+        parents[0] = -1;
+        elements.add("0");
+        for (int i = 1; i < n; i++) {
+            // half of the nodes hang from the root, the other half form long chains
+            parents[i] = random.nextBoolean() ? 0 : i - 1;
+            elements.add(String.valueOf(i));
+        }
+        tree = LinkedTree.fromParents(elements, parents);
+        assertEquals(n, tree.size());
+        assertEquals(n, tree.size(tree.root()));
+        int count = 0;
+        for (Position<String> pos : tree) {
+            count++;
+        }
+        assertEquals(n, count);
+    }
+
     public void testAddN() {
         Position<String> p = this.tree.addRoot("R");
         this.tree.add("A", p);
@@ -224,6 +585,18 @@ public class LinkedTreeTest extends TestCase {
         assertEquals("BEGIJKLHFCDA", s.toString());
     }
 
+    public void testIteratorsOnEmptyTree() {
+        assertFalse(this.tree.iterator().hasNext());
+        assertFalse(this.tree.iteratorPreOrder().hasNext());
+        assertFalse(this.tree.iteratorPostOrder().hasNext());
+        try {
+            this.tree.iterator().next();
+            fail("An empty iterator returned an element");
+        } catch (NoSuchElementException e) {
+            assertTrue(true);
+        }
+    }
+
     public void testIsRoot() {
         this.setTree();
         assertEquals("A", this.tree.root().getElement());
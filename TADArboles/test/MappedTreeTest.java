@@ -0,0 +1,165 @@
+import material.Position;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.function.UnaryOperator;
+
+import static org.junit.Assert.*;
+
+/**
+ * This class is a test class for the MappedTree class.
+ * It writes trees to a temporary file and navigates them through the mapping.
+ */
+public class MappedTreeTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private LinkedTree<Integer> source;
+
+    private MappedTree<Integer> tree;
+
+    @Before
+    public void setUp() throws Exception {
+        source = new LinkedTree<>();
+        Position<Integer> p = source.addRoot(1);
+        source.add(2, p);
+        Position<Integer> p1 = source.add(3, p);
+        source.add(4, p);
+        source.add(5, p1);
+        Position<Integer> p2 = source.add(6, p1);
+        source.add(7, p2);
+        Position<Integer> p3 = source.add(8, p2);
+        source.add(9, p3);
+        source.add(10, p3);
+        source.add(11, p3);
+        source.add(12, p3);
+
+        Path file = folder.newFile("tree.bin").toPath();
+        MappedTree.write(source, ElementCodec.INT, file);
+        tree = MappedTree.open(file, ElementCodec.INT);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        tree.close();
+    }
+
+    @Test
+    public void testSize() {
+        assertEquals(12, tree.size());
+        assertFalse(tree.isEmpty());
+    }
+
+    @Test
+    public void testIterator() {
+        StringBuilder s = new StringBuilder();
+        for (Position<Integer> pos : tree) {
+            s.append(pos.getElement());
+        }
+        assertEquals("123456789101112", s.toString());
+    }
+
+    @Test
+    public void testNavigation() {
+        Position<Integer> root = tree.root();
+        assertTrue(tree.isRoot(root));
+        assertNull(tree.parent(root));
+
+        StringBuilder s = new StringBuilder();
+        Position<Integer> last = null;
+        for (Position<Integer> child : tree.children(root)) {
+            s.append(child.getElement());
+            assertEquals(root, tree.parent(child));
+            last = child;
+        }
+        assertEquals("234", s.toString());
+        assertTrue(tree.isLeaf(last));
+        assertTrue(tree.isInternal(root));
+    }
+
+    @Test
+    public void testGetChildren2() {
+        Position<Integer> p3 = null;
+        for (Position<Integer> pos : tree) {
+            if (pos.getElement() == 8) {
+                p3 = pos;
+            }
+        }
+        StringBuilder s = new StringBuilder();
+        for (Position<Integer> e : tree.children(p3)) {
+            s.append(e.getElement());
+        }
+        assertEquals("9101112", s.toString());
+        assertEquals(6, (int) tree.parent(p3).getElement());
+    }
+
+    @Test
+    public void testEmptyTree() throws IOException {
+        Path file = folder.newFile("empty.bin").toPath();
+        MappedTree.write(new LinkedTree<Integer>(), ElementCodec.INT, file);
+        try (MappedTree<Integer> empty = MappedTree.open(file, ElementCodec.INT)) {
+            assertTrue(empty.isEmpty());
+            assertNull(empty.root());
+            assertFalse(empty.iterator().hasNext());
+        }
+    }
+
+    @Test
+    public void testInvalidFile() throws IOException {
+        Path file = folder.newFile("invalid.bin").toPath();
+        Files.write(file, "digraph Tree {}".getBytes());
+        try {
+            MappedTree.open(file, ElementCodec.INT);
+            fail("A file that is not a tree file has been opened");
+        } catch (IOException e) {
+            assertTrue(true);
+        }
+    }
+
+    /**
+     * Write the tree of setUp to a new file, apply a change to its bytes and check that opening it fails.
+     */
+    private void assertRejected(String name, UnaryOperator<byte[]> change, String message)
+            throws IOException {
+        Path file = folder.newFile(name).toPath();
+        MappedTree.write(source, ElementCodec.INT, file);
+        Files.write(file, change.apply(Files.readAllBytes(file)));
+        try {
+            MappedTree.open(file, ElementCodec.INT).close();
+            fail("A corrupt tree file has been opened");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+        }
+    }
+
+    @Test
+    public void testCorruptHeader() throws IOException {
+        assertRejected("truncated.bin", bytes -> Arrays.copyOf(bytes, bytes.length - 1), "truncated");
+        assertRejected("header.bin", bytes -> Arrays.copyOf(bytes, 10), "not a tree file");
+        assertRejected("version.bin", bytes -> {
+            bytes[7] = 2;
+            return bytes;
+        }, "version 2");
+        assertRejected("count.bin", bytes -> {
+            bytes[8] = (byte) 0x80;
+            return bytes;
+        }, "negative");
+        assertRejected("larger.bin", bytes -> {
+            bytes[11] = 13;
+            return bytes;
+        }, "13 nodes");
+        Path file = folder.newFile("long.bin").toPath();
+        MappedTree.write(source, ElementCodec.INT, file);
+        try {
+            MappedTree.open(file, ElementCodec.LONG).close();
+            fail("A file written with another codec has been opened");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("width"));
+        }
+    }
+}
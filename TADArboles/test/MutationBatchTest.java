@@ -0,0 +1,213 @@
+import material.Position;
+import org.junit.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * This class is a test class for the MutationBatch class.
+ * It applies the same random operations one by one and as a batch and compares the resulting trees.
+ */
+public class MutationBatchTest {
+
+    /**
+     * The operations of a script: the element of the added node, or -1 for a removal, and the element of the target.
+     */
+    private List<int[]> script;
+
+    private NAryTree<Integer> expected;
+
+    @Before
+    public void setUp() throws Exception {
+        script = new ArrayList<>();
+    }
+
+    /**
+     * Build a tree of a given size and the reference tree that results from applying random operations to it one by
+     * one. The script may add children to nodes added by itself and remove nodes with their added descendants.
+     */
+    private NAryTree<Integer> prepare(Supplier<NAryTree<Integer>> factory, int initial, int operations, long seed) {
+        Random random = new Random(seed);
+        NAryTree<Integer> tree = factory.get();
+        expected = new LinkedTree<>();
+        List<Position<Integer>> treeNodes = new ArrayList<>();
+        List<Position<Integer>> alive = new ArrayList<>();
+        treeNodes.add(tree.addRoot(0));
+        alive.add(expected.addRoot(0));
+        for (int i = 1; i < initial; i++) {
+            int parent = random.nextInt(i);
+            treeNodes.add(tree.add(i, treeNodes.get(parent)));
+            alive.add(expected.add(i, alive.get(parent)));
+        }
+        int next = initial;
+        for (int k = 0; k < operations; k++) {
+            Position<Integer> target = alive.get(random.nextInt(alive.size()));
+            if (random.nextInt(10) == 0 && target != expected.root()) {
+                script.add(new int[]{-1, target.getElement()});
+                // the removed positions become invalid, so the alive ones are found first
+                alive.removeIf(p -> expected.isAncestor(target, p));
+                expected.remove(target);
+            } else {
+                script.add(new int[]{next, target.getElement()});
+                alive.add(expected.add(next++, target));
+            }
+        }
+        return tree;
+    }
+
+    private MutationBatch.Result<Integer> applyScript(NAryTree<Integer> tree) {
+        Map<Integer, Position<Integer>> existing = new HashMap<>();
+        for (Position<Integer> p : tree) {
+            existing.put(p.getElement(), p);
+        }
+        Map<Integer, Integer> additions = new HashMap<>();
+        MutationBatch<Integer> batch = new MutationBatch<>(tree);
+        for (int[] operation : script) {
+            Integer added = additions.get(operation[1]);
+            if (operation[0] < 0) {
+                if (added != null) {
+                    batch.remove(added);
+                } else {
+                    batch.remove(existing.get(operation[1]));
+                }
+            } else if (added != null) {
+                additions.put(operation[0], batch.add(operation[0], added));
+            } else {
+                additions.put(operation[0], batch.add(operation[0], existing.get(operation[1])));
+            }
+        }
+        assertEquals(script.size(), batch.size());
+        MutationBatch.Result<Integer> result = batch.apply();
+        assertEquals(0, batch.size());
+        return result;
+    }
+
+    private void checkSameTree(NAryTree<Integer> tree) {
+        assertEquals(expected.size(), tree.size());
+        Map<Integer, Position<Integer>> reference = new HashMap<>();
+        List<Integer> expectedOrder = new ArrayList<>();
+        for (Position<Integer> p : expected) {
+            reference.put(p.getElement(), p);
+            expectedOrder.add(p.getElement());
+        }
+        List<Integer> order = new ArrayList<>();
+        for (Position<Integer> p : tree) {
+            order.add(p.getElement());
+            Position<Integer> q = reference.get(p.getElement());
+            assertEquals(expected.size(q), tree.size(p));
+            assertEquals(expected.height(q), tree.height(p));
+            assertEquals(expected.depth(q), tree.depth(p));
+        }
+        assertEquals(expectedOrder, order);
+    }
+
+    private void checkBatch(Supplier<NAryTree<Integer>> factory) {
+        NAryTree<Integer> tree = prepare(factory, 2_000, 3_000, 7);
+        MutationBatch.Result<Integer> result = applyScript(tree);
+        assertEquals(script.size(), result.operations());
+        assertTrue(result.operationsPerSecond() > 0);
+        checkSameTree(tree);
+        assertEquals(script.stream().filter(operation -> operation[0] >= 0).count(), result.added().size());
+        // a second batch on the same tree, with the sizes and heights left by the first one
+        script.clear();
+        Position<Integer> r = tree.root();
+        MutationBatch<Integer> batch = new MutationBatch<>(tree);
+        int a = batch.add(-2, r);
+        batch.add(-3, a);
+        batch.remove(tree.child(r, 0));
+        int removedSize = tree.size(tree.child(r, 0));
+        int before = tree.size();
+        batch.apply();
+        assertEquals(before + 2 - removedSize, tree.size());
+        assertEquals(tree.size(), tree.size(r));
+    }
+
+    @Test
+    public void testLinkedTree() {
+        checkBatch(LinkedTree::new);
+    }
+
+    @Test
+    public void testLCRSTree() {
+        checkBatch(LCRSTree::new);
+    }
+
+    @Test
+    public void testDefaultImplementation() {
+        checkBatch(ConcurrentTree::new);
+    }
+
+    /**
+     * Apply a batch whose fourth operation removes a node already removed by the third one, and check that the first
+     * three operations are applied consistently.
+     */
+    private void checkFailedBatch(Supplier<NAryTree<Integer>> factory) {
+        NAryTree<Integer> tree = factory.get();
+        Position<Integer> r = tree.addRoot(0);
+        Position<Integer> a = tree.add(1, r);
+        Position<Integer> b = tree.add(2, r);
+        MutationBatch<Integer> batch = new MutationBatch<>(tree);
+        batch.add(3, a);
+        batch.remove(b);
+        batch.remove(b);
+        batch.add(4, r);
+        try {
+            batch.apply();
+            fail("A removed node has been accepted");
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+        assertEquals(0, batch.size());
+        int walked = 0;
+        for (Position<Integer> p : tree) {
+            walked++;
+        }
+        assertEquals(3, walked);
+        assertEquals(3, tree.size());
+        assertEquals(3, tree.size(r));
+        assertEquals(2, tree.size(a));
+        assertEquals(2, tree.height(r));
+        assertEquals(1, tree.childCount(r));
+    }
+
+    @Test
+    public void testFailedBatch() {
+        checkFailedBatch(LinkedTree::new);
+        checkFailedBatch(LCRSTree::new);
+        checkFailedBatch(ConcurrentTree::new);
+    }
+
+    @Test
+    public void testRemoveRootAndNestedRemovals() {
+        LinkedTree<Integer> tree = new LinkedTree<>();
+        Position<Integer> r = tree.addRoot(0);
+        Position<Integer> a = tree.add(1, r);
+        Position<Integer> b = tree.add(2, a);
+        tree.add(3, b);
+        MutationBatch<Integer> batch = new MutationBatch<>(tree);
+        batch.add(4, b);
+        batch.remove(b);
+        batch.remove(a);
+        batch.apply();
+        assertEquals(1, tree.size());
+        assertEquals(0, tree.height(r));
+        batch.add(5, r);
+        batch.remove(r);
+        MutationBatch.Result<Integer> result = batch.apply();
+        assertTrue(tree.isEmpty());
+        assertEquals(0, tree.size());
+        assertEquals(1, result.added().size());
+        try {
+            batch.add(6, 3);
+            fail("An addition that does not exist has been used");
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+    }
+}
@@ -0,0 +1,543 @@
+import material.Position;
+import org.junit.*;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+/**
+ * This class is a test class for the OffHeapTree class.
+ * It runs the same contract as LCRSTreeTest plus the checks of the native memory lifetime.
+ */
+public class OffHeapTreeTest {
+
+
+
+    private OffHeapTree<Integer> tree;
+
+    @Before
+    public void setUp() throws Exception {
+        tree = new OffHeapTree<>(ElementCodec.INT);
+    }
+
+    @After
+    public void tearDown() {
+        tree.close();
+    }
+
+    public void setTree() {
+
+        Position<Integer> p = tree.addRoot(1);
+        tree.add(2, p);
+        Position<Integer> p1 = tree.add(3, p);
+        tree.add(4, p);
+
+        tree.add(5, p1);
+        Position<Integer> p2 = tree.add(6, p1);
+
+        tree.add(7, p2);
+        Position<Integer> p3 = tree.add(8, p2);
+
+        tree.add(9, p3);
+        tree.add(10, p3);
+        tree.add(11, p3);
+        tree.add(12, p3);
+    }
+
+    @Test
+    public void testSize() {
+        Position<Integer> p = this.tree.addRoot(100);
+        this.tree.add(200, p);
+        Position<Integer> h = this.tree.add(300, p);
+        this.tree.add(400, h);
+        this.tree.add(500, h);
+        assertEquals(this.tree.size(), 5);
+    }
+
+
+    @Test
+    public void testSize2() {
+        this.setTree();
+        assertEquals(this.tree.size(), 12);
+    }
+
+    @Test
+    public void testRoot() {
+        this.setTree();
+        Integer a = this.tree.root().getElement();
+        boolean b = (a == 1);
+        assertTrue(b);
+
+    }
+
+    @Test
+    public void testIsEmpty() {
+        assertTrue(this.tree.isEmpty());
+    }
+
+    @Test
+    public void testIsEmpty2() {
+        Position<Integer> p = this.tree.addRoot(2);
+        this.tree.add(3, p);
+        assertFalse(this.tree.isEmpty());
+    }
+
+
+/*	public void testParent() {
+		this.setTree();
+
+		try {
+			Position<Integer> p = this.tree.root();
+			this.tree.parent(p);
+		} catch (BoundaryViolationException e) {
+			assertTrue(true);
+		}
+
+	}*/
+
+
+    @Test
+    public void testParent2() {
+        Position<Integer> p = tree.addRoot(1);
+        tree.add(2, p);
+        Position<Integer> p1 = tree.add(3, p);
+        tree.add(4, p);
+        tree.add(5, p1);
+        Position<Integer> p2 = tree.add(6, p1);
+        tree.add(7, p2);
+        Position<Integer> p3 = tree.add(8, p2);
+        tree.add(9, p3);
+        tree.add(10, p3);
+        tree.add(11, p3);
+        tree.add(12, p3);
+        assertEquals(p2, tree.parent(p3));
+    }
+
+    @Test
+    public void testParent3() {
+        this.setTree();
+
+        try {
+            this.tree.parent(null);
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+    }
+
+    @Test
+    public void testPositions() {
+        Position<Integer> p = this.tree.addRoot(100);
+        this.tree.add(200, p);
+        this.tree.add(300, p);
+        StringBuilder salida = new StringBuilder();
+        for (Position<Integer> e : this.tree) {
+            salida.append(e.getElement());
+        }
+        assertEquals(salida.toString(), "100200300");
+    }
+
+
+    @Test
+    public void testRemove() {
+        Position<Integer> p = this.tree.addRoot(100);
+        Position<Integer> q = this.tree.add(200, p);
+        Position<Integer> h = this.tree.add(300, p);
+        this.tree.add(400, h);
+        this.tree.add(500, h);
+        this.tree.remove(h);
+        assertEquals(this.tree.size(), 2);
+
+    }
+
+    @Test
+    public void testRemove2() {
+        this.setTree();
+        this.tree.remove(this.tree.root());
+        assertEquals(this.tree.size(), 0);
+    }
+
+
+    @Test
+    public void testRemove3() {
+        Position<Integer> p = tree.addRoot(1);
+        tree.add(2, p);
+        Position<Integer> p1 = tree.add(3, p);
+        tree.add(4, p);
+        tree.add(5, p1);
+        Position<Integer> p2 = tree.add(6, p1);
+        tree.add(7, p2);
+        Position<Integer> p3 = tree.add(8, p2);
+        tree.add(9, p3);
+        tree.add(10, p3);
+        tree.add(11, p3);
+        tree.add(12, p3);
+
+        this.tree.remove(p2);
+
+        StringBuilder s = new StringBuilder();
+        for (Position<Integer> pos : this.tree) {
+            s.append(pos.getElement());
+        }
+        assertEquals(s.toString(), "12345");
+    }
+
+
+    @Test
+    public void testGetUnmodifiableChildren() {
+        Position<Integer> p = this.tree.addRoot(100);
+        this.tree.add(200, p);
+        this.tree.add(300, p);
+        Iterable<? extends Position<Integer>> l = this.tree.children(p);
+        try {
+            l.iterator().remove();
+            fail("The children collection has been modified");
+        } catch (Exception e) {
+            assertTrue(true);
+        }
+    }
+
+
+    @Test
+    public void testGetChildren() {
+        Position<Integer> p = this.tree.addRoot(100);
+        this.tree.add(200, p);
+        this.tree.add(300, p);
+
+        StringBuilder salida = new StringBuilder();
+        for (Position<Integer> e : this.tree.children(p)) {
+            salida.append(e.getElement());
+        }
+        assertEquals(salida.toString(), "200300");
+    }
+
+
+    @Test
+    public void testGetChildren2() {
+        Position<Integer> p = tree.addRoot(1);
+        tree.add(2, p);
+        Position<Integer> p1 = tree.add(3, p);
+        tree.add(4, p);
+        tree.add(5, p1);
+        Position<Integer> p2 = tree.add(6, p1);
+        tree.add(7, p2);
+        Position<Integer> p3 = tree.add(8, p2);
+        tree.add(9, p3);
+        tree.add(10, p3);
+        tree.add(11, p3);
+        tree.add(12, p3);
+
+        StringBuilder salida = new StringBuilder();
+        for (Position<Integer> e : this.tree.children(p3)) {
+            salida.append(e.getElement());
+        }
+        assertEquals(salida.toString(), "9101112");
+    }
+
+
+    @Test
+    public void testIterator() {
+        this.setTree();
+
+        StringBuilder s = new StringBuilder();
+        for (Position<Integer> pos : this.tree) {
+            s.append(pos.getElement());
+        }
+        assertEquals(s.toString(), "123456789101112");
+    }
+
+
+
+    @Test
+    public void testIteratorPreOrder(){
+        this.setTree();
+        StringBuilder s = new StringBuilder();
+        var it = this.tree.iteratorPreOrder();
+        while(it.hasNext()){
+            s.append(it.next().getElement());
+        }
+        assertEquals("123567891011124", s.toString());
+    }
+
+
+    @Test
+    public void testIteratorPostOrder(){
+        this.setTree();
+        StringBuilder s = new StringBuilder();
+        var it = this.tree.iteratorPostOrder();
+        while(it.hasNext()){
+            s.append(it.next().getElement());
+        }
+        assertEquals("257910111286341", s.toString());
+    }
+
+    @Test
+    public void testIteratorsOnSubTree() {
+        Position<Integer> p = tree.addRoot(1);
+        Position<Integer> p1 = tree.add(2, p);
+        tree.add(3, p1);
+        tree.add(4, p1);
+        tree.add(5, p);
+
+        OffHeapTree<Integer> sub = (OffHeapTree<Integer>) this.tree.subTree(p1);
+        StringBuilder bfs = new StringBuilder();
+        for (Position<Integer> pos : sub) {
+            bfs.append(pos.getElement());
+        }
+        StringBuilder pre = new StringBuilder();
+        sub.iteratorPreOrder().forEachRemaining(pos -> pre.append(pos.getElement()));
+        StringBuilder post = new StringBuilder();
+        sub.iteratorPostOrder().forEachRemaining(pos -> post.append(pos.getElement()));
+
+        assertEquals("234", bfs.toString());
+        assertEquals("234", pre.toString());
+        assertEquals("342", post.toString());
+    }
+
+
+    @Test
+    public void testIsRoot() {
+        this.setTree();
+        Integer a = this.tree.root().getElement();
+        boolean b = (a == 1);
+        assertTrue(b);
+
+    }
+
+
+    @Test
+    public void testIsRoot2() {
+        try {
+            this.tree.isRoot(null);
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+    }
+
+
+    @Test
+    public void testSwapElements() {
+        Position<Integer> p = tree.addRoot(1);
+        tree.add(2, p);
+        Position<Integer> p1 = tree.add(3, p);
+        tree.add(4, p);
+        tree.add(5, p1);
+        Position<Integer> p2 = tree.add(6, p1);
+        tree.add(7, p2);
+        Position<Integer> p3 = tree.add(8, p2);
+        tree.add(9, p3);
+        tree.add(10, p3);
+        tree.add(11, p3);
+        tree.add(12, p3);
+
+
+        this.tree.swapElements(p, p1);
+        this.tree.swapElements(p2, p3);
+
+        StringBuilder salida = new StringBuilder();
+        for (Position<Integer> e : this.tree) {
+            salida.append(e.getElement());
+        }
+        assertEquals(salida.toString(), "321458769101112");
+    }
+
+
+    @Test
+    public void testReplace() {
+        Position<Integer> p = tree.addRoot(1);
+        tree.add(2, p);
+        Position<Integer> p1 = tree.add(3, p);
+        tree.add(4, p);
+        tree.add(5, p1);
+        Position<Integer> p2 = tree.add(6, p1);
+        tree.add(7, p2);
+        Position<Integer> p3 = tree.add(8, p2);
+        tree.add(9, p3);
+        tree.add(10, p3);
+        tree.add(11, p3);
+        tree.add(12, p3);
+
+
+        this.tree.replace(p, -1);
+        this.tree.replace(p1, -2);
+        this.tree.replace(p2, -3);
+        this.tree.replace(p3, -4);
+
+        StringBuilder salida = new StringBuilder();
+        for (Position<Integer> e : this.tree) {
+            salida.append(e.getElement());
+        }
+        assertEquals(salida.toString(), "-12-245-37-49101112");
+    }
+
+
+    @Test
+    public void testAttachTree(){
+        OffHeapTree<Integer> tree2 = new OffHeapTree<>(ElementCodec.INT);
+        Position<Integer> p = tree.addRoot(1);
+        tree.add(2, p);
+        Position<Integer> p1 = tree.add(3, p);
+        tree.add(4, p);
+        tree.add(5, p1);
+        Position<Integer> p2 = tree.add(6, p1);
+        tree.add(7, p2);
+        Position<Integer> p3 = tree.add(8, p2);
+        tree.add(9, p3);
+        tree.add(10, p3);
+        tree.add(11, p3);
+        tree.add(12, p3);
+
+        Position<Integer> p4 = tree2.addRoot(100);
+        tree2.add(200, p4);
+        tree2.add(300, p4);
+        tree2.add(400, p4);
+        tree2.add(500, p4);
+        tree2.add(600, p4);
+        tree2.add(700, p4);
+        tree2.add(800, p4);
+        tree2.add(900, p4);
+        tree2.add(1000, p4);
+        tree2.add(1100, p4);
+        tree2.add(1200, p4);
+        tree2.add(1300, p4);
+
+        this.tree.attach(p3, tree2);
+
+        StringBuilder salida = new StringBuilder();
+        for (Position<Integer> e : this.tree) {
+            salida.append(e.getElement());
+        }
+        assertEquals(salida.toString(), "1234567891011121002003004005006007008009001000110012001300");
+
+
+    }
+
+    @Test
+    public void testGrowsAcrossChunks() {
+        Position<Integer> p = tree.addRoot(0);
+        for (int i = 1; i < 200000; i++) {
+            tree.add(i, p);
+        }
+        long sum = 0;
+        for (Position<Integer> e : tree.children(p)) {
+            sum += e.getElement();
+        }
+        assertEquals(200000, tree.size());
+        assertEquals(199999L * 200000L / 2, sum);
+    }
+
+    @Test
+    public void testClosedTreeCannotBeUsed() {
+        Position<Integer> p = tree.addRoot(1);
+        Position<Integer> c = tree.add(2, p);
+        NAryTree<Integer> sub = tree.subTree(c);
+        OffHeapTree<Integer> other = new OffHeapTree<>(ElementCodec.INT);
+        other.addRoot(9);
+        tree.close();
+        List<Runnable> operations = List.of(
+                () -> p.getElement(),
+                () -> tree.add(3, p),
+                () -> tree.add(3, p, 0),
+                () -> tree.replace(c, 3),
+                () -> tree.swapElements(p, c),
+                () -> tree.remove(c),
+                () -> tree.parent(c),
+                () -> tree.children(p),
+                () -> tree.isLeaf(c),
+                () -> tree.isInternal(p),
+                () -> tree.isRoot(p),
+                () -> tree.size(p),
+                () -> tree.subTree(c),
+                () -> tree.attach(p, other),
+                () -> other.attach(other.root(), sub),
+                () -> tree.addRoot(1),
+                () -> tree.isEmpty(),
+                () -> tree.root(),
+                () -> tree.size(),
+                () -> tree.iterator(),
+                () -> tree.iteratorPreOrder(),
+                () -> tree.iteratorPostOrder(),
+                () -> tree.toDot(),
+                () -> sub.size(),
+                () -> sub.root());
+        for (int i = 0; i < operations.size(); i++) {
+            try {
+                operations.get(i).run();
+                fail("Operation " + i + " has used a closed tree");
+            } catch (IllegalStateException e) {
+                assertEquals("The tree is closed", e.getMessage());
+            }
+        }
+        other.close();
+    }
+
+    private int walk(NAryTree<Integer> t) {
+        int count = 0;
+        for (Position<Integer> pos : t) {
+            count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void testRemoveRootOfSubTree() {
+        Position<Integer> p = tree.addRoot(1);
+        tree.add(2, p);
+        Position<Integer> p1 = tree.add(3, p);
+        tree.add(4, p1);
+        tree.add(5, p1);
+        NAryTree<Integer> sub = tree.subTree(p1);
+        sub.remove(sub.root());
+        assertTrue(sub.isEmpty());
+        assertEquals(2, tree.size());
+        assertEquals(walk(tree), tree.size());
+        // a view whose root was removed through another tree is empty
+        NAryTree<Integer> leaf = tree.subTree(tree.add(6, p));
+        tree.remove(leaf.root());
+        assertEquals(0, leaf.size());
+        assertNull(leaf.root());
+    }
+
+    @Test
+    public void testAttachSubTreeOfSameStorage() {
+        Position<Integer> p = tree.addRoot(1);
+        Position<Integer> a = tree.add(2, p);
+        Position<Integer> b = tree.add(3, p);
+        tree.add(4, b);
+        tree.add(5, b);
+        // moving nodes inside the tree keeps its size
+        tree.attach(a, tree.subTree(b));
+        assertEquals(5, tree.size());
+        assertEquals(walk(tree), tree.size());
+        // moving nodes into a view adds them to the view only
+        NAryTree<Integer> view = tree.subTree(a);
+        Position<Integer> c = tree.add(6, p);
+        view.attach(view.root(), tree.subTree(c));
+        assertEquals(5, view.size());
+        assertEquals(walk(view), view.size());
+        assertEquals(6, tree.size());
+        assertEquals(walk(tree), tree.size());
+        try {
+            view.attach(b, tree.subTree(a));
+            fail("A tree has been attached below itself");
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+    }
+
+    @Test
+    public void testNullElementsTakeNoSlot() {
+        Position<Integer> p = tree.addRoot(1);
+        Position<Integer> c = tree.add(2, p);
+        tree.remove(c);
+        for (int i = 0; i < 3; i++) {
+            try {
+                tree.add(null, p);
+                fail("A null element has been stored");
+            } catch (RuntimeException e) {
+                assertTrue(true);
+            }
+        }
+        // the slot released by c is still the first free one
+        assertEquals(c, tree.add(3, p));
+        assertEquals(2, tree.size());
+    }
+}
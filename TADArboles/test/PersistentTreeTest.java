@@ -0,0 +1,205 @@
+import material.Position;
+import org.junit.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * This class is a test class for the PersistentTree class.
+ * It checks that updates leave older versions untouched and that versions are published atomically.
+ */
+public class PersistentTreeTest {
+
+    private PersistentTree<Integer> tree;
+
+    @Before
+    public void setUp() throws Exception {
+        tree = new PersistentTree<>();
+    }
+
+    public void setTree() {
+        tree = tree.addRoot(1);
+        Position<Integer> p = tree.root();
+        tree = tree.add(2, p);
+        tree = tree.add(3, p);
+        tree = tree.add(4, p);
+        Position<Integer> p1 = tree.child(tree.root(), 1);
+        tree = tree.add(5, p1);
+        tree = tree.add(6, p1);
+        Position<Integer> p2 = tree.child(p1, 1);
+        tree = tree.add(7, p2);
+        tree = tree.add(8, p2);
+        Position<Integer> p3 = tree.child(p2, 1);
+        tree = tree.add(9, p3);
+        tree = tree.add(10, p3);
+        tree = tree.add(11, p3);
+        tree = tree.add(12, p3);
+    }
+
+    private static String elements(PersistentTree<Integer> tree) {
+        StringBuilder s = new StringBuilder();
+        for (Position<Integer> pos : tree) {
+            s.append(pos.getElement());
+        }
+        return s.toString();
+    }
+
+    @Test
+    public void testIteratorAndSize() {
+        this.setTree();
+        assertEquals("123456789101112", elements(tree));
+        assertEquals(12, tree.size());
+        assertEquals(9, tree.size(tree.child(tree.root(), 1)));
+        assertEquals(3, tree.depth(tree.child(tree.child(tree.child(tree.root(), 1), 1), 1)));
+    }
+
+    @Test
+    public void testOldVersionsUnchanged() {
+        this.setTree();
+        PersistentTree<Integer> old = tree;
+        Position<Integer> p1 = tree.child(tree.root(), 1);
+        PersistentTree<Integer> replaced = tree.replace(p1, 30);
+        PersistentTree<Integer> removed = tree.remove(p1);
+        PersistentTree<Integer> inserted = tree.add(0, tree.root(), 0);
+        assertEquals("123456789101112", elements(old));
+        assertEquals("1230456789101112", elements(replaced));
+        assertEquals("124", elements(removed));
+        assertEquals(3, removed.size());
+        assertEquals("10234", elements(inserted).substring(0, 5));
+        assertEquals(13, inserted.size());
+        assertEquals(3, p1.getElement().intValue());
+        assertTrue(tree.remove(tree.root()).isEmpty());
+    }
+
+    @Test
+    public void testPositionsAcrossVersions() {
+        this.setTree();
+        Position<Integer> p1 = tree.child(tree.root(), 1);
+        PersistentTree<Integer> next = tree.add(13, p1);
+        // the position follows its path in the new version
+        assertEquals(3, next.childCount(p1));
+        assertEquals(13, next.child(p1, 2).getElement().intValue());
+        assertEquals(next.root(), next.parent(p1));
+        PersistentTree<Integer> shrunk = tree.remove(tree.child(tree.root(), 2)).remove(p1);
+        try {
+            shrunk.add(5, p1);
+            fail("A position out of the version has been used");
+        } catch (RuntimeException e) {
+            assertTrue(true);
+        }
+    }
+
+    @Test
+    public void testShiftedPositionsAreRejected() {
+        this.setTree();
+        Position<Integer> a = tree.child(tree.root(), 0);
+        PersistentTree<Integer> shifted = tree.add(0, tree.root(), 0);
+        // the path of a now leads to the new node
+        for (Runnable use : List.<Runnable>of(() -> shifted.replace(a, 20), () -> shifted.remove(a),
+                () -> shifted.size(a))) {
+            try {
+                use.run();
+                fail("A position that leads to another node has been accepted");
+            } catch (RuntimeException e) {
+                assertTrue(true);
+            }
+        }
+        // updates that copy a keep its position valid
+        Position<Integer> p1 = tree.child(tree.root(), 1);
+        PersistentTree<Integer> replaced = tree.replace(p1, 30).add(13, p1);
+        assertEquals(3, replaced.childCount(p1));
+        assertEquals(30, replaced.child(replaced.root(), 1).getElement().intValue());
+    }
+
+    @Test
+    public void testAttachSharesNodes() {
+        this.setTree();
+        PersistentTree<Integer> other = new PersistentTree<Integer>().addRoot(20);
+        other = other.add(21, other.root());
+        PersistentTree<Integer> joined = tree.attach(tree.root(), other);
+        assertEquals(14, joined.size());
+        Position<Integer> q = joined.child(joined.root(), 3);
+        assertEquals(20, q.getElement().intValue());
+        assertEquals(2, joined.size(q));
+        assertEquals(12, tree.size());
+        assertEquals(2, other.size());
+    }
+
+    @Test
+    public void testUnchangedSubtreesAreShared() {
+        this.setTree();
+        Position<Integer> left = tree.child(tree.root(), 0);
+        Position<Integer> middle = tree.child(tree.root(), 1);
+        PersistentTree<Integer> next = tree.replace(left, 20);
+        // the position equality compares nodes, so an untouched subtree is the same in both versions
+        assertEquals(tree.child(middle, 1), next.child(next.child(next.root(), 1), 1));
+        assertNotEquals(tree.root(), next.root());
+    }
+
+    /**
+     * Writers publish new versions through a shared reference while readers traverse the versions they hold.
+     */
+    @Test
+    public void testConcurrentPublishing() throws Exception {
+        PersistentTree.Ref<Integer> ref = new PersistentTree.Ref<>(new PersistentTree<Integer>().addRoot(-1));
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        try {
+            int writers = 4;
+            int operations = 2_000;
+            CountDownLatch start = new CountDownLatch(1);
+            AtomicBoolean done = new AtomicBoolean();
+            List<Future<?>> results = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                int writer = w;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < operations; i++) {
+                        int element = writer * operations + i;
+                        ref.update(t -> {
+                            Position<Integer> r = t.root();
+                            return t.childCount(r) > 0 && element % 3 == 0
+                                    ? t.add(element, t.child(r, element % t.childCount(r)))
+                                    : t.add(element, r);
+                        });
+                    }
+                    return null;
+                }));
+            }
+            List<Future<?>> readers = new ArrayList<>();
+            for (int k = 0; k < 2; k++) {
+                readers.add(executor.submit(() -> {
+                    start.await();
+                    while (!done.get()) {
+                        PersistentTree<Integer> version = ref.get();
+                        int count = 0;
+                        for (Position<Integer> pos : version) {
+                            count++;
+                        }
+                        // a version never changes under its reader
+                        assertEquals(version.size(), count);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get(60, TimeUnit.SECONDS);
+            }
+            done.set(true);
+            for (Future<?> reader : readers) {
+                reader.get(60, TimeUnit.SECONDS);
+            }
+            assertEquals(writers * operations + 1, ref.get().size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
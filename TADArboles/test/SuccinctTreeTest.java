@@ -0,0 +1,110 @@
+import material.Position;
+import org.junit.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * This class is a test class for the SuccinctTree class.
+ * It compares the navigation of the LOUDS encoding with the tree it was built from.
+ */
+public class SuccinctTreeTest {
+
+    private LinkedTree<Integer> source;
+
+    private SuccinctTree<Integer> tree;
+
+    @Before
+    public void setUp() throws Exception {
+        source = new LinkedTree<>();
+        Position<Integer> p = source.addRoot(1);
+        source.add(2, p);
+        Position<Integer> p1 = source.add(3, p);
+        source.add(4, p);
+        source.add(5, p1);
+        Position<Integer> p2 = source.add(6, p1);
+        source.add(7, p2);
+        Position<Integer> p3 = source.add(8, p2);
+        source.add(9, p3);
+        source.add(10, p3);
+        source.add(11, p3);
+        source.add(12, p3);
+        tree = new SuccinctTree<>(source);
+    }
+
+    @Test
+    public void testSize() {
+        assertEquals(12, tree.size());
+        assertFalse(tree.isEmpty());
+    }
+
+    @Test
+    public void testIterator() {
+        StringBuilder s = new StringBuilder();
+        for (Position<Integer> pos : tree) {
+            s.append(pos.getElement());
+        }
+        assertEquals("123456789101112", s.toString());
+    }
+
+    @Test
+    public void testNavigation() {
+        Position<Integer> root = tree.root();
+        assertTrue(tree.isRoot(root));
+        assertNull(tree.parent(root));
+        assertEquals(3, tree.childCount(root));
+
+        for (Position<Integer> pos : tree) {
+            StringBuilder s = new StringBuilder();
+            for (Position<Integer> child : tree.children(pos)) {
+                assertEquals(pos, tree.parent(child));
+                s.append(child.getElement()).append(',');
+            }
+            assertEquals(s.length() == 0, tree.isLeaf(pos));
+            assertEquals(s.length() != 0, tree.isInternal(pos));
+        }
+    }
+
+    @Test
+    public void testEmptyTree() {
+        SuccinctTree<Integer> empty = new SuccinctTree<>(new LinkedTree<Integer>());
+        assertTrue(empty.isEmpty());
+        assertNull(empty.root());
+        assertFalse(empty.iterator().hasNext());
+    }
+
+    @Test
+    public void testLargeRandomTree() {
+        Random random = new Random(42);
+        LinkedTree<Integer> big = new LinkedTree<>();
+        List<Position<Integer>> positions = new ArrayList<>();
+        positions.add(big.addRoot(0));
+        for (int i = 1; i < 50000; i++) {
+            Position<Integer> parent = positions.get(random.nextInt(positions.size()));
+            positions.add(big.add(i, parent));
+        }
+        SuccinctTree<Integer> succinct = new SuccinctTree<>(big);
+
+        Iterator<Position<Integer>> expected = big.iterator();
+        for (Position<Integer> pos : succinct) {
+            Position<Integer> original = expected.next();
+            assertEquals(original.getElement(), pos.getElement());
+            if (big.isRoot(original)) {
+                assertNull(succinct.parent(pos));
+            } else {
+                assertEquals(big.parent(original).getElement(), succinct.parent(pos).getElement());
+            }
+            Iterator<? extends Position<Integer>> children = big.children(original).iterator();
+            for (Position<Integer> child : succinct.children(pos)) {
+                assertEquals(children.next().getElement(), child.getElement());
+            }
+            assertFalse(children.hasNext());
+        }
+        assertFalse(expected.hasNext());
+        assertTrue(succinct.topologySizeInBytes() < 50000L);
+    }
+}
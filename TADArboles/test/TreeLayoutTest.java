@@ -0,0 +1,151 @@
+import material.Position;
+import org.junit.*;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * This class is a test class for the TreeLayout class and the SVG export of DrawableTree.
+ * It checks that the drawing is tidy: no overlapping boxes, levels at the same height and parents centered.
+ */
+public class TreeLayoutTest {
+
+    private static final double EPSILON = 1e-6;
+
+    private LinkedTree<String> tree;
+
+    @Before
+    public void setUp() throws Exception {
+        tree = new LinkedTree<>();
+    }
+
+    private LinkedTree<String> randomTree(int n, long seed) {
+        Random random = new Random(seed);
+        LinkedTree<String> t = new LinkedTree<>();
+        List<Position<String>> nodes = new ArrayList<>();
+        nodes.add(t.addRoot("root"));
+        for (int i = 1; i < n; i++) {
+            // labels of different lengths, wide nodes and long paths
+            int parent = random.nextInt(3) == 0 ? random.nextInt(Math.min(i, 10)) : i - 1 - random.nextInt(Math.min(i, 4));
+            nodes.add(t.add("x".repeat(1 + random.nextInt(6)) + i, nodes.get(parent)));
+        }
+        return t;
+    }
+
+    private static void checkTidy(TreeLayout layout) {
+        Map<Double, List<Integer>> levels = new TreeMap<>();
+        List<List<Integer>> children = new ArrayList<>();
+        for (int v = 0; v < layout.size(); v++) {
+            levels.computeIfAbsent(layout.y[v], y -> new ArrayList<>()).add(v);
+            children.add(new ArrayList<>());
+            if (layout.parent(v) >= 0) {
+                children.get(layout.parent(v)).add(v);
+                assertTrue(layout.y[layout.parent(v)] < layout.y[v]);
+            }
+            assertTrue(layout.x[v] - layout.width(v) / 2 >= TreeLayout.MARGIN - EPSILON);
+        }
+        for (List<Integer> level : levels.values()) {
+            level.sort((a, b) -> Double.compare(layout.x[a], layout.x[b]));
+            for (int i = 1; i < level.size(); i++) {
+                int left = level.get(i - 1);
+                int right = level.get(i);
+                double gap = layout.x[right] - layout.width(right) / 2 - (layout.x[left] + layout.width(left) / 2);
+                assertTrue("boxes overlap", gap >= TreeLayout.SIBLING_GAP - EPSILON);
+            }
+        }
+        for (int v = 0; v < layout.size(); v++) {
+            List<Integer> kids = children.get(v);
+            if (!kids.isEmpty()) {
+                double middle = (layout.x[kids.get(0)] + layout.x[kids.get(kids.size() - 1)]) / 2;
+                assertEquals(middle, layout.x[v], EPSILON);
+                for (int i = 1; i < kids.size(); i++) {
+                    assertTrue(layout.x[kids.get(i - 1)] < layout.x[kids.get(i)]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSmallTree() {
+        Position<String> a = tree.addRoot("A");
+        Position<String> b = tree.add("B", a);
+        tree.add("C", a);
+        tree.add("D", b);
+        tree.add("E", b);
+        TreeLayout layout = new TreeLayout(tree);
+        assertEquals(5, layout.size());
+        checkTidy(layout);
+        // node 1 is B, whose children are D and E
+        assertEquals(layout.y[0] + TreeLayout.NODE_HEIGHT + TreeLayout.LEVEL_GAP, layout.y[1], EPSILON);
+        assertEquals((layout.x[2] + layout.x[3]) / 2, layout.x[1], EPSILON);
+    }
+
+    @Test
+    public void testRandomTrees() {
+        for (long seed = 0; seed < 20; seed++) {
+            checkTidy(new TreeLayout(randomTree(500, seed)));
+        }
+        checkTidy(new TreeLayout(new LCRSTree<Integer>()));
+    }
+
+    @Test
+    public void testSubtreesAreCompact() {
+        // two deep subtrees with a small one between them: the small one must not push them apart
+        Position<String> r = tree.addRoot("r");
+        Position<String> left = tree.add("l", r);
+        tree.add("m", r);
+        Position<String> right = tree.add("q", r);
+        for (int i = 0; i < 3; i++) {
+            left = tree.add("a" + i, left);
+            right = tree.add("b" + i, right);
+        }
+        TreeLayout layout = new TreeLayout(tree);
+        checkTidy(layout);
+        // l, m and q are nodes 1, 5 and 6 in pre-order; m is centered between the other two
+        assertEquals((layout.x[1] + layout.x[6]) / 2, layout.x[5], EPSILON);
+    }
+
+    @Test
+    public void testSvg() throws Exception {
+        LinkedTree<String> t = randomTree(300, 3);
+        t.add("<a & \"b\">", t.root());
+        String svg = t.toSvg();
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new InputSource(new StringReader(svg)));
+        assertEquals("svg", document.getDocumentElement().getTagName());
+        assertEquals(300, document.getElementsByTagName("line").getLength());
+        assertEquals(301, document.getElementsByTagName("rect").getLength());
+        assertEquals(301, document.getElementsByTagName("text").getLength());
+        assertTrue(svg.contains("&lt;a &amp; &quot;b&quot;&gt;"));
+        assertEquals("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"20.0\" height=\"20.0\" viewBox=\"0 0 20.0 20.0\""
+                + " font-family=\"sans-serif\" font-size=\"12\">\n<g stroke=\"black\">\n</g>\n"
+                + "<g stroke=\"black\" fill=\"white\">\n</g>\n"
+                + "<g text-anchor=\"middle\" dominant-baseline=\"central\">\n</g>\n</svg>\n", tree.toSvg());
+    }
+
+    @Test
+    public void testDeepAndWideTrees() {
+        int n = 1_000_000;
+        List<String> elements = new ArrayList<>(n);
+        int[] path = new int[n];
+        int[] star = new int[n];
+        for (int i = 0; i < n; i++) {
+            elements.add(String.valueOf(i % 10));
+            path[i] = i - 1;
+            star[i] = i == 0 ? -1 : 0;
+        }
+        TreeLayout deep = new TreeLayout(LinkedTree.fromParents(elements, path));
+        assertEquals(deep.x[0], deep.x[n - 1], EPSILON);
+        TreeLayout wide = new TreeLayout(LCRSTree.fromParents(elements, star));
+        assertEquals((wide.x[1] + wide.x[n - 1]) / 2, wide.x[0], EPSILON);
+    }
+}
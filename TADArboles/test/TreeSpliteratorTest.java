@@ -0,0 +1,186 @@
+import material.Position;
+import org.junit.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * This class is a test class for the streams of NAryTree and the TreeSpliterator class.
+ * It compares the streams, sequential and parallel, and every split of the spliterator with the iterators.
+ */
+public class TreeSpliteratorTest {
+
+    private LinkedTree<Integer> linked;
+
+    private LCRSTree<Integer> lcrs;
+
+    @Before
+    public void setUp() throws Exception {
+        linked = new LinkedTree<>();
+        lcrs = new LCRSTree<>();
+        Random random = new Random(17);
+        List<Position<Integer>> linkedNodes = new ArrayList<>();
+        List<Position<Integer>> lcrsNodes = new ArrayList<>();
+        linkedNodes.add(linked.addRoot(0));
+        lcrsNodes.add(lcrs.addRoot(0));
+        for (int i = 1; i < 20_000; i++) {
+            // a mix of wide nodes and long paths
+            int parent = random.nextBoolean() ? random.nextInt(Math.min(i, 50)) : i - 1 - random.nextInt(Math.min(i, 3));
+            linkedNodes.add(linked.add(i, linkedNodes.get(parent)));
+            lcrsNodes.add(lcrs.add(i, lcrsNodes.get(parent)));
+        }
+    }
+
+    private static List<Integer> elements(Iterator<Position<Integer>> it) {
+        List<Integer> list = new ArrayList<>();
+        it.forEachRemaining(p -> list.add(p.getElement()));
+        return list;
+    }
+
+    private static List<Integer> expected(NAryTree<Integer> tree, TraversalOrder order) {
+        switch (order) {
+            case PRE_ORDER:
+                return tree instanceof LinkedTree ? elements(((LinkedTree<Integer>) tree).iteratorPreOrder())
+                        : elements(((LCRSTree<Integer>) tree).iteratorPreOrder());
+            case POST_ORDER:
+                return tree instanceof LinkedTree ? elements(((LinkedTree<Integer>) tree).iteratorPostOrder())
+                        : elements(((LCRSTree<Integer>) tree).iteratorPostOrder());
+            default:
+                return elements(tree.iterator());
+        }
+    }
+
+    /**
+     * Split a spliterator recursively down to single positions and collect them in encounter order.
+     */
+    private static void splitAll(Spliterator<Position<Integer>> spliterator, List<Integer> out) {
+        long size = spliterator.estimateSize();
+        boolean subsized = spliterator.hasCharacteristics(Spliterator.SUBSIZED);
+        Spliterator<Position<Integer>> prefix = spliterator.trySplit();
+        if (prefix != null) {
+            if (subsized) {
+                assertEquals(size, prefix.estimateSize() + spliterator.estimateSize());
+            }
+            splitAll(prefix, out);
+            splitAll(spliterator, out);
+        } else {
+            int before = out.size();
+            boolean sized = spliterator.hasCharacteristics(Spliterator.SIZED);
+            spliterator.forEachRemaining(p -> out.add(p.getElement()));
+            if (sized) {
+                assertEquals(size, out.size() - before);
+            }
+        }
+    }
+
+    private void checkOrder(NAryTree<Integer> tree, TraversalOrder order) {
+        List<Integer> expected = expected(tree, order);
+        assertEquals(expected, tree.stream(order).map(Position::getElement).collect(Collectors.toList()));
+        assertEquals(expected, tree.parallelStream(order).map(Position::getElement).collect(Collectors.toList()));
+        List<Integer> split = new ArrayList<>();
+        splitAll(new TreeSpliterator<>(tree, order, true, true), split);
+        assertEquals(expected, split);
+        // the same tree split with estimated subtree sizes
+        split.clear();
+        splitAll(new TreeSpliterator<>(tree, order), split);
+        assertEquals(expected, split);
+    }
+
+    @Test
+    public void testBreadthFirst() {
+        checkOrder(linked, TraversalOrder.BREADTH_FIRST);
+        checkOrder(lcrs, TraversalOrder.BREADTH_FIRST);
+    }
+
+    @Test
+    public void testPreOrder() {
+        checkOrder(linked, TraversalOrder.PRE_ORDER);
+        checkOrder(lcrs, TraversalOrder.PRE_ORDER);
+    }
+
+    @Test
+    public void testPostOrder() {
+        checkOrder(linked, TraversalOrder.POST_ORDER);
+        checkOrder(lcrs, TraversalOrder.POST_ORDER);
+    }
+
+    @Test
+    public void testSizedAndSum() {
+        Spliterator<Position<Integer>> spliterator = linked.stream().spliterator();
+        assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED));
+        assertEquals(20_000, spliterator.getExactSizeIfKnown());
+        long expected = 20_000L * 19_999 / 2;
+        assertEquals(expected, linked.parallelStream(TraversalOrder.PRE_ORDER).mapToLong(Position::getElement).sum());
+        assertEquals(expected, lcrs.parallelStream().mapToLong(Position::getElement).sum());
+        assertEquals(20_000, lcrs.parallelStream(TraversalOrder.POST_ORDER).count());
+    }
+
+    @Test
+    public void testSubTreeAndEmpty() {
+        assertEquals(0, new LinkedTree<Integer>().stream().count());
+        Position<Integer> child = lcrs.child(lcrs.root(), 1);
+        NAryTree<Integer> sub = lcrs.subTree(child);
+        assertEquals(lcrs.size(child), sub.parallelStream(TraversalOrder.PRE_ORDER).count());
+        assertEquals(expected(sub, TraversalOrder.PRE_ORDER),
+                sub.parallelStream(TraversalOrder.PRE_ORDER).map(Position::getElement).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testBreadthFirstSplitsAtRoot() {
+        LinkedTree<Integer> tree = new LinkedTree<>();
+        Position<Integer> root = tree.addRoot(0);
+        for (int i = 1; i < 1000; i++) {
+            tree.add(i, root);
+        }
+        Spliterator<Position<Integer>> suffix = new TreeSpliterator<>(tree, TraversalOrder.BREADTH_FIRST);
+        Spliterator<Position<Integer>> prefix = suffix.trySplit();
+        assertNotNull(prefix);
+        Set<Integer> seen = new HashSet<>();
+        prefix.forEachRemaining(p -> assertTrue(seen.add(p.getElement())));
+        assertFalse(seen.isEmpty());
+        suffix.forEachRemaining(p -> assertTrue(seen.add(p.getElement())));
+        assertEquals(1000, seen.size());
+
+        int splits = 0;
+        Deque<Spliterator<Position<Integer>>> stack = new ArrayDeque<>();
+        stack.push(new TreeSpliterator<>(linked, TraversalOrder.BREADTH_FIRST));
+        while (!stack.isEmpty()) {
+            Spliterator<Position<Integer>> spliterator = stack.pop();
+            Spliterator<Position<Integer>> split = spliterator.trySplit();
+            if (split != null) {
+                splits++;
+                stack.push(spliterator);
+                stack.push(split);
+            }
+        }
+        assertEquals(20_000 - 1, splits);
+    }
+
+    @Test
+    public void testEstimatedSizes() {
+        // a long path: weighing every split subtree with size(v) would take quadratic time
+        int n = 200_000;
+        ArrayTree<Integer> path = new ArrayTree<>();
+        Position<Integer> node = path.addRoot(0);
+        for (int i = 1; i < n; i++) {
+            node = path.add(i, node);
+        }
+        assertEquals((long) n * (n - 1) / 2, path.parallelStream(TraversalOrder.PRE_ORDER).mapToLong(Position::getElement).sum());
+        assertEquals(n, path.parallelStream(TraversalOrder.POST_ORDER).count());
+        Spliterator<Position<Integer>> spliterator = new TreeSpliterator<>(path, TraversalOrder.PRE_ORDER);
+        assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED));
+        assertNotNull(spliterator.trySplit());
+        assertFalse(spliterator.hasCharacteristics(Spliterator.SIZED));
+        assertTrue(new TreeSpliterator<>(path, TraversalOrder.BREADTH_FIRST).hasCharacteristics(Spliterator.SUBSIZED));
+    }
+}